@@ -3,9 +3,13 @@ package searchengine.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     @Bean
@@ -19,4 +23,51 @@ public class AppConfig {
         return executor;
     }
 
+    /**
+     * Пул асинхронной индексации страниц через {@code /api/indexPage}. Очередь ограничена; при ее переполнении
+     * задача отклоняется, и клиент получает ошибку вместо бесконечного роста очереди.
+     */
+    @Bean
+    public TaskExecutor indexJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors());
+        executor.setMaxPoolSize(Runtime.getRuntime().availableProcessors());
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("IndexJob-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Пул для пакетной переиндексации страниц через {@code /api/indexPages}. При переполнении очереди страница
+     * индексируется в потоке запроса.
+     */
+    @Bean
+    public TaskExecutor pageIndexingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors());
+        executor.setMaxPoolSize(Runtime.getRuntime().availableProcessors());
+        executor.setQueueCapacity(200);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("PageIndexer-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Пул для параллельных подзапросов поиска по сайтам. Очередь ограничена; при ее переполнении
+     * подзапрос выполняется в потоке запроса, что естественно притормаживает входящий поток поиска.
+     */
+    @Bean
+    public TaskExecutor searchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors());
+        executor.setMaxPoolSize(Runtime.getRuntime().availableProcessors());
+        executor.setQueueCapacity(200);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("Search-");
+        executor.initialize();
+        return executor;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "change-feed-settings")
+public class ChangeFeedSettings {
+    private String journalPath = "./index/change-feed";
+    private int workers = 4;
+    private long applyIntervalMs = 1000;
+    private int maxEvents = 1000;
+    private int maxAttempts = 5;
+}
@@ -0,0 +1,11 @@
+package searchengine.config;
+
+/**
+ * Режим обхода сайтов, задается параметром {@code crawl-settings.mode}.
+ */
+public enum CrawlMode {
+    /** Каждый сайт обходится пулом ForkJoin того узла, на котором запущена индексация. */
+    LOCAL,
+    /** Очередь ссылок хранится в таблице {@code frontier}, и ее разбирают рабочие потоки всех узлов. */
+    DISTRIBUTED
+}
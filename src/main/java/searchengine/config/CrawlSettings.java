@@ -0,0 +1,57 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawl-settings")
+public class CrawlSettings {
+    private CrawlMode mode = CrawlMode.LOCAL;
+    private String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 16;
+    private int leaseSeconds = 120;
+    private int maxAttempts = 3;
+    private long heartbeatIntervalMs = 10000;
+    private long pollIntervalMs = 1000;
+    private List<String> blockedExtensions = new ArrayList<>(List.of("pdf", "doc", "docx", "xls", "xlsx", "jpg",
+            "jpeg", "png", "gif", "webp", "zip", "rar", "exe", "mp3", "mp4", "avi", "mov", "svg"));
+    private List<String> blockedPaths = new ArrayList<>();
+    private List<String> strippedQueryParams = new ArrayList<>(List.of("utm_*", "fbclid", "gclid", "yclid",
+            "_openstat", "from"));
+    private NearDuplicateMode nearDuplicates = NearDuplicateMode.ALIAS;
+    private int nearDuplicateDistance = 3;
+    private int nearDuplicateMinLemmas = 30;
+    private boolean respectRobots = true;
+    private String robotsAgent = "SearchEngine";
+    private boolean useSitemaps = true;
+    private int maxSitemaps = 50;
+    private int maxSitemapUrls = 50000;
+    private int maxDepth = Integer.MAX_VALUE;
+    private int maxPages = Integer.MAX_VALUE;
+    private int fetchTimeoutMs = 15000;
+    private long maxBodyBytes = 5L * 1024 * 1024;
+    private Priority priority = new Priority();
+
+    public boolean isDistributed() {
+        return mode == CrawlMode.DISTRIBUTED;
+    }
+
+    @Getter
+    @Setter
+    public static class Priority {
+        private double depth = 10;
+        private double inlinks = 2;
+        private double sitemap = 4;
+        private double freshness = 3;
+        private double freshnessHalfLifeDays = 30;
+    }
+}
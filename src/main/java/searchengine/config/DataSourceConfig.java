@@ -0,0 +1,49 @@
+package searchengine.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * Основной пул строится из {@code spring.datasource}, как это делает автоконфигурация Spring Boot.
+     * Если в {@code replica-settings.replicas} перечислены реплики, для каждой создается свой пул,
+     * и основной источник данных заменяется маршрутизирующим.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, ReplicaSettings replicaSettings, Environment environment) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (replicaSettings.getReplicas().isEmpty()) {
+            return primary;
+        }
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (ReplicaSettings.Replica replica : replicaSettings.getReplicas()) {
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replica.getUrl())
+                    .username(replica.getUsername() != null ? replica.getUsername() : properties.determineUsername())
+                    .password(replica.getPassword() != null ? replica.getPassword() : properties.determinePassword())
+                    .build();
+            pool.setMaximumPoolSize(replica.getMaxPoolSize());
+            pool.setReadOnly(true);
+            pool.setPoolName("Replica-" + replicas.size());
+            replicas.add(pool);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, replicaSettings);
+    }
+}
@@ -0,0 +1,15 @@
+package searchengine.config;
+
+/**
+ * Режим работы поискового индекса, задается параметром {@code search-settings.index-mode}.
+ */
+public enum IndexMode {
+    /** Полный перебор всех найденных страниц по таблицам MySQL. */
+    DATABASE,
+    /** Списки вхождений с максимальными рангами блоков и ранняя остановка top-K по Block-Max WAND. */
+    IMPACT,
+    /** Страницы индексируются в файловый индекс Lucene, поиск и подсветка выполняются средствами Lucene. */
+    LUCENE,
+    /** Индекс сайта выгружается в неизменяемые сегментные файлы, которые читаются через отображение в память. */
+    SEGMENT
+}
@@ -0,0 +1,16 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "lucene-settings")
+public class LuceneSettings {
+    private String indexPath = "./index/lucene";
+    private double ramBufferMb = 64;
+    private long commitIntervalMs = 60_000;
+}
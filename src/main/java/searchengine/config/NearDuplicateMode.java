@@ -0,0 +1,19 @@
+package searchengine.config;
+
+/**
+ * Что делать со страницей, почти совпадающей по содержимому с уже проиндексированной страницей того же сайта.
+ */
+public enum NearDuplicateMode {
+    /**
+     * Индексировать как обычную страницу.
+     */
+    OFF,
+    /**
+     * Не сохранять страницу.
+     */
+    SKIP,
+    /**
+     * Сохранить строку {@code page} без содержимого со ссылкой на оригинал в {@code alias_of}, без лемм и индекса.
+     */
+    ALIAS
+}
@@ -0,0 +1,55 @@
+package searchengine.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Признак того, что код текущего потока может читать с реплики. Сам по себе признак ничего не
+ * переключает: {@link ReplicaRoutingDataSource} отправляет на реплику только транзакции
+ * {@code readOnly}, начатые внутри {@link #preferReplica(Supplier)}. Остальные чтения, в том числе
+ * неявные read-only транзакции репозиториев Spring Data в коде индексации, остаются на основной базе.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> REPLICA_PREFERRED = ThreadLocal.withInitial(() -> false);
+
+    private ReplicaRouting() {
+    }
+
+    public static <T> T preferReplica(Supplier<T> action) {
+        boolean previous = REPLICA_PREFERRED.get();
+        REPLICA_PREFERRED.set(true);
+        try {
+            return action.get();
+        } finally {
+            REPLICA_PREFERRED.set(previous);
+        }
+    }
+
+    /**
+     * Выполняет чтение на основной базе даже внутри {@link #preferReplica(Supplier)}. Нужно для данных,
+     * которые затем кэшируются: прочитанное с отстающей реплики осталось бы в кэше и после его сброса.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        boolean previous = REPLICA_PREFERRED.get();
+        REPLICA_PREFERRED.set(false);
+        try {
+            return action.get();
+        } finally {
+            REPLICA_PREFERRED.set(previous);
+        }
+    }
+
+    /**
+     * Переносит признак текущего потока в задачу, которая выполнится в другом потоке.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> action) {
+        if (!isReplicaPreferred()) {
+            return action;
+        }
+        return () -> preferReplica(action);
+    }
+
+    public static boolean isReplicaPreferred() {
+        return REPLICA_PREFERRED.get();
+    }
+}
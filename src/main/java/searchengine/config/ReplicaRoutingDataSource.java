@@ -0,0 +1,148 @@
+package searchengine.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Источник данных с маршрутизацией чтения на реплики. Каждая реплика имеет свой пул; read-only
+ * транзакции внутри {@link ReplicaRouting#preferReplica} распределяются по здоровым репликам по кругу,
+ * все остальное идет на основную базу.
+ * <p>
+ * Реплика считается здоровой, если проверочный запрос {@code replica-settings.lag-query} выполняется
+ * и отставание не превышает {@code replica-settings.max-lag-seconds}. Пустой запрос означает проверку
+ * только соединения. Если здоровых реплик нет, чтение тоже уходит на основную базу.
+ * <p>
+ * Маршрутизатор обернут в {@link LazyConnectionDataSourceProxy}: физическое соединение берется при
+ * первом запросе, когда признак read-only транзакции уже выставлен.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA_PREFIX = "replica-";
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final ReplicaSettings settings;
+    private final AtomicIntegerArray healthy;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, ReplicaSettings settings) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.settings = settings;
+        this.healthy = new AtomicIntegerArray(replicas.size());
+
+        Router router = new Router();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA_PREFIX + i, replicas.get(i));
+        }
+        router.setTargetDataSources(targets);
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+        afterPropertiesSet();
+
+        lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Replica-Lag-Checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecker.scheduleWithFixedDelay(this::checkReplicas, 0, settings.getLagCheckIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    public void checkReplicas() {
+        for (int i = 0; i < replicas.size(); i++) {
+            boolean isHealthy = isHealthy(replicas.get(i));
+            if (healthy.getAndSet(i, isHealthy ? 1 : 0) != (isHealthy ? 1 : 0)) {
+                log.info("Реплика {} {}", replicas.get(i).getJdbcUrl(),
+                        isHealthy ? "доступна для чтения" : "исключена из чтения, запросы идут на основную базу");
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lagChecker.shutdownNow();
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+
+    private boolean isHealthy(HikariDataSource replica) {
+        try (Connection connection = replica.getConnection()) {
+            String lagQuery = settings.getLagQuery();
+            if (lagQuery == null || lagQuery.isBlank()) {
+                return connection.isValid(2);
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                if (!resultSet.next()) {
+                    return true;
+                }
+                Long lag = readLag(resultSet);
+                return lag != null && lag <= settings.getMaxLagSeconds();
+            }
+        } catch (SQLException e) {
+            log.debug("Проверка реплики {} не удалась: {}", replica.getJdbcUrl(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return отставание в секундах или {@code null}, если репликация остановлена.
+     */
+    private Long readLag(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            String name = metaData.getColumnLabel(column);
+            if ("Seconds_Behind_Source".equalsIgnoreCase(name) || "Seconds_Behind_Master".equalsIgnoreCase(name)) {
+                long lag = resultSet.getLong(column);
+                return resultSet.wasNull() ? null : lag;
+            }
+        }
+        return resultSet.getLong(1);
+    }
+
+    private String pickReplica() {
+        int count = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), count);
+        for (int offset = 0; offset < count; offset++) {
+            int index = (start + offset) % count;
+            if (healthy.get(index) == 1) {
+                return REPLICA_PREFIX + index;
+            }
+        }
+        return PRIMARY;
+    }
+
+    private class Router extends AbstractRoutingDataSource {
+        @Override
+        protected Object determineCurrentLookupKey() {
+            if (ReplicaRouting.isReplicaPreferred() && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return pickReplica();
+            }
+            return PRIMARY;
+        }
+    }
+}
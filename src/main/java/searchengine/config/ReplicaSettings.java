@@ -0,0 +1,29 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "replica-settings")
+public class ReplicaSettings {
+    private List<Replica> replicas = new ArrayList<>();
+    private int maxLagSeconds = 10;
+    private long lagCheckIntervalMs = 5000;
+    private String lagQuery = "SHOW REPLICA STATUS";
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maxPoolSize = 10;
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "segment-settings")
+public class SegmentSettings {
+    private String indexPath = "./index/segments";
+    private int mergeFactor = 8;
+    private int smallSegmentPages = 1000;
+}
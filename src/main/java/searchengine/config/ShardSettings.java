@@ -0,0 +1,29 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "shard-settings")
+public class ShardSettings {
+    private boolean enabled = false;
+    private List<Shard> shards = new ArrayList<>();
+    private long timeoutMs = 2000;
+
+    @Getter
+    @Setter
+    public static class Shard {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private int maxPoolSize = 10;
+    }
+}
@@ -1,14 +1,26 @@
 package searchengine.controllers;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.dto.indexing.ChangeEvent;
+import searchengine.dto.indexing.ChangeFeedResponse;
+import searchengine.dto.indexing.IndexJobStatus;
+import searchengine.dto.indexing.IndexPagesResponse;
 import searchengine.dto.indexing.IndexingResponse;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.settings.FrontendSettings; // <-- Добавляем импорт
+import searchengine.dto.statistics.CacheStatisticsResponse;
+import searchengine.dto.statistics.FetchStatisticsResponse;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.services.indexing.ChangeFeedService;
 import searchengine.services.indexing.IndexingService;
 import searchengine.services.statistics.StatisticsService;
+import searchengine.services.statistics.StatisticsStreamService;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/api")
@@ -17,6 +29,8 @@ public class ApiController {
 
     private final IndexingService indexingService;
     private final StatisticsService statisticsService;
+    private final StatisticsStreamService statisticsStreamService;
+    private final ChangeFeedService changeFeedService;
     private final FrontendSettings frontendSettings;
 
     @GetMapping("/settings")
@@ -39,11 +53,41 @@ public class ApiController {
         return ResponseEntity.ok(indexingService.indexPage(url));
     }
 
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<IndexJobStatus> getJob(@PathVariable String id) {
+        return ResponseEntity.of(indexingService.getJob(id));
+    }
+
+    @PostMapping("/indexPages")
+    public ResponseEntity<IndexPagesResponse> indexPages(@RequestParam("url") List<String> urls) {
+        return ResponseEntity.ok(indexingService.indexPages(urls));
+    }
+
+    @PostMapping("/changes")
+    public ResponseEntity<ChangeFeedResponse> acceptChanges(@RequestBody List<ChangeEvent> events) {
+        return ResponseEntity.ok(changeFeedService.accept(events));
+    }
+
     @GetMapping("/statistics")
     public ResponseEntity<StatisticsResponse> getStatistics() {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    @GetMapping("/statistics/caches")
+    public ResponseEntity<CacheStatisticsResponse> getCacheStatistics() {
+        return ResponseEntity.ok(statisticsService.getCacheStatistics());
+    }
+
+    @GetMapping("/statistics/fetch")
+    public ResponseEntity<FetchStatisticsResponse> getFetchStatistics() {
+        return ResponseEntity.ok(statisticsService.getFetchStatistics());
+    }
+
+    @GetMapping(path = "/statistics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatistics() {
+        return statisticsStreamService.subscribe();
+    }
+
     @GetMapping("/search")
     public ResponseEntity<SearchResponse> search(
             @RequestParam String query,
@@ -0,0 +1,30 @@
+package searchengine.dto.indexing;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Событие ленты изменений: страница по адресу {@code url} появилась или изменилась ({@code upsert})
+ * либо удалена ({@code delete}).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeEvent {
+
+    private String url;
+    private Type type;
+
+    public enum Type {
+        UPSERT, DELETE;
+
+        @JsonCreator
+        public static Type of(String value) {
+            return value == null ? null : Type.valueOf(value.trim().toUpperCase());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package searchengine.dto.indexing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeFeedResponse {
+
+    private boolean result;
+    private String error;
+    private int accepted;
+    private int rejected;
+    private int pending;
+
+    public ChangeFeedResponse(boolean result, String error) {
+        this.result = result;
+        this.error = error;
+    }
+}
@@ -0,0 +1,22 @@
+package searchengine.dto.indexing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Ответ на постановку страницы в очередь индексации: к обычному результату добавляется идентификатор задачи
+ * для {@code /api/jobs/{id}}.
+ */
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IndexJobResponse extends IndexingResponse {
+
+    private String jobId;
+
+    public IndexJobResponse(String jobId) {
+        super(true);
+        this.jobId = jobId;
+    }
+}
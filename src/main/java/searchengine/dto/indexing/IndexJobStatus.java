@@ -0,0 +1,30 @@
+package searchengine.dto.indexing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IndexJobStatus {
+
+    private String id;
+    private String url;
+    private State state;
+    private Boolean result;
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+}
@@ -0,0 +1,13 @@
+package searchengine.dto.indexing;
+
+import lombok.Value;
+
+/**
+ * Лемма слова вместе с границами этого слова в исходном тексте.
+ */
+@Value
+public class LemmaToken {
+    String lemma;
+    int startOffset;
+    int endOffset;
+}
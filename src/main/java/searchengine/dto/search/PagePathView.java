@@ -0,0 +1,7 @@
+package searchengine.dto.search;
+
+public interface PagePathView {
+    int getId();
+
+    String getPath();
+}
@@ -0,0 +1,10 @@
+package searchengine.dto.search;
+
+/**
+ * Проекция строки поискового индекса: только идентификатор страницы и ранг леммы на ней.
+ */
+public interface PostingView {
+    int getPageId();
+
+    float getRank();
+}
@@ -0,0 +1,17 @@
+package searchengine.dto.search;
+
+/**
+ * Страница итоговой выдачи поиска вместе с адресом и именем сайта. Читается проекцией, поэтому содержимое
+ * страницы не попадает в контекст персистентности и не копируется в его снимки.
+ */
+public interface SearchPageView {
+    int getId();
+
+    String getPath();
+
+    String getContent();
+
+    String getSiteUrl();
+
+    String getSiteName();
+}
@@ -15,6 +15,10 @@ public class SearchResponse {
     private String error;
     private int count;
     private List<SearchData> data;
+    /**
+     * {@code true}, если часть шардов не ответила вовремя и результаты неполные; в остальных случаях не выводится.
+     */
+    private Boolean partial;
 
     /**
      * Конструктор для ответов с ошибкой.
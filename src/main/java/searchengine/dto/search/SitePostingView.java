@@ -0,0 +1,14 @@
+package searchengine.dto.search;
+
+/**
+ * Проекция строки поискового индекса сайта вместе с текстом леммы — для выгрузки индекса в сегменты.
+ */
+public interface SitePostingView {
+    int getLemmaId();
+
+    String getLemma();
+
+    int getPageId();
+
+    float getRank();
+}
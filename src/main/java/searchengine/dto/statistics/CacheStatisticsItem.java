@@ -0,0 +1,15 @@
+package searchengine.dto.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CacheStatisticsItem {
+    private String name;
+    private long entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+}
@@ -0,0 +1,13 @@
+package searchengine.dto.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CacheStatisticsResponse {
+    private boolean result;
+    private List<CacheStatisticsItem> caches;
+}
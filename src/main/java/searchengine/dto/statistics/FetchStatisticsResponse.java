@@ -0,0 +1,16 @@
+package searchengine.dto.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FetchStatisticsResponse {
+    private boolean result;
+    private long fetched;
+    private long bytes;
+    private long abortedContentType;
+    private long abortedContentLength;
+    private long truncated;
+    private long failed;
+}
@@ -0,0 +1,14 @@
+package searchengine.dto.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class StatisticsDelta {
+    private TotalStatistics total;
+    private List<DetailedStatisticsItem> detailed;
+    private List<String> removed;
+}
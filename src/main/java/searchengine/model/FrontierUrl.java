@@ -0,0 +1,59 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Ссылка в общей очереди распределенного обхода. Уникальность ссылки внутри сайта обеспечивает
+ * ключ (site_id, url_hash), поэтому повторная постановка в очередь с любого узла только прибавляет
+ * входящую ссылку и поднимает приоритет.
+ */
+@Entity
+@Table(name = "frontier",
+        uniqueConstraints = @UniqueConstraint(name = "uk_frontier_site_url", columnNames = {"site_id", "url_hash"}),
+        indexes = {
+                @Index(name = "idx_frontier_status", columnList = "status, id"),
+                @Index(name = "idx_frontier_priority", columnList = "status, priority"),
+                @Index(name = "idx_frontier_lease", columnList = "lease_owner, status")
+        })
+@Getter
+@Setter
+public class FrontierUrl {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "site_id", nullable = false)
+    private int siteId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String url;
+
+    @Column(name = "url_hash", nullable = false)
+    private long urlHash;
+
+    @Column(nullable = false)
+    private int depth;
+
+    @Column(nullable = false)
+    private double priority;
+
+    @Column(nullable = false)
+    private int inlinks;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private FrontierStatus status;
+
+    @Column(name = "lease_owner", length = 128)
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(nullable = false)
+    private int attempts;
+}
@@ -5,8 +5,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 @Entity
-@Table(name = "lemma", indexes = {
-        @Index(name = "idx_lemma_site_lemma", columnList = "site_id, lemma")
+@Table(name = "lemma", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_lemma_site_lemma", columnNames = {"site_id", "lemma"})
 })
 @Getter
 @Setter
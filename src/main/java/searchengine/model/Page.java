@@ -28,4 +28,10 @@ public class Page {
 
     @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
     private String content;
+
+    /**
+     * Страница того же сайта, почти-дубликатом которой является эта страница; у такой страницы нет содержимого и индекса.
+     */
+    @Column(name = "alias_of")
+    private Integer aliasOf;
 }
@@ -8,8 +8,10 @@
     @Setter
     @Entity
     @Table(name = "search_index",
-            indexes = @Index(name = "idx_index_page_lemma",
-                    columnList = "page_id, lemma_id"))
+            indexes = {
+                    @Index(name = "idx_index_page_lemma", columnList = "page_id, lemma_id"),
+                    @Index(name = "idx_index_lemma_page_rank", columnList = "lemma_id, page_id, `rank`")
+            })
     public class SearchIndex {
         @Id
         @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -18,6 +20,12 @@
         @Column(name = "`rank`", nullable = false)
         private float rank;
 
+        /**
+         * Копия {@code page.site_id}: ключ секционирования таблицы в MySQL. Заполняется из страницы при сохранении.
+         */
+        @Column(name = "site_id", nullable = false)
+        private Integer siteId;
+
         @ManyToOne(fetch = FetchType.LAZY)
         @JoinColumn(name = "lemma_id", foreignKey = @ForeignKey(name = "fk_index_lemma",
                 foreignKeyDefinition = "FOREIGN KEY (lemma_id) REFERENCES lemma(id) ON DELETE CASCADE"))
@@ -27,4 +35,11 @@
         @JoinColumn(name = "page_id", foreignKey = @ForeignKey(name = "fk_index_page",
                 foreignKeyDefinition = "FOREIGN KEY (page_id) REFERENCES page(id) ON DELETE CASCADE"))
         private Page page;
+
+        @PrePersist
+        void fillSiteId() {
+            if (siteId == null && page != null && page.getSite() != null) {
+                siteId = page.getSite().getId();
+            }
+        }
     }
@@ -31,4 +31,13 @@
         @Column(nullable = false)
         private String name;
 
+        @Column(name = "page_count", columnDefinition = "INT NOT NULL DEFAULT 0", insertable = false, updatable = false)
+        private int pageCount;
+
+        @Column(name = "lemma_count", columnDefinition = "INT NOT NULL DEFAULT 0", insertable = false, updatable = false)
+        private int lemmaCount;
+
+        @Column(name = "counters_time", insertable = false, updatable = false)
+        private LocalDateTime countersTime;
+
     }
\ No newline at end of file
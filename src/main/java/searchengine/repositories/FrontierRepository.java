@@ -0,0 +1,83 @@
+package searchengine.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import searchengine.model.FrontierStatus;
+import searchengine.model.FrontierUrl;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface FrontierRepository extends JpaRepository<FrontierUrl, Long> {
+
+    /**
+     * Тайм-аут блокировки -2 (LockOptions.SKIP_LOCKED) диалект MySQL 8 превращает в
+     * {@code FOR UPDATE SKIP LOCKED}: строки, уже заблокированные другим узлом, пропускаются без ожидания.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT f FROM FrontierUrl f WHERE f.status = :status ORDER BY f.priority DESC, f.id")
+    List<FrontierUrl> findForClaim(@Param("status") FrontierStatus status, Pageable pageable);
+
+    /**
+     * Ставит ссылку в очередь, а уже известной ссылке прибавляет входящую ссылку: приоритет растет
+     * на {@code inlinkWeight / (inlinks + 1)}, как в {@link searchengine.services.crawler.CrawlPriority}.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO frontier (site_id, url, url_hash, depth, status, attempts, priority, inlinks) " +
+            "VALUES (:siteId, :url, :urlHash, :depth, 'QUEUED', 0, :priority, 1) " +
+            "ON DUPLICATE KEY UPDATE priority = priority + :inlinkWeight / (inlinks + 1), inlinks = inlinks + 1",
+            nativeQuery = true)
+    int upsert(@Param("siteId") int siteId, @Param("url") String url, @Param("urlHash") long urlHash,
+               @Param("depth") int depth, @Param("priority") double priority,
+               @Param("inlinkWeight") double inlinkWeight);
+
+    @Modifying
+    @Query("UPDATE FrontierUrl f SET f.status = :status, f.leaseOwner = NULL, f.leaseUntil = NULL " +
+            "WHERE f.id = :id AND f.leaseOwner = :owner")
+    int finish(@Param("id") long id, @Param("owner") String owner, @Param("status") FrontierStatus status);
+
+    @Modifying
+    @Query("UPDATE FrontierUrl f SET f.leaseUntil = :until " +
+            "WHERE f.id IN :ids AND f.leaseOwner = :owner AND f.status = :status")
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+                    @Param("until") LocalDateTime until, @Param("status") FrontierStatus status);
+
+    @Modifying
+    @Query("UPDATE FrontierUrl f SET f.status = :status, f.leaseOwner = NULL, f.leaseUntil = NULL " +
+            "WHERE f.id IN :ids AND f.leaseOwner = :owner AND f.status = :leased")
+    int releaseLeases(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+                      @Param("leased") FrontierStatus leased, @Param("status") FrontierStatus status);
+
+    @Modifying
+    @Query("UPDATE FrontierUrl f SET f.status = :status, f.leaseOwner = NULL, f.leaseUntil = NULL " +
+            "WHERE f.status = :leased AND f.leaseUntil < :now AND f.attempts < :maxAttempts")
+    int releaseExpired(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                       @Param("leased") FrontierStatus leased, @Param("status") FrontierStatus status);
+
+    @Modifying
+    @Query("UPDATE FrontierUrl f SET f.status = :status, f.leaseOwner = NULL, f.leaseUntil = NULL " +
+            "WHERE f.status = :leased AND f.leaseUntil < :now AND f.attempts >= :maxAttempts")
+    int failExhausted(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                      @Param("leased") FrontierStatus leased, @Param("status") FrontierStatus status);
+
+    @Modifying
+    @Query("DELETE FROM FrontierUrl f WHERE f.status = :status")
+    int deleteAllByStatus(@Param("status") FrontierStatus status);
+
+    boolean existsBySiteIdAndStatusIn(int siteId, Collection<FrontierStatus> statuses);
+
+    long countBySiteIdAndStatus(int siteId, FrontierStatus status);
+
+    long countBySiteId(int siteId);
+
+    boolean existsBySiteIdAndUrlHash(int siteId, long urlHash);
+}
@@ -1,29 +1,64 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.search.PostingView;
+import searchengine.dto.search.SitePostingView;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
 import searchengine.model.SearchIndex;
 import searchengine.model.Site;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * Все запросы содержат условие по {@code site_id}: в MySQL таблица {@code search_index} секционирована
+ * по сайту, и такое условие позволяет читать только секцию нужного сайта.
+ */
 public interface IndexRepository extends JpaRepository<SearchIndex, Integer> {
     @Transactional
-    void deleteAllByPageSite(Site site);
+    @Modifying
+    @Query("DELETE FROM SearchIndex i WHERE i.siteId = :#{#site.id}")
+    void deleteAllByPageSite(@Param("site") Site site);
+
     @Transactional
-    void deleteAllByPage(Page page);
-    List<SearchIndex> findAllByPage(Page page);
-    List<SearchIndex> findAllByPageAndLemmaIn(Page page, List<Lemma> lemmas);
+    @Modifying
+    @Query("DELETE FROM SearchIndex i WHERE i.siteId = :#{#page.site.id} AND i.page = :page")
+    void deleteAllByPage(@Param("page") Page page);
+
+    @Query("SELECT i FROM SearchIndex i JOIN FETCH i.lemma WHERE i.siteId = :#{#page.site.id} AND i.page = :page")
+    List<SearchIndex> findAllByPage(@Param("page") Page page);
+
+    @Query("SELECT l.id AS lemmaId, l.lemma AS lemma, i.page.id AS pageId, i.rank AS rank " +
+            "FROM SearchIndex i JOIN i.lemma l WHERE i.siteId = :#{#page.site.id} AND i.page = :page")
+    List<SitePostingView> findPostingsByPage(@Param("page") Page page);
+
+    @Modifying
+    @Query("DELETE FROM SearchIndex i WHERE i.siteId = :siteId AND i.page.id = :pageId AND i.lemma.id IN :lemmaIds")
+    int deleteByPageAndLemmaIds(@Param("siteId") int siteId, @Param("pageId") int pageId,
+                                @Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Modifying
+    @Query("UPDATE SearchIndex i SET i.rank = :rank " +
+            "WHERE i.siteId = :siteId AND i.page.id = :pageId AND i.lemma.id IN :lemmaIds")
+    int updateRank(@Param("siteId") int siteId, @Param("pageId") int pageId,
+                   @Param("lemmaIds") Collection<Integer> lemmaIds, @Param("rank") float rank);
 
-    @Query("SELECT i.page FROM SearchIndex i WHERE i.lemma = :lemma")
-    List<Page> findDistinctPagesByLemma(@Param("lemma") Lemma lemma);
+    @Query("SELECT i.page.id AS pageId, i.rank AS rank FROM SearchIndex i " +
+            "WHERE i.siteId = :#{#lemma.site.id} AND i.lemma = :lemma ORDER BY i.page.id")
+    List<PostingView> findPostingsByLemma(@Param("lemma") Lemma lemma);
 
-    @Query("SELECT i.page FROM SearchIndex i WHERE i.lemma.lemma = :lemmaString")
-    List<Page> findDistinctPagesByLemmaString(@Param("lemmaString") String lemmaString);
-    List<SearchIndex> findAllByPageInAndLemmaIn(Collection<Page> pages, Collection<Lemma> lemmas);
-}
\ No newline at end of file
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT l.id AS lemmaId, l.lemma AS lemma, i.page.id AS pageId, i.rank AS rank " +
+            "FROM SearchIndex i JOIN i.lemma l WHERE i.siteId = :#{#site.id} AND l.site = :site ORDER BY l.id, i.page.id")
+    Stream<SitePostingView> streamPostingsBySite(@Param("site") Site site);
+}
@@ -1,5 +1,8 @@
 package searchengine.repositories;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Lemma;
 import searchengine.model.Site;
@@ -13,11 +16,20 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     @Transactional
     void deleteAllBySite(Site site);
     int countBySite(Site site);
+    int countBySiteId(Integer siteId);
     List<Lemma> findAllBySiteAndLemmaIn(Site site, Collection<String> lemmas);
     Optional<Lemma> findBySiteAndLemma(Site site, String lemmaString);
     List<Lemma> findAllByLemmaIn(Collection<String> lemmas);
 
     List<Lemma> findAllByLemmaInAndSiteIn(Collection<String> lemmas, Collection<Site> sites);
+
+    @Modifying
+    @Query("UPDATE Lemma l SET l.frequency = l.frequency + :delta WHERE l.site = :site AND l.id IN :ids")
+    int addFrequency(@Param("site") Site site, @Param("ids") Collection<Integer> ids, @Param("delta") int delta);
+
+    @Modifying
+    @Query("DELETE FROM Lemma l WHERE l.site = :site AND l.id IN :ids AND l.frequency <= 0")
+    int deleteUnused(@Param("site") Site site, @Param("ids") Collection<Integer> ids);
 }
 
 
@@ -4,9 +4,12 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.search.PagePathView;
+import searchengine.dto.search.SearchPageView;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,9 +17,14 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     @Transactional
     void deleteAllBySite(Site site);
     int countBySite(Site site);
+    int countBySiteId(Integer siteId);
     Optional<Page> findBySiteAndPath(Site site, String path);
     long count();
 
-    @Query("SELECT p FROM Page p JOIN FETCH p.site WHERE p IN :pages")
-    List<Page> findPagesWithSites(@Param("pages") List<Page> pages);
+    @Query("SELECT p.id AS id, p.path AS path, p.content AS content, s.url AS siteUrl, s.name AS siteName " +
+            "FROM Page p JOIN p.site s WHERE p.id IN :ids")
+    List<SearchPageView> findSearchPagesByIds(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT p.id AS id, p.path AS path FROM Page p WHERE p.site = :site")
+    List<PagePathView> findPagePathsBySite(@Param("site") Site site);
 }
\ No newline at end of file
@@ -1,9 +1,14 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 import searchengine.model.SiteStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,4 +16,36 @@ public interface SiteRepository extends JpaRepository<Site, Integer> {
     Optional<Site> findByUrl(String url);
     List<Site> findByStatus(SiteStatus status);
     List<Site> findAllByUrlContaining(String host);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE site SET page_count = :pages, lemma_count = :lemmas, counters_time = :time WHERE id = :id",
+            nativeQuery = true)
+    int updateCounters(@Param("id") int siteId, @Param("pages") long pages, @Param("lemmas") long lemmas,
+                       @Param("time") LocalDateTime time);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE site SET page_count = page_count + :pages, lemma_count = lemma_count + :lemmas, " +
+            "counters_time = :time WHERE id = :id", nativeQuery = true)
+    int addCounters(@Param("id") int siteId, @Param("pages") long pages, @Param("lemmas") long lemmas,
+                    @Param("time") LocalDateTime time);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Site s SET s.statusTime = :time WHERE s.id = :id AND s.status = :status")
+    int updateHeartbeat(@Param("id") int siteId, @Param("time") LocalDateTime time, @Param("status") SiteStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Site s SET s.statusTime = :time, s.lastError = :error WHERE s.id = :id AND s.status = :status")
+    int updateHeartbeat(@Param("id") int siteId, @Param("time") LocalDateTime time, @Param("error") String lastError,
+                        @Param("status") SiteStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Site s SET s.status = :status, s.statusTime = :time, s.lastError = :error " +
+            "WHERE s.id = :id AND s.status = :expected")
+    int updateStatus(@Param("id") int siteId, @Param("expected") SiteStatus expected, @Param("status") SiteStatus status,
+                     @Param("error") String lastError, @Param("time") LocalDateTime time);
 }
@@ -0,0 +1,135 @@
+package searchengine.services.crawler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Очередь обхода одного сайта в памяти, упорядоченная по {@link CrawlPriority}.
+ * <p>
+ * Ссылки различаются по {@link UrlCanonicalizer#fingerprint(String) отпечатку}, так что очередь заменяет
+ * и множество посещенных ссылок. Повторно найденная ссылка, еще ожидающая загрузки, получает прибавку за входящую
+ * ссылку и поднимается в очереди; в куче при этом остается устаревший узел, который пропускается при выборке.
+ * Ссылки глубже {@code crawl-settings.max-depth} не принимаются, а после {@code crawl-settings.max-pages}
+ * принятых ссылок новые отбрасываются.
+ */
+public class CrawlFrontier {
+
+    private final CrawlPriority crawlPriority;
+    private final UrlCanonicalizer canonicalizer;
+    private final int maxDepth;
+    private final int maxPages;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final PriorityQueue<Node> queue = new PriorityQueue<>();
+    private long sequence;
+    private int queued;
+
+    public CrawlFrontier(CrawlPriority crawlPriority, UrlCanonicalizer canonicalizer, int maxDepth, int maxPages) {
+        this.crawlPriority = crawlPriority;
+        this.canonicalizer = canonicalizer;
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * @return {@code true}, если ссылка принята впервые.
+     */
+    public synchronized boolean offer(String url, int depth, double sitemapPriority, Instant lastModified) {
+        long fingerprint = canonicalizer.fingerprint(url);
+        Entry entry = entries.get(fingerprint);
+        if (entry != null) {
+            if (entry.url != null) {
+                entry.priority += crawlPriority.inlinkBonus(entry.inlinks);
+                queue.add(new Node(entry, entry.priority, sequence++));
+            }
+            entry.inlinks++;
+            return false;
+        }
+        if (depth > maxDepth || entries.size() >= maxPages) {
+            return false;
+        }
+        entry = new Entry(url, depth, crawlPriority.initial(depth, sitemapPriority, lastModified));
+        entries.put(fingerprint, entry);
+        queue.add(new Node(entry, entry.priority, sequence++));
+        queued++;
+        return true;
+    }
+
+    public void offerLinks(Iterable<String> urls, int depth) {
+        for (String url : urls) {
+            offer(url, depth, 0, null);
+        }
+    }
+
+    /**
+     * @return до {@code limit} ссылок с наибольшим приоритетом; выданные ссылки больше не выдаются.
+     */
+    public synchronized List<Entry> poll(int limit) {
+        List<Entry> result = new ArrayList<>(Math.min(limit, queued));
+        while (result.size() < limit && !queue.isEmpty()) {
+            Node node = queue.poll();
+            Entry entry = node.entry;
+            if (entry.url == null || node.priority != entry.priority) {
+                continue;
+            }
+            result.add(new Entry(entry.url, entry.depth, entry.priority));
+            entry.url = null;
+            queued--;
+        }
+        return result;
+    }
+
+    public synchronized boolean isEmpty() {
+        return queued == 0;
+    }
+
+    /**
+     * Ссылка очереди. После выдачи в записи очереди остается только отпечаток, а сама строка ссылки освобождается.
+     */
+    public static final class Entry {
+        private String url;
+        private final int depth;
+        private double priority;
+        private int inlinks = 1;
+
+        private Entry(String url, int depth, double priority) {
+            this.url = url;
+            this.depth = depth;
+            this.priority = priority;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public double getPriority() {
+            return priority;
+        }
+    }
+
+    private static final class Node implements Comparable<Node> {
+        private final Entry entry;
+        private final double priority;
+        private final long sequence;
+
+        private Node(Entry entry, double priority, long sequence) {
+            this.entry = entry;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            int byPriority = Double.compare(other.priority, priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Приоритет ссылки в очереди обхода; чем больше, тем раньше ссылка будет загружена.
+ * <p>
+ * Приоритет складывается из близости к главной странице, числа входящих ссылок, {@code priority} из карты сайта
+ * и свежести {@code lastmod}: недавно измененные страницы раньше других нуждаются в повторном обходе, поэтому
+ * их вес убывает вдвое каждые {@code crawl-settings.priority.freshness-half-life-days} дней. Вклад входящих ссылок
+ * растет как гармонический ряд (примерно логарифм их числа), поэтому его можно наращивать по одной ссылке,
+ * в том числе запросом к таблице очереди.
+ */
+@Component
+@RequiredArgsConstructor
+public class CrawlPriority {
+
+    private final CrawlSettings crawlSettings;
+
+    /**
+     * @param sitemapPriority {@code priority} из карты сайта; 0 для ссылок, найденных на страницах.
+     * @param lastModified    {@code lastmod} из карты сайта или {@code null}.
+     * @return приоритет ссылки с одной входящей ссылкой.
+     */
+    public double initial(int depth, double sitemapPriority, Instant lastModified) {
+        CrawlSettings.Priority weights = crawlSettings.getPriority();
+        double priority = weights.getDepth() / (1 + depth)
+                + weights.getSitemap() * sitemapPriority
+                + inlinkBonus(0);
+        if (lastModified != null) {
+            double ageDays = Math.max(0, Duration.between(lastModified, Instant.now()).toHours() / 24.0);
+            priority += weights.getFreshness() * Math.pow(0.5, ageDays / weights.getFreshnessHalfLifeDays());
+        }
+        return priority;
+    }
+
+    /**
+     * @return прибавка к приоритету от очередной входящей ссылки, если ранее их было {@code inlinks}.
+     */
+    public double inlinkBonus(int inlinks) {
+        return crawlSettings.getPriority().getInlinks() / (inlinks + 1);
+    }
+}
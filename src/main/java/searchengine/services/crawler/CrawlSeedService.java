@@ -0,0 +1,190 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import searchengine.config.CrawlSettings;
+import searchengine.model.Site;
+import searchengine.services.crawler.SitemapParser.SitemapEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Правила robots.txt и начальные ссылки обхода из карт сайта.
+ * <p>
+ * robots.txt загружается один раз на обход сайта и хранится до {@link #release(Site)}; недоступный файл
+ * или ответ с ошибкой означают отсутствие ограничений. Карты сайта берутся из строк {@code Sitemap} robots.txt,
+ * а если их нет — из {@code /sitemap.xml}; индексы карт раскрываются, пока не прочитано
+ * {@code crawl-settings.max-sitemaps} файлов или не набрано {@code crawl-settings.max-sitemap-urls} ссылок.
+ * Ссылки из карт канонизируются, запрещенные robots.txt отбрасываются, а остальные упорядочиваются по
+ * {@code lastmod} от новых к старым, затем по {@code priority}. Карты с других хостов не читаются.
+ * <p>
+ * Задержка между загрузками ({@code Crawl-delay} или {@code search-settings.delay}, что больше) соблюдается
+ * общим {@link FetchThrottle} сайта, который делят все потоки обхода этого сайта на узле.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CrawlSeedService {
+
+    private static final int ROBOTS_MAX_BYTES = 512 * 1024;
+
+    private final CrawlSettings crawlSettings;
+    private final UrlCanonicalizer urlCanonicalizer;
+
+    @Value("${search-settings.user-agent}")
+    private String userAgent;
+
+    @Value("${search-settings.referrer}")
+    private String referrer;
+
+    private final Map<String, RobotsRules> rulesBySite = new ConcurrentHashMap<>();
+    private final Map<String, FetchThrottle> throttlesBySite = new ConcurrentHashMap<>();
+
+    public RobotsRules rules(Site site) {
+        if (!crawlSettings.isRespectRobots()) {
+            return RobotsRules.allowAll();
+        }
+        return rulesBySite.computeIfAbsent(site.getUrl(), this::loadRules);
+    }
+
+    /**
+     * @param url каноническая ссылка сайта.
+     */
+    public boolean isAllowed(Site site, String url) {
+        int hostStart = url.indexOf("://");
+        int pathStart = hostStart < 0 ? -1 : url.indexOf('/', hostStart + 3);
+        return rules(site).isAllowed(pathStart < 0 ? "/" : url.substring(pathStart));
+    }
+
+    public long crawlDelayMs(Site site, long defaultDelayMs) {
+        return Math.max(defaultDelayMs, rules(site).getCrawlDelayMs());
+    }
+
+    public FetchThrottle throttle(Site site, long defaultDelayMs) {
+        return throttlesBySite.computeIfAbsent(site.getUrl(), url -> new FetchThrottle(crawlDelayMs(site, defaultDelayMs)));
+    }
+
+    /**
+     * @return канонические разрешенные ссылки из карт сайта в порядке обхода, без главной страницы.
+     */
+    public List<SitemapEntry> seeds(Site site) {
+        if (!crawlSettings.isUseSitemaps()) {
+            return List.of();
+        }
+        Deque<String> pending = new ArrayDeque<>(rules(site).getSitemaps());
+        if (pending.isEmpty()) {
+            pending.add(site.getUrl() + "/sitemap.xml");
+        }
+        Set<String> readSitemaps = new HashSet<>();
+        Set<Long> seen = new HashSet<>();
+        String root = urlCanonicalizer.canonicalize(site.getUrl(), site.getUrl());
+        if (root != null) {
+            seen.add(urlCanonicalizer.fingerprint(root));
+        }
+        List<SitemapEntry> seeds = new ArrayList<>();
+        int maxUrls = crawlSettings.getMaxSitemapUrls();
+
+        while (!pending.isEmpty() && readSitemaps.size() < crawlSettings.getMaxSitemaps() && seeds.size() < maxUrls) {
+            String sitemapUrl = pending.poll();
+            if (!readSitemaps.add(sitemapUrl)) {
+                continue;
+            }
+            if (!isSameHost(sitemapUrl, site)) {
+                log.warn("Карта сайта {} находится на другом хосте и пропущена", sitemapUrl);
+                continue;
+            }
+            try {
+                Connection.Response response = fetch(sitemapUrl, 0);
+                if (response.statusCode() >= 400) {
+                    continue;
+                }
+                try (InputStream body = response.bodyStream()) {
+                    SitemapParser.parse(body, entry -> {
+                        if (seeds.size() >= maxUrls) {
+                            return;
+                        }
+                        String url = urlCanonicalizer.canonicalize(entry.getUrl(), site.getUrl());
+                        if (url != null && isAllowed(site, url) && seen.add(urlCanonicalizer.fingerprint(url))) {
+                            seeds.add(new SitemapEntry(url, entry.getLastModified(), entry.getPriority()));
+                        }
+                    }, pending::add);
+                }
+            } catch (Exception e) {
+                log.warn("Не удалось прочитать карту сайта {}: {}", sitemapUrl, e.getMessage());
+            }
+        }
+        seeds.sort(Comparator.comparing(SitemapEntry::getLastModified, Comparator.nullsLast(Comparator.<Instant>reverseOrder()))
+                .thenComparing(Comparator.comparingDouble(SitemapEntry::getPriority).reversed()));
+        if (!seeds.isEmpty()) {
+            log.info("Сайт {}: из карт сайта получено {} ссылок", site.getUrl(), seeds.size());
+        }
+        return seeds;
+    }
+
+    public void release(Site site) {
+        rulesBySite.remove(site.getUrl());
+        throttlesBySite.remove(site.getUrl());
+    }
+
+    /**
+     * Забывает правила сайтов, обход которых завершен, чтобы следующий обход перечитал robots.txt.
+     */
+    public void retainSites(Set<String> siteUrls) {
+        rulesBySite.keySet().retainAll(siteUrls);
+        throttlesBySite.keySet().retainAll(siteUrls);
+    }
+
+    public void clear() {
+        rulesBySite.clear();
+        throttlesBySite.clear();
+    }
+
+    private static boolean isSameHost(String url, Site site) {
+        try {
+            String host = URI.create(url.trim()).getHost();
+            return host != null && host.equalsIgnoreCase(URI.create(site.getUrl()).getHost());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private RobotsRules loadRules(String siteUrl) {
+        try {
+            Connection.Response response = fetch(siteUrl + "/robots.txt", ROBOTS_MAX_BYTES);
+            if (response.statusCode() >= 400) {
+                return RobotsRules.allowAll();
+            }
+            return RobotsRules.parse(response.body(), crawlSettings.getRobotsAgent());
+        } catch (Exception e) {
+            log.warn("Не удалось загрузить robots.txt сайта {}: {}", siteUrl, e.getMessage());
+            return RobotsRules.allowAll();
+        }
+    }
+
+    private Connection.Response fetch(String url, int maxBodySize) throws IOException {
+        return Jsoup.connect(url)
+                .userAgent(userAgent)
+                .referrer(referrer)
+                .timeout(15000)
+                .ignoreHttpErrors(true)
+                .ignoreContentType(true)
+                .maxBodySize(maxBodySize)
+                .execute();
+    }
+}
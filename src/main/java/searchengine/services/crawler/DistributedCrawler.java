@@ -0,0 +1,212 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import searchengine.config.CrawlSettings;
+import searchengine.dto.crawler.PageProcessingResult;
+import searchengine.model.FrontierUrl;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.lemma.LemmaEngine;
+import searchengine.services.segment.SegmentIndexService;
+import searchengine.services.statistics.StatisticsChanges;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Рабочие потоки распределенного обхода. На каждом узле с {@code crawl-settings.mode: distributed}
+ * запускается {@code crawl-settings.workers} потоков, которые забирают из {@link FrontierService} пачки
+ * ссылок, обрабатывают их через {@link PageProcessorService} и ставят найденные ссылки обратно в очередь.
+ * <p>
+ * Отдельный поток раз в {@code crawl-settings.heartbeat-interval-ms} продлевает аренды ссылок, которые
+ * рабочие потоки узла еще не закрыли, возвращает
+ * в очередь просроченные аренды всех узлов и переводит в {@code INDEXED} сайты, у которых не осталось
+ * ни ожидающих, ни арендованных ссылок. Найденные ссылки ставятся в очередь раньше, чем закрывается
+ * аренда страницы, поэтому сайт не может оказаться пустым, пока его обход продолжается.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "crawl-settings.mode", havingValue = "distributed")
+public class DistributedCrawler {
+
+    private final FrontierService frontierService;
+    private final PageProcessorService pageProcessor;
+    private final SiteRepository siteRepository;
+    private final CrawlSettings crawlSettings;
+    private final StatisticsChanges statisticsChanges;
+    private final ObjectProvider<SegmentIndexService> segmentIndexService;
+    private final LemmaEngine lemmaEngine;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final CrawlSeedService crawlSeedService;
+
+    @Value("${search-settings.delay}")
+    private int delay;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private final Set<Long> leasedIds = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService heartbeat;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < crawlSettings.getWorkers(); i++) {
+            Thread worker = new Thread(this::work, "Crawl-Worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Crawl-Heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::heartbeat, crawlSettings.getHeartbeatIntervalMs(),
+                crawlSettings.getHeartbeatIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("Узел {} обслуживает распределенный обход: {} рабочих потоков",
+                crawlSettings.getNodeId(), crawlSettings.getWorkers());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    private void work() {
+        try {
+            claimAndProcess();
+        } finally {
+            lemmaEngine.releaseThreadResources();
+        }
+    }
+
+    private void claimAndProcess() {
+        String nodeId = crawlSettings.getNodeId();
+        while (running) {
+            try {
+                List<FrontierUrl> batch = frontierService.claim(nodeId, crawlSettings.getBatchSize());
+                if (batch.isEmpty()) {
+                    Thread.sleep(crawlSettings.getPollIntervalMs());
+                    continue;
+                }
+                processBatch(batch, nodeId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Ошибка рабочего потока обхода: {}", e.getMessage());
+                sleepQuietly(crawlSettings.getPollIntervalMs());
+            }
+        }
+    }
+
+    /**
+     * Если обработка прервалась ошибкой, необработанный остаток пачки сразу возвращается в очередь;
+     * если не удалось и это, его аренды просто перестают продлеваться и истекают.
+     */
+    private void processBatch(List<FrontierUrl> batch, String nodeId) throws InterruptedException {
+        batch.forEach(url -> leasedIds.add(url.getId()));
+        int processed = 0;
+        try {
+            Map<Integer, Site> sites = indexingSites(batch);
+            for (FrontierUrl url : batch) {
+                Site site = sites.get(url.getSiteId());
+                if (site == null) {
+                    frontierService.finish(url, nodeId, false);
+                } else {
+                    crawlSeedService.throttle(site, delay).acquire();
+                    PageProcessingResult result = pageProcessor.process(url.getUrl(), site);
+                    if (result.isSuccess()) {
+                        frontierService.enqueue(site.getId(), result.getExtractedLinks(), url.getDepth() + 1);
+                    }
+                    frontierService.finish(url, nodeId, result.isSuccess());
+                }
+                leasedIds.remove(url.getId());
+                processed++;
+            }
+        } finally {
+            if (processed < batch.size()) {
+                List<FrontierUrl> remaining = batch.subList(processed, batch.size());
+                try {
+                    frontierService.release(remaining, nodeId);
+                } catch (RuntimeException e) {
+                    log.warn("Не удалось вернуть в очередь {} ссылок: {}", remaining.size(), e.getMessage());
+                } finally {
+                    remaining.forEach(url -> leasedIds.remove(url.getId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Ссылки сайтов, индексация которых уже остановлена или завершена, закрываются без загрузки.
+     */
+    private Map<Integer, Site> indexingSites(List<FrontierUrl> batch) {
+        List<Integer> siteIds = batch.stream().map(FrontierUrl::getSiteId).distinct().collect(Collectors.toList());
+        return siteRepository.findAllById(siteIds).stream()
+                .filter(site -> site.getStatus() == SiteStatus.INDEXING)
+                .collect(Collectors.toMap(Site::getId, Function.identity()));
+    }
+
+    private void heartbeat() {
+        try {
+            frontierService.renewLeases(crawlSettings.getNodeId(), Set.copyOf(leasedIds));
+            int released = frontierService.releaseExpiredLeases();
+            if (released > 0) {
+                log.info("Возвращено в очередь просроченных аренд: {}", released);
+            }
+            completeFinishedSites();
+        } catch (Exception e) {
+            log.warn("Ошибка пульса распределенного обхода: {}", e.getMessage());
+        }
+    }
+
+    private void completeFinishedSites() {
+        List<Site> indexingSites = siteRepository.findByStatus(SiteStatus.INDEXING);
+        nearDuplicateDetector.retainSites(indexingSites.stream().map(Site::getId).collect(Collectors.toSet()));
+        crawlSeedService.retainSites(indexingSites.stream().map(Site::getUrl).collect(Collectors.toSet()));
+        for (Site site : indexingSites) {
+            if (frontierService.hasPendingUrls(site.getId())) {
+                continue;
+            }
+            int updated = siteRepository.updateStatus(site.getId(), SiteStatus.INDEXING, SiteStatus.INDEXED, null,
+                    LocalDateTime.now(ZoneOffset.UTC));
+            if (updated > 0) {
+                log.info("Распределенный обход сайта {} завершен", site.getUrl());
+                segmentIndexService.ifAvailable(service -> service.requestSeal(site));
+                statisticsChanges.markChanged();
+            }
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
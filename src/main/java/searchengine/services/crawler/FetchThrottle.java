@@ -0,0 +1,33 @@
+package searchengine.services.crawler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий для всех потоков обхода сайта интервал между загрузками. Каждый вызов {@link #acquire()} резервирует
+ * следующее свободное время загрузки и ждет его, поэтому при любом числе потоков сайт получает не больше
+ * одного запроса за интервал.
+ */
+public class FetchThrottle {
+
+    private final long intervalMs;
+    private final AtomicLong nextFetchAt = new AtomicLong(Long.MIN_VALUE);
+
+    public FetchThrottle(long intervalMs) {
+        this.intervalMs = Math.max(0, intervalMs);
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public void acquire() throws InterruptedException {
+        if (intervalMs == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long slot = Math.max(now, nextFetchAt.getAndUpdate(next -> Math.max(next, now) + intervalMs));
+        if (slot > now) {
+            Thread.sleep(slot - now);
+        }
+    }
+}
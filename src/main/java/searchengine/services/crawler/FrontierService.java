@@ -0,0 +1,173 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.CrawlSettings;
+import searchengine.model.FrontierStatus;
+import searchengine.model.FrontierUrl;
+import searchengine.model.Site;
+import searchengine.repositories.FrontierRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.crawler.SitemapParser.SitemapEntry;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Общая очередь ссылок распределенного обхода в таблице {@code frontier}.
+ * <p>
+ * Узел забирает в аренду пачку ссылок с наибольшим {@link CrawlPriority приоритетом} запросом
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, поэтому одновременные запросы разных узлов получают разные строки
+ * и не ждут друг друга. Аренда ограничена
+ * по времени и продлевается пульсом узла; аренды узла, переставшего продлевать их, возвращаются в очередь,
+ * а ссылка, исчерпавшая {@code crawl-settings.max-attempts} попыток, помечается как неудачная.
+ */
+@Service
+@RequiredArgsConstructor
+public class FrontierService {
+
+    private static final Set<FrontierStatus> PENDING = EnumSet.of(FrontierStatus.QUEUED, FrontierStatus.LEASED);
+
+    private final FrontierRepository frontierRepository;
+    private final SiteRepository siteRepository;
+    private final CrawlSettings crawlSettings;
+    private final CrawlPriority crawlPriority;
+
+    /**
+     * Создает сайт и ставит в очередь его главную страницу и ссылки из карт сайта одной транзакцией,
+     * чтобы другой узел не успел счесть обход нового сайта завершенным.
+     */
+    @Transactional
+    public Site startSite(Site site, List<SitemapEntry> seeds) {
+        siteRepository.save(site);
+        long room = remaining(site.getId());
+        room = enqueue(site.getId(), site.getUrl(), 0, crawlPriority.initial(0, 1, null), room);
+        if (crawlSettings.getMaxDepth() >= 1) {
+            for (SitemapEntry seed : seeds) {
+                room = enqueue(site.getId(), seed.getUrl(), 1,
+                        crawlPriority.initial(1, seed.getPriority(), seed.getLastModified()), room);
+            }
+        }
+        return site;
+    }
+
+    /**
+     * Ставит в очередь ссылки, найденные на странице. Ссылки глубже {@code crawl-settings.max-depth} отбрасываются;
+     * когда в очереди сайта набралось {@code crawl-settings.max-pages} ссылок, уже известным ссылкам только
+     * прибавляются входящие, а новые не принимаются.
+     */
+    @Transactional
+    public void enqueue(int siteId, Collection<String> urls, int depth) {
+        if (depth > crawlSettings.getMaxDepth()) {
+            return;
+        }
+        double priority = crawlPriority.initial(depth, 0, null);
+        long room = remaining(siteId);
+        for (String url : urls) {
+            room = enqueue(siteId, url, depth, priority, room);
+        }
+    }
+
+    private long enqueue(int siteId, String url, int depth, double priority, long room) {
+        long urlHash = UrlFingerprint.of(url);
+        boolean limited = isLimited();
+        boolean known = limited && frontierRepository.existsBySiteIdAndUrlHash(siteId, urlHash);
+        if (!known && room <= 0) {
+            return room;
+        }
+        frontierRepository.upsert(siteId, url, urlHash, depth, priority, crawlSettings.getPriority().getInlinks());
+        return known || !limited ? room : room - 1;
+    }
+
+    private long remaining(int siteId) {
+        return isLimited() ? crawlSettings.getMaxPages() - frontierRepository.countBySiteId(siteId) : Long.MAX_VALUE;
+    }
+
+    private boolean isLimited() {
+        return crawlSettings.getMaxPages() != Integer.MAX_VALUE;
+    }
+
+    @Transactional
+    public List<FrontierUrl> claim(String nodeId, int batchSize) {
+        List<FrontierUrl> batch = frontierRepository.findForClaim(FrontierStatus.QUEUED, PageRequest.of(0, batchSize));
+        LocalDateTime leaseUntil = now().plusSeconds(crawlSettings.getLeaseSeconds());
+        for (FrontierUrl url : batch) {
+            url.setStatus(FrontierStatus.LEASED);
+            url.setLeaseOwner(nodeId);
+            url.setLeaseUntil(leaseUntil);
+            url.setAttempts(url.getAttempts() + 1);
+        }
+        return batch;
+    }
+
+    /**
+     * Закрывает аренду ссылки. Если аренда уже истекла и ссылку забрал другой узел, ничего не меняется.
+     */
+    @Transactional
+    public void finish(FrontierUrl url, String nodeId, boolean success) {
+        frontierRepository.finish(url.getId(), nodeId, success ? FrontierStatus.DONE : FrontierStatus.FAILED);
+    }
+
+    /**
+     * Продлевает аренды только тех ссылок, которые рабочие потоки узла еще обрабатывают. Ссылки, брошенные
+     * потоком после ошибки, продлеваться перестают и возвращаются в очередь по истечении аренды.
+     */
+    @Transactional
+    public int renewLeases(String nodeId, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return frontierRepository.renewLeases(ids, nodeId, now().plusSeconds(crawlSettings.getLeaseSeconds()),
+                FrontierStatus.LEASED);
+    }
+
+    /**
+     * Досрочно возвращает в очередь необработанный остаток пачки. Ссылки, исчерпавшие попытки, закрываются
+     * как неудачные, чтобы страница, на которой поток каждый раз падает, не возвращалась бесконечно.
+     */
+    @Transactional
+    public void release(Collection<FrontierUrl> urls, String nodeId) {
+        Map<Boolean, List<Long>> byExhausted = urls.stream().collect(Collectors.partitioningBy(
+                url -> url.getAttempts() >= crawlSettings.getMaxAttempts(),
+                Collectors.mapping(FrontierUrl::getId, Collectors.toList())));
+        if (!byExhausted.get(false).isEmpty()) {
+            frontierRepository.releaseLeases(byExhausted.get(false), nodeId, FrontierStatus.LEASED, FrontierStatus.QUEUED);
+        }
+        if (!byExhausted.get(true).isEmpty()) {
+            frontierRepository.releaseLeases(byExhausted.get(true), nodeId, FrontierStatus.LEASED, FrontierStatus.FAILED);
+        }
+    }
+
+    /**
+     * @return сколько просроченных аренд возвращено в очередь.
+     */
+    @Transactional
+    public int releaseExpiredLeases() {
+        LocalDateTime now = now();
+        int maxAttempts = crawlSettings.getMaxAttempts();
+        frontierRepository.failExhausted(now, maxAttempts, FrontierStatus.LEASED, FrontierStatus.FAILED);
+        return frontierRepository.releaseExpired(now, maxAttempts, FrontierStatus.LEASED, FrontierStatus.QUEUED);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasPendingUrls(int siteId) {
+        return frontierRepository.existsBySiteIdAndStatusIn(siteId, PENDING);
+    }
+
+    @Transactional
+    public void discardQueued() {
+        frontierRepository.deleteAllByStatus(FrontierStatus.QUEUED);
+    }
+
+    private static LocalDateTime now() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+}
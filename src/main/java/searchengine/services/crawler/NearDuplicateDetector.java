@@ -0,0 +1,137 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+import searchengine.config.NearDuplicateMode;
+import searchengine.model.Site;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поиск почти-дубликатов среди страниц сайта, обойденных этим узлом, по {@link SimHash} их лемм.
+ * <p>
+ * Отпечатки хранятся в памяти в LSH-таблице на сайт: 64 бита делятся на {@value #BANDS} полосы по 16 бит,
+ * и для каждой полосы ведется корзина отпечатков с таким же значением этой полосы. Если два отпечатка отличаются
+ * не более чем в {@code crawl-settings.near-duplicate-distance} битах (не больше трех), хотя бы одна полоса
+ * у них совпадает, поэтому кандидатов достаточно искать в {@value #BANDS} корзинах, а не среди всех страниц сайта.
+ * Страницы, в которых меньше {@code crawl-settings.near-duplicate-min-lemmas} разных лемм, не сравниваются:
+ * отпечаток короткого текста слишком неустойчив.
+ * <p>
+ * Проверка и регистрация страницы разделены сохранением страницы, поэтому два одновременно обходимых дубликата
+ * изредка оба попадают в индекс; таблица сайта освобождается по завершении его обхода.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NearDuplicateDetector {
+
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+
+    private final CrawlSettings crawlSettings;
+
+    private final Map<Integer, SiteTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * @return SimHash лемм или {@code null}, если поиск дубликатов выключен либо страница слишком коротка.
+     */
+    public Long fingerprint(Map<String, Integer> lemmas) {
+        if (crawlSettings.getNearDuplicates() == NearDuplicateMode.OFF || lemmas.size() < crawlSettings.getNearDuplicateMinLemmas()) {
+            return null;
+        }
+        return SimHash.of(lemmas);
+    }
+
+    /**
+     * @return идентификатор ранее зарегистрированной страницы сайта с близким отпечатком или {@code null}.
+     */
+    public Integer findOriginal(Site site, long fingerprint) {
+        SiteTable table = tables.get(site.getId());
+        return table == null ? null : table.find(fingerprint, Math.min(BANDS - 1, crawlSettings.getNearDuplicateDistance()));
+    }
+
+    public void register(Site site, long fingerprint, int pageId) {
+        tables.computeIfAbsent(site.getId(), id -> new SiteTable()).add(fingerprint, pageId);
+    }
+
+    public void recordDuplicate(Site site) {
+        tables.computeIfAbsent(site.getId(), id -> new SiteTable()).countDuplicate();
+    }
+
+    public void release(Site site) {
+        log(site.getId(), tables.remove(site.getId()));
+    }
+
+    /**
+     * Освобождает таблицы сайтов, обход которых завершен или остановлен, в том числе другим узлом.
+     */
+    public void retainSites(Set<Integer> siteIds) {
+        tables.keySet().removeIf(siteId -> {
+            if (siteIds.contains(siteId)) {
+                return false;
+            }
+            log(siteId, tables.get(siteId));
+            return true;
+        });
+    }
+
+    public void clear() {
+        tables.clear();
+    }
+
+    private static void log(Integer siteId, SiteTable table) {
+        if (table != null && table.duplicates > 0) {
+            log.info("Сайт {}: найдено почти-дубликатов {} на {} уникальных страниц", siteId, table.duplicates, table.size);
+        }
+    }
+
+    private static final class SiteTable {
+        private final List<Map<Integer, List<long[]>>> bands = new ArrayList<>(BANDS);
+        private int size;
+        private int duplicates;
+
+        private SiteTable() {
+            for (int band = 0; band < BANDS; band++) {
+                bands.add(new HashMap<>());
+            }
+        }
+
+        private synchronized Integer find(long fingerprint, int maxDistance) {
+            for (int band = 0; band < BANDS; band++) {
+                List<long[]> bucket = bands.get(band).get(bandKey(fingerprint, band));
+                if (bucket == null) {
+                    continue;
+                }
+                for (long[] entry : bucket) {
+                    if (SimHash.distance(entry[0], fingerprint) <= maxDistance) {
+                        return (int) entry[1];
+                    }
+                }
+            }
+            return null;
+        }
+
+        private synchronized void add(long fingerprint, int pageId) {
+            long[] entry = {fingerprint, pageId};
+            for (int band = 0; band < BANDS; band++) {
+                bands.get(band).computeIfAbsent(bandKey(fingerprint, band), key -> new ArrayList<>(1)).add(entry);
+            }
+            size++;
+        }
+
+        private synchronized void countDuplicate() {
+            duplicates++;
+        }
+
+        private static int bandKey(long fingerprint, int band) {
+            return (int) ((fingerprint >>> (band * BAND_BITS)) & 0xffff);
+        }
+    }
+}
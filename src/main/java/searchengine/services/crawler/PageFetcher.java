@@ -0,0 +1,159 @@
+package searchengine.services.crawler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Загрузка HTML-страниц с ограничением размера.
+ * <p>
+ * Заголовки ответа проверяются до чтения тела: ответ с {@code Content-Type}, отличным от HTML, или с
+ * {@code Content-Length} больше {@code crawl-settings.max-body-bytes} закрывается без загрузки. Тело читается
+ * потоком не более чем до {@code max-body-bytes} байт; более длинная страница обрезается и разбирается как есть.
+ * Кодировка берется из {@code Content-Type}, а если она там не указана, определяется Jsoup по BOM и
+ * {@code <meta charset>}. Счетчики загрузок, прерываний и обрезаний доступны через {@link #stats()}.
+ */
+@Slf4j
+@Component
+public class PageFetcher {
+
+    private final CrawlSettings crawlSettings;
+
+    @Value("${search-settings.user-agent}")
+    private String userAgent;
+
+    @Value("${search-settings.referrer}")
+    private String referrer;
+
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder abortedContentType = new LongAdder();
+    private final LongAdder abortedContentLength = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public PageFetcher(CrawlSettings crawlSettings) {
+        this.crawlSettings = crawlSettings;
+    }
+
+    /**
+     * @return загруженная страница или {@code null}, если ответ не HTML или слишком велик.
+     * @throws IOException если страница недоступна.
+     */
+    public FetchedPage fetch(String url) throws IOException {
+        try {
+            Connection.Response response = Jsoup.connect(url)
+                    .userAgent(userAgent)
+                    .referrer(referrer)
+                    .timeout(crawlSettings.getFetchTimeoutMs())
+                    .ignoreHttpErrors(true)
+                    .ignoreContentType(true)
+                    .maxBodySize(0)
+                    .execute();
+
+            String contentType = response.contentType();
+            if (contentType != null && !isHtml(contentType)) {
+                abortedContentType.increment();
+                discard(response);
+                return null;
+            }
+            long maxBytes = crawlSettings.getMaxBodyBytes();
+            String contentLength = response.header("Content-Length");
+            if (contentLength != null && parseLength(contentLength) > maxBytes) {
+                abortedContentLength.increment();
+                discard(response);
+                return null;
+            }
+
+            byte[] body;
+            boolean cut;
+            try (InputStream input = response.bodyStream()) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.min(maxBytes, 64 * 1024));
+                byte[] chunk = new byte[8192];
+                long remaining = maxBytes;
+                int read;
+                while (remaining > 0 && (read = input.read(chunk, 0, (int) Math.min(chunk.length, remaining))) != -1) {
+                    buffer.write(chunk, 0, read);
+                    remaining -= read;
+                }
+                cut = remaining == 0 && input.read() != -1;
+                body = buffer.toByteArray();
+            }
+            if (cut) {
+                truncated.increment();
+                log.debug("Страница {} обрезана до {} байт", url, maxBytes);
+            }
+            fetched.increment();
+            bytes.add(body.length);
+
+            Document document = Jsoup.parse(new ByteArrayInputStream(body), charset(response.charset()), url);
+            return new FetchedPage(response.statusCode(), document, cut);
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            throw e;
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(fetched.sum(), bytes.sum(), abortedContentType.sum(), abortedContentLength.sum(),
+                truncated.sum(), failed.sum());
+    }
+
+    private static boolean isHtml(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String charset(String charset) {
+        try {
+            return charset != null && Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void discard(Connection.Response response) {
+        try {
+            response.bodyStream().close();
+        } catch (IOException | RuntimeException ignored) {
+            // соединение закрывается в любом случае
+        }
+    }
+
+    @lombok.Value
+    public static class FetchedPage {
+        int statusCode;
+        Document document;
+        boolean truncated;
+    }
+
+    @lombok.Value
+    public static class Stats {
+        long fetched;
+        long bytes;
+        long abortedContentType;
+        long abortedContentLength;
+        long truncated;
+        long failed;
+    }
+}
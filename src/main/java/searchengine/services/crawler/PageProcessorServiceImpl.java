@@ -2,25 +2,21 @@ package searchengine.services.crawler;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlSettings;
+import searchengine.config.NearDuplicateMode;
 import searchengine.dto.crawler.PageProcessingResult;
 import searchengine.dto.indexing.LemmaDto;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.repositories.PageRepository;
-import searchengine.repositories.SiteRepository;
 import searchengine.services.lemma.DataCollector;
 import searchengine.services.lemma.LemmaEngine;
+import searchengine.services.statistics.SiteCounters;
 
 import java.net.URI;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -31,54 +27,57 @@ import java.util.Set;
 public class PageProcessorServiceImpl implements PageProcessorService {
 
     private final PageRepository pageRepository;
-    private final SiteRepository siteRepository;
+    private final SiteActivityTracker siteActivityTracker;
     private final LemmaEngine lemmaEngine;
     private final DataCollector dataCollector;
-
-    @Value("${search-settings.user-agent}")
-    private String userAgent;
-
-    @Value("${search-settings.referrer}")
-    private String referrer;
+    private final SiteCounters siteCounters;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final CrawlSettings crawlSettings;
+    private final CrawlSeedService crawlSeedService;
+    private final PageFetcher pageFetcher;
 
     @Override
     public PageProcessingResult process(String pageUrl, Site siteEntity) {
         try {
-            Connection.Response response = Jsoup.connect(pageUrl)
-                    .userAgent(userAgent)
-                    .referrer(referrer)
-                    .timeout(15000)
-                    .ignoreHttpErrors(true)
-                    .execute();
-
-            String contentType = response.contentType();
-            if (contentType != null && !contentType.startsWith("text/html")) {
+            PageFetcher.FetchedPage fetchedPage = pageFetcher.fetch(pageUrl);
+            if (fetchedPage == null) {
                 return PageProcessingResult.failure();
             }
 
-            Document document = response.parse();
+            Document document = fetchedPage.getDocument();
             String content = document.outerHtml();
-            int statusCode = response.statusCode();
+            int statusCode = fetchedPage.getStatusCode();
             String relativePath = new URI(pageUrl).getPath();
             if (relativePath.isEmpty()) {
                 relativePath = "/";
             }
 
-            Page page = new Page();
-            page.setSite(siteEntity);
-            page.setPath(relativePath);
-            page.setCode(statusCode);
-            page.setContent(content);
-            pageRepository.save(page);
+            boolean successful = statusCode >= 200 && statusCode < 300;
+            Map<String, Integer> lemmas = successful ? lemmaEngine.getLemmaMap(lemmaEngine.cleanHtml(content)) : null;
+            Long fingerprint = successful ? nearDuplicateDetector.fingerprint(lemmas) : null;
+            Integer originalId = fingerprint == null ? null : nearDuplicateDetector.findOriginal(siteEntity, fingerprint);
 
-            siteEntity.setStatusTime(LocalDateTime.now(ZoneOffset.UTC));
-            siteRepository.save(siteEntity);
+            if (originalId != null) {
+                nearDuplicateDetector.recordDuplicate(siteEntity);
+                if (crawlSettings.getNearDuplicates() == NearDuplicateMode.ALIAS) {
+                    savePage(siteEntity, relativePath, statusCode, "", originalId);
+                }
+                siteActivityTracker.heartbeat(siteEntity);
+                document.setBaseUri(pageUrl);
+                return PageProcessingResult.success(extractLinks(document, siteEntity));
+            }
 
-            if (statusCode >= 200 && statusCode < 300) {
-                Map<String, Integer> lemmas = lemmaEngine.getLemmaMap(lemmaEngine.cleanHtml(content));
+            Page page = savePage(siteEntity, relativePath, statusCode, content, null);
+            siteActivityTracker.heartbeat(siteEntity);
+
+            if (successful) {
+                if (fingerprint != null) {
+                    nearDuplicateDetector.register(siteEntity, fingerprint, page.getId());
+                }
                 dataCollector.addLemmaDto(new LemmaDto(page, lemmas));
                 document.setBaseUri(pageUrl);
-                Set<String> links = extractLinks(document, siteEntity.getUrl());
+                Set<String> links = extractLinks(document, siteEntity);
                 return PageProcessingResult.success(links);
             } else {
                 return PageProcessingResult.failure();
@@ -87,50 +86,34 @@ public class PageProcessorServiceImpl implements PageProcessorService {
         } catch (Exception e) {
             String errorMessage = "Ошибка обхода страницы " + pageUrl + ": " + e.getMessage();
             log.warn(errorMessage);
-            siteEntity.setLastError(errorMessage);
-            siteRepository.save(siteEntity);
+            siteActivityTracker.recordError(siteEntity, errorMessage);
             return PageProcessingResult.failure();
         }
     }
 
-    private Set<String> extractLinks(Document document, String siteBaseUrl) {
-        Set<String> links = new HashSet<>();
-        try {
-            String normalizedBaseHost = normalizeHost(new URI(siteBaseUrl).getHost());
-            Elements elements = document.select("a[href]");
-
-            for (Element element : elements) {
-                String absUrl = element.attr("abs:href");
-
-                if (absUrl.isEmpty() || absUrl.contains("#") || absUrl.matches("(?i).*\\.(pdf|docx?|xlsx?|jpg|jpeg|png|gif|webp|zip|rar|exe|mp3|mp4|avi|mov|svg)(\\?.*)?$")) {
-                    continue;
-                }
-
-                try {
-                    URI linkUri = new URI(absUrl);
-                    String normalizedLinkHost = normalizeHost(linkUri.getHost());
+    private Page savePage(Site site, String path, int code, String content, Integer aliasOf) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(path);
+        page.setCode(code);
+        page.setContent(content);
+        page.setAliasOf(aliasOf);
+        pageRepository.save(page);
+        siteCounters.addPages(site, 1);
+        return page;
+    }
 
-                    if (normalizedLinkHost == null || !normalizedLinkHost.equalsIgnoreCase(normalizedBaseHost)) {
-                        continue;
-                    }
-                } catch (Exception e) {
-                    continue;
-                }
-                if (absUrl.endsWith("/")) {
-                    absUrl = absUrl.substring(0, absUrl.length() - 1);
-                }
-                links.add(absUrl);
+    /**
+     * Ссылки, запрещенные robots.txt, отбрасываются здесь, до постановки в очередь и загрузки.
+     */
+    private Set<String> extractLinks(Document document, Site site) {
+        Set<String> links = new HashSet<>();
+        for (Element element : document.select("a[href]")) {
+            String link = urlCanonicalizer.canonicalize(element.absUrl("href"), site.getUrl());
+            if (link != null && crawlSeedService.isAllowed(site, link)) {
+                links.add(link);
             }
-        } catch (Exception e) {
-            System.err.println("Критическая ошибка при получении базового хоста из " + siteBaseUrl);
         }
         return links;
     }
-
-    private String normalizeHost(String host) {
-        if (host != null && host.startsWith("www.")) {
-            return host.substring(4);
-        }
-        return host;
-    }
-}
\ No newline at end of file
+}
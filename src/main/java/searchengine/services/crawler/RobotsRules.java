@@ -0,0 +1,173 @@
+package searchengine.services.crawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt, относящиеся к обходчику: разрешающие и запрещающие шаблоны путей, crawl-delay и карты сайта.
+ * <p>
+ * Выбирается группа {@code User-agent} с именем обходчика, а если ее нет — группа {@code *}. Из подходящих
+ * к пути шаблонов побеждает самый длинный, при равной длине — разрешающий. Поддерживаются {@code *} и завершающий
+ * {@code $}; шаблоны без них сравниваются как префиксы, остальные компилируются один раз при разборе.
+ */
+public final class RobotsRules {
+
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), 0, List.of());
+
+    private final List<Rule> rules;
+    private final long crawlDelayMs;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMs, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMs = crawlDelayMs;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    /**
+     * @param content содержимое robots.txt.
+     * @param agent   имя обходчика, с которым сравниваются строки {@code User-agent}.
+     */
+    public static RobotsRules parse(String content, String agent) {
+        String agentName = agent.toLowerCase(Locale.ROOT);
+        List<Rule> ownRules = new ArrayList<>();
+        List<Rule> defaultRules = new ArrayList<>();
+        long ownDelay = -1;
+        long defaultDelay = -1;
+        boolean ownGroupFound = false;
+        List<String> sitemaps = new ArrayList<>();
+
+        boolean inOwnGroup = false;
+        boolean inDefaultGroup = false;
+        boolean groupHasRules = true;
+        for (String rawLine : content.split("\r?\n|\r")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (field) {
+                case "user-agent" -> {
+                    if (groupHasRules) {
+                        inOwnGroup = false;
+                        inDefaultGroup = false;
+                        groupHasRules = false;
+                    }
+                    String name = value.toLowerCase(Locale.ROOT);
+                    if (name.equals("*")) {
+                        inDefaultGroup = true;
+                    } else if (!name.isEmpty() && agentName.contains(name)) {
+                        inOwnGroup = true;
+                        ownGroupFound = true;
+                    }
+                }
+                case "allow", "disallow" -> {
+                    groupHasRules = true;
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    Rule rule = new Rule(value, field.equals("allow"));
+                    if (inOwnGroup) {
+                        ownRules.add(rule);
+                    }
+                    if (inDefaultGroup) {
+                        defaultRules.add(rule);
+                    }
+                }
+                case "crawl-delay" -> {
+                    groupHasRules = true;
+                    long delayMs = parseDelay(value);
+                    if (inOwnGroup) {
+                        ownDelay = delayMs;
+                    }
+                    if (inDefaultGroup) {
+                        defaultDelay = delayMs;
+                    }
+                }
+                case "sitemap" -> {
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return ownGroupFound
+                ? new RobotsRules(ownRules, Math.max(0, ownDelay), sitemaps)
+                : new RobotsRules(defaultRules, Math.max(0, defaultDelay), sitemaps);
+    }
+
+    /**
+     * @param path путь со строкой запроса, начинающийся с {@code /}.
+     */
+    public boolean isAllowed(String path) {
+        Rule best = null;
+        for (Rule rule : rules) {
+            if ((best == null || rule.length > best.length || (rule.length == best.length && rule.allow))
+                    && rule.matches(path)) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    public long getCrawlDelayMs() {
+        return crawlDelayMs;
+    }
+
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static long parseDelay(String value) {
+        try {
+            return (long) (Double.parseDouble(value) * 1000);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class Rule {
+        private final String prefix;
+        private final Pattern pattern;
+        private final int length;
+        private final boolean allow;
+
+        private Rule(String value, boolean allow) {
+            this.length = value.length();
+            this.allow = allow;
+            if (value.indexOf('*') < 0 && !value.endsWith("$")) {
+                this.prefix = value;
+                this.pattern = null;
+            } else {
+                boolean anchored = value.endsWith("$");
+                String body = anchored ? value.substring(0, value.length() - 1) : value;
+                StringBuilder regex = new StringBuilder();
+                for (String part : body.split("\\*", -1)) {
+                    if (regex.length() > 0) {
+                        regex.append(".*");
+                    }
+                    if (!part.isEmpty()) {
+                        regex.append(Pattern.quote(part));
+                    }
+                }
+                this.prefix = null;
+                this.pattern = Pattern.compile(regex + (anchored ? "$" : ""));
+            }
+        }
+
+        private boolean matches(String path) {
+            return prefix != null ? path.startsWith(prefix) : pattern.matcher(path).lookingAt();
+        }
+    }
+}
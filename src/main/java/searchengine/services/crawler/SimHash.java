@@ -0,0 +1,35 @@
+package searchengine.services.crawler;
+
+import java.util.Map;
+
+/**
+ * SimHash по частотам лемм страницы: каждая лемма голосует за биты своего 64-битного хеша с весом,
+ * равным числу ее употреблений. У страниц с почти одинаковым текстом отпечатки отличаются в немногих битах.
+ */
+public final class SimHash {
+
+    private SimHash() {
+    }
+
+    public static long of(Map<String, Integer> lemmas) {
+        long[] weights = new long[64];
+        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
+            long hash = UrlFingerprint.of(entry.getKey());
+            int weight = entry.getValue();
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) != 0 ? weight : -weight;
+            }
+        }
+        long result = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                result |= 1L << bit;
+            }
+        }
+        return result;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+}
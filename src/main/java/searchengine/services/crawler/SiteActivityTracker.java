@@ -0,0 +1,136 @@
+package searchengine.services.crawler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.statistics.StatisticsChanges;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пульс обхода и ошибки страниц по сайтам. Потоки обхода только обновляют состояние в памяти,
+ * а строка {@code site} обновляется одним запросом на сайт раз в {@code search-settings.heartbeat-flush-ms}.
+ * Запрос меняет лишь {@code status_time} и {@code last_error} и только пока сайт в статусе
+ * {@code INDEXING}, поэтому запоздавший сброс не затирает итоговый статус и ошибку.
+ * <p>
+ * Последние ошибки каждого сайта хранятся в кольцевом буфере на {@code search-settings.recent-errors} записей.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteActivityTracker {
+
+    private final SiteRepository siteRepository;
+    private final StatisticsChanges statisticsChanges;
+
+    @Value("${search-settings.recent-errors:20}")
+    private int recentErrorsCapacity = 20;
+
+    private final Map<Integer, Activity> activityBySite = new ConcurrentHashMap<>();
+
+    public void heartbeat(Site site) {
+        activity(site).touch(null);
+    }
+
+    public void recordError(Site site, String message) {
+        activity(site).touch(message);
+        statisticsChanges.markChanged();
+    }
+
+    /**
+     * @return последние ошибки сайта, начиная с самой свежей.
+     */
+    public List<String> recentErrors(Site site) {
+        Activity activity = activityBySite.get(site.getId());
+        return activity == null ? List.of() : activity.recentErrors();
+    }
+
+    public void clear() {
+        activityBySite.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${search-settings.heartbeat-flush-ms:3000}")
+    public void flush() {
+        activityBySite.forEach((siteId, activity) -> {
+            Pending pending = activity.drain();
+            if (pending == null) {
+                return;
+            }
+            try {
+                if (pending.lastError == null) {
+                    siteRepository.updateHeartbeat(siteId, pending.statusTime, SiteStatus.INDEXING);
+                } else {
+                    siteRepository.updateHeartbeat(siteId, pending.statusTime, pending.lastError, SiteStatus.INDEXING);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Не удалось обновить состояние сайта {}: {}", siteId, e.getMessage());
+            }
+        });
+    }
+
+    private Activity activity(Site site) {
+        return activityBySite.computeIfAbsent(site.getId(), id -> new Activity(recentErrorsCapacity));
+    }
+
+    private static final class Pending {
+        private final LocalDateTime statusTime;
+        private final String lastError;
+
+        private Pending(LocalDateTime statusTime, String lastError) {
+            this.statusTime = statusTime;
+            this.lastError = lastError;
+        }
+    }
+
+    private static final class Activity {
+        private final String[] errors;
+        private int errorCount;
+        private int head;
+        private LocalDateTime statusTime;
+        private String lastError;
+        private boolean dirty;
+
+        private Activity(int capacity) {
+            this.errors = new String[Math.max(1, capacity)];
+        }
+
+        private synchronized void touch(String error) {
+            statusTime = LocalDateTime.now(ZoneOffset.UTC);
+            if (error != null) {
+                lastError = error;
+                errors[head] = error;
+                head = (head + 1) % errors.length;
+                errorCount = Math.min(errorCount + 1, errors.length);
+            }
+            dirty = true;
+        }
+
+        private synchronized Pending drain() {
+            if (!dirty) {
+                return null;
+            }
+            dirty = false;
+            Pending pending = new Pending(statusTime, lastError);
+            lastError = null;
+            return pending;
+        }
+
+        private synchronized List<String> recentErrors() {
+            List<String> result = new ArrayList<>(errorCount);
+            for (int i = 1; i <= errorCount; i++) {
+                result.add(errors[(head - i + errors.length) % errors.length]);
+            }
+            return result;
+        }
+    }
+}
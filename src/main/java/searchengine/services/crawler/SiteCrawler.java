@@ -1,61 +1,140 @@
 package searchengine.services.crawler;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import searchengine.dto.crawler.PageProcessingResult;
 import searchengine.model.Site;
-import searchengine.services.indexing.IndexingServiceImpl;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
-@RequiredArgsConstructor
-public class SiteCrawler extends RecursiveAction {
+/**
+ * Обход одного сайта пулом из {@code parallelism} потоков, разбирающих общую {@link CrawlFrontier}.
+ * <p>
+ * Обработка страницы кладет найденные ссылки в очередь и сразу завершается, не дожидаясь обхода дочерних
+ * страниц, поэтому в памяти держится только очередь, а не дерево обхода. Счетчик {@code inFlight} считает
+ * занятые места: место занимается вместе с выборкой ссылки из очереди под одной блокировкой и освобождается
+ * только после того, как найденные на странице ссылки попали в очередь. Проверка «мест нет и очередь пуста»
+ * выполняется под той же блокировкой, поэтому означает, что новых ссылок уже не появится и обход завершен.
+ */
+@Slf4j
+public class SiteCrawler {
 
     private final PageProcessorService pageProcessor;
-    private final int delay;
+    private final FetchThrottle throttle;
     private final Site siteEntity;
-    private final String pageUrl;
-    private final Set<String> visitedUrls;
+    private final CrawlFrontier frontier;
+    private final int parallelism;
+    private final BooleanSupplier running;
+    private final ExecutorService executor;
 
-    @Override
-    protected void compute() {
-        if (!IndexingServiceImpl.isIndexing() || Thread.currentThread().isInterrupted()) {
-            return;
+    private final Object lock = new Object();
+    private int inFlight;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean stopped;
+
+    public SiteCrawler(PageProcessorService pageProcessor, FetchThrottle throttle, Site siteEntity, CrawlFrontier frontier,
+                       int parallelism, BooleanSupplier running) {
+        this.pageProcessor = pageProcessor;
+        this.throttle = throttle;
+        this.siteEntity = siteEntity;
+        this.frontier = frontier;
+        this.parallelism = Math.max(1, parallelism);
+        this.running = running;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.parallelism, runnable ->
+                new Thread(runnable, "Crawler-" + siteEntity.getId() + "-" + threadNumber.incrementAndGet()));
+    }
+
+    /**
+     * Обходит сайт и возвращает управление, когда очередь исчерпана или обход остановлен.
+     */
+    public void crawl() throws InterruptedException {
+        try {
+            schedule();
+            done.await();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Прерывает загрузки и не выдает новых ссылок; {@link #crawl()} возвращает управление сразу.
+     */
+    public void stop() {
+        stopped = true;
+        executor.shutdownNow();
+        done.countDown();
+    }
+
+    private void schedule() {
+        while (true) {
+            CrawlFrontier.Entry next;
+            synchronized (lock) {
+                if (isStopped()) {
+                    finishIfIdle();
+                    return;
+                }
+                if (inFlight >= parallelism) {
+                    return;
+                }
+                List<CrawlFrontier.Entry> polled = frontier.poll(1);
+                if (polled.isEmpty()) {
+                    finishIfIdle();
+                    return;
+                }
+                inFlight++;
+                next = polled.get(0);
+            }
+            try {
+                executor.execute(() -> process(next));
+            } catch (RejectedExecutionException e) {
+                synchronized (lock) {
+                    inFlight--;
+                    finishIfIdle();
+                }
+                return;
+            }
         }
+    }
 
+    private void process(CrawlFrontier.Entry page) {
         try {
-            Thread.sleep(delay);
+            throttle.acquire();
 
-            PageProcessingResult result = pageProcessor.process(pageUrl, siteEntity);
+            PageProcessingResult result = pageProcessor.process(page.getUrl(), siteEntity);
 
             if (result.isSuccess()) {
-                createAndForkSubtasks(result.getExtractedLinks());
+                frontier.offerLinks(result.getExtractedLinks(), page.getDepth() + 1);
             }
 
-        } catch (InterruptedException | CancellationException e) {
+        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            System.out.println("Задача для " + pageUrl + " была прервана.");
+            log.debug("Задача для {} была прервана", page.getUrl());
         } catch (Exception e) {
-
-            System.err.println("Непредвиденная ошибка в задаче для URL: " + pageUrl);
-            e.printStackTrace();
+            log.warn("Непредвиденная ошибка в задаче для URL {}: {}", page.getUrl(), e.getMessage(), e);
+        } finally {
+            synchronized (lock) {
+                inFlight--;
+            }
+            schedule();
         }
     }
 
-    private void createAndForkSubtasks(Set<String> links) {
-        List<SiteCrawler> subTasks = new ArrayList<>();
-        for (String link : links) {
-            if (visitedUrls.add(link)) {
-                SiteCrawler task = new SiteCrawler(
-                        pageProcessor, delay, siteEntity, link, visitedUrls);
-                subTasks.add(task);
-            }
-        }
-        if (!subTasks.isEmpty()) {
-            invokeAll(subTasks);
+    /**
+     * Вызывается под {@code lock}: если занятых мест не осталось, обход завершен.
+     */
+    private void finishIfIdle() {
+        if (inFlight == 0) {
+            done.countDown();
         }
     }
-}
\ No newline at end of file
+
+    private boolean isStopped() {
+        return stopped || !running.getAsBoolean();
+    }
+}
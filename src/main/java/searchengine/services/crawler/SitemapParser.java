@@ -0,0 +1,131 @@
+package searchengine.services.crawler;
+
+import lombok.Value;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Потоковый разбор sitemap.xml и индексов карт сайта через StAX: в памяти держится только текущая запись,
+ * поэтому размер файла не ограничен. Сжатые gzip файлы распознаются по сигнатуре, а не по расширению.
+ * Внешние сущности и DTD отключены.
+ */
+public final class SitemapParser {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private SitemapParser() {
+    }
+
+    /**
+     * @param input    содержимое карты сайта, возможно сжатое gzip; поток не закрывается.
+     * @param urls     получает записи {@code <url>}.
+     * @param sitemaps получает адреса вложенных карт из {@code <sitemapindex>}.
+     */
+    public static void parse(InputStream input, Consumer<SitemapEntry> urls, Consumer<String> sitemaps)
+            throws IOException, XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(decompress(input));
+        try {
+            String loc = null;
+            String lastmod = null;
+            String priority = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        String name = reader.getLocalName();
+                        if (name.equals("url") || name.equals("sitemap")) {
+                            loc = null;
+                            lastmod = null;
+                            priority = null;
+                        }
+                        switch (name) {
+                            case "loc" -> loc = reader.getElementText().trim();
+                            case "lastmod" -> lastmod = reader.getElementText().trim();
+                            case "priority" -> priority = reader.getElementText().trim();
+                            default -> {
+                            }
+                        }
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        String name = reader.getLocalName();
+                        if (name.equals("url") && loc != null && !loc.isEmpty()) {
+                            urls.accept(new SitemapEntry(loc, parseDate(lastmod), parsePriority(priority)));
+                        } else if (name.equals("sitemap") && loc != null && !loc.isEmpty()) {
+                            sitemaps.accept(loc);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static InputStream decompress(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        return first == 0x1f && second == 0x8b ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    /**
+     * Дата в формате W3C Datetime: только дата или дата со временем и смещением.
+     */
+    static Instant parseDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return value.length() == 10
+                    ? LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC)
+                    : OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static double parsePriority(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0.5;
+        }
+        try {
+            return Math.max(0, Math.min(1, Double.parseDouble(value)));
+        } catch (NumberFormatException e) {
+            return 0.5;
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    /**
+     * Запись карты сайта; {@code lastModified} равно {@code null}, если дата не указана или не разобрана.
+     */
+    @Value
+    public static class SitemapEntry {
+        String url;
+        Instant lastModified;
+        double priority;
+    }
+}
@@ -0,0 +1,212 @@
+package searchengine.services.crawler;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Приводит ссылки к единому виду и отбрасывает те, которые обходить не нужно.
+ * <p>
+ * Ссылка разбирается вручную за один проход, без {@link java.net.URI} и регулярных выражений
+ * на каждый вызов. Схема и хост приводятся к нижнему регистру, хост заменяется написанием из адреса
+ * сайта (с {@code www.} или без), порт по умолчанию, фрагмент и завершающий {@code /} отбрасываются,
+ * а из строки запроса удаляются параметры из {@code crawl-settings.stripped-query-params}
+ * (имя с {@code *} на конце задает префикс). Ссылки на другие хосты, на файлы с расширениями из
+ * {@code crawl-settings.blocked-extensions} и на пути, подходящие под одно из регулярных выражений
+ * {@code crawl-settings.blocked-paths}, отбрасываются.
+ */
+@Component
+public class UrlCanonicalizer {
+
+    private final Set<String> blockedExtensions = new HashSet<>();
+    private final Pattern blockedPaths;
+    private final Set<String> strippedParams = new HashSet<>();
+    private final List<String> strippedParamPrefixes = new ArrayList<>();
+    private final Map<String, SiteBase> sites = new ConcurrentHashMap<>();
+
+    public UrlCanonicalizer(CrawlSettings crawlSettings) {
+        crawlSettings.getBlockedExtensions().forEach(extension -> blockedExtensions.add(extension.toLowerCase(Locale.ROOT)));
+        blockedPaths = crawlSettings.getBlockedPaths().isEmpty()
+                ? null
+                : Pattern.compile(String.join("|", crawlSettings.getBlockedPaths().stream()
+                        .map(path -> "(?:" + path + ")")
+                        .toArray(String[]::new)));
+        for (String param : crawlSettings.getStrippedQueryParams()) {
+            if (param.endsWith("*")) {
+                strippedParamPrefixes.add(param.substring(0, param.length() - 1));
+            } else {
+                strippedParams.add(param);
+            }
+        }
+    }
+
+    /**
+     * @param url     абсолютная ссылка.
+     * @param siteUrl адрес сайта, которому должна принадлежать ссылка.
+     * @return ссылка в каноническом виде или {@code null}, если ее не нужно обходить.
+     */
+    public String canonicalize(String url, String siteUrl) {
+        SiteBase site = sites.computeIfAbsent(siteUrl, UrlCanonicalizer::parseSite);
+        if (site == null || url == null) {
+            return null;
+        }
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0 || !isHttp(url, schemeEnd)) {
+            return null;
+        }
+        int hostStart = schemeEnd + 3;
+        int end = indexOf(url, '#', hostStart, url.length());
+        int pathStart = indexOfAny(url, hostStart, end);
+        int queryStart = indexOf(url, '?', pathStart, end);
+
+        if (!isSameSite(url, hostStart, pathStart, site)) {
+            return null;
+        }
+
+        int pathEnd = queryStart;
+        while (pathEnd > pathStart && url.charAt(pathEnd - 1) == '/') {
+            pathEnd--;
+        }
+        if (isBlockedExtension(url, pathStart, pathEnd)
+                || (blockedPaths != null && blockedPaths.matcher(url).region(pathStart, pathEnd).find())) {
+            return null;
+        }
+
+        StringBuilder result = new StringBuilder(site.prefix.length() + (end - pathStart));
+        result.append(site.prefix).append(url, pathStart, pathEnd);
+        appendQuery(result, url, queryStart + 1, end);
+        return result.toString();
+    }
+
+    /**
+     * 64-битный отпечаток канонической ссылки для проверки «уже посещена» без хранения самих строк.
+     */
+    public long fingerprint(String canonicalUrl) {
+        return UrlFingerprint.of(canonicalUrl);
+    }
+
+    private static boolean isHttp(String url, int schemeEnd) {
+        return (schemeEnd == 4 && url.regionMatches(true, 0, "http", 0, 4))
+                || (schemeEnd == 5 && url.regionMatches(true, 0, "https", 0, 5));
+    }
+
+    /**
+     * Хост сравнивается без учета регистра и префикса {@code www.}; ссылки с учетными данными
+     * и с явно указанным портом, отличным от порта сайта, считаются чужими.
+     */
+    private static boolean isSameSite(String url, int hostStart, int hostEnd, SiteBase site) {
+        if (indexOf(url, '@', hostStart, hostEnd) < hostEnd) {
+            return false;
+        }
+        int portStart = indexOf(url, ':', hostStart, hostEnd);
+        if (url.regionMatches(true, hostStart, "www.", 0, 4)) {
+            hostStart += 4;
+        }
+        int hostLength = portStart - hostStart;
+        if (hostLength != site.host.length() || !url.regionMatches(true, hostStart, site.host, 0, hostLength)) {
+            return false;
+        }
+        if (portStart == hostEnd) {
+            return site.port.isEmpty();
+        }
+        String port = url.substring(portStart + 1, hostEnd);
+        return port.equals(site.port) || (site.port.isEmpty() && port.equals(site.defaultPort));
+    }
+
+    private boolean isBlockedExtension(String url, int pathStart, int pathEnd) {
+        for (int i = pathEnd - 1; i > pathStart; i--) {
+            char c = url.charAt(i);
+            if (c == '/') {
+                return false;
+            }
+            if (c == '.') {
+                return pathEnd - i > 1 && blockedExtensions.contains(url.substring(i + 1, pathEnd).toLowerCase(Locale.ROOT));
+            }
+        }
+        return false;
+    }
+
+    private void appendQuery(StringBuilder result, String url, int from, int end) {
+        boolean first = true;
+        int position = from;
+        while (position < end) {
+            int paramEnd = indexOf(url, '&', position, end);
+            int nameEnd = indexOf(url, '=', position, paramEnd);
+            if (paramEnd > position && !isStripped(url, position, nameEnd)) {
+                result.append(first ? '?' : '&').append(url, position, paramEnd);
+                first = false;
+            }
+            position = paramEnd + 1;
+        }
+    }
+
+    private boolean isStripped(String url, int nameStart, int nameEnd) {
+        for (String prefix : strippedParamPrefixes) {
+            if (url.startsWith(prefix, nameStart) && nameEnd - nameStart >= prefix.length()) {
+                return true;
+            }
+        }
+        return !strippedParams.isEmpty() && strippedParams.contains(url.substring(nameStart, nameEnd));
+    }
+
+    private static int indexOf(String url, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (url.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int indexOfAny(String url, int from, int end) {
+        for (int i = from; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static SiteBase parseSite(String siteUrl) {
+        int schemeEnd = siteUrl.indexOf("://");
+        if (schemeEnd <= 0) {
+            return null;
+        }
+        int hostStart = schemeEnd + 3;
+        int hostEnd = indexOfAny(siteUrl, hostStart, siteUrl.length());
+        String authority = siteUrl.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+        String scheme = siteUrl.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        int portStart = authority.indexOf(':');
+        String host = portStart < 0 ? authority : authority.substring(0, portStart);
+        String port = portStart < 0 ? "" : authority.substring(portStart + 1);
+        String defaultPort = scheme.equals("https") ? "443" : "80";
+        if (port.equals(defaultPort)) {
+            port = "";
+        }
+        String prefix = scheme + "://" + host + (port.isEmpty() ? "" : ":" + port);
+        return new SiteBase(host.startsWith("www.") ? host.substring(4) : host, port, defaultPort, prefix);
+    }
+
+    private static final class SiteBase {
+        private final String host;
+        private final String port;
+        private final String defaultPort;
+        private final String prefix;
+
+        private SiteBase(String host, String port, String defaultPort, String prefix) {
+            this.host = host;
+            this.port = port;
+            this.defaultPort = defaultPort;
+            this.prefix = prefix;
+        }
+    }
+}
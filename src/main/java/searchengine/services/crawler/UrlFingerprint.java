@@ -0,0 +1,34 @@
+package searchengine.services.crawler;
+
+/**
+ * 64-битный отпечаток ссылки: FNV-1a по символам строки с финальным перемешиванием из MurmurHash3.
+ * Считается без выделения памяти; для множества посещенных ссылок и уникального ключа очереди обхода
+ * вероятность коллизии на миллионах ссылок пренебрежимо мала, а криптостойкость не требуется.
+ */
+public final class UrlFingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private UrlFingerprint() {
+    }
+
+    public static long of(String url) {
+        long hash = OFFSET_BASIS;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
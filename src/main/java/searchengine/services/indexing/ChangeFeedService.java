@@ -0,0 +1,284 @@
+package searchengine.services.indexing;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import searchengine.config.ChangeFeedSettings;
+import searchengine.config.SitesList;
+import searchengine.dto.indexing.ChangeEvent;
+import searchengine.dto.indexing.ChangeFeedResponse;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Лента изменений страниц от внешних систем.
+ * <p>
+ * Принятые события сначала дописываются в журнал {@code journal.log} и сбрасываются на диск, и только потом
+ * ставятся в очередь, поэтому после перезапуска непримененные события читаются из журнала заново.
+ * Раз в {@code change-feed-settings.apply-interval-ms} накопленные события применяются одним пакетом:
+ * страницы загружаются пулом рабочих потоков, а изменения каждого сайта записываются одной транзакцией.
+ * Повторные события одного URL за это время схлопываются, и выполняется только последнее. Неудачное событие
+ * дописывается в журнал заново со счетчиком попыток и повторяется до {@code change-feed-settings.max-attempts} раз.
+ * Номер последнего обработанного события хранится в файле {@code checkpoint}; когда очередь пуста, журнал обрезается.
+ */
+@Slf4j
+@Service
+public class ChangeFeedService {
+
+    private static final String JOURNAL_FILE = "journal.log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final ChangeFeedSettings settings;
+    private final PageManagementService pageManagementService;
+    private final SitesList sitesConfig;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "Change-Feed-Thread"));
+
+    private final Map<String, Change> pending = new LinkedHashMap<>();
+    private long lastSequence;
+    private Path directory;
+    private FileChannel journal;
+
+    public ChangeFeedService(ChangeFeedSettings settings, PageManagementService pageManagementService,
+                             SitesList sitesConfig) {
+        this.settings = settings;
+        this.pageManagementService = pageManagementService;
+        this.sitesConfig = sitesConfig;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, settings.getWorkers()),
+                runnable -> new Thread(runnable, "Change-Feed-Worker-" + threadNumber.incrementAndGet()));
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        directory = Path.of(settings.getJournalPath());
+        Files.createDirectories(directory);
+        long checkpoint = readCheckpoint();
+        lastSequence = checkpoint;
+
+        Path journalFile = directory.resolve(JOURNAL_FILE);
+        if (Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t", 4);
+                    if (parts.length < 3) {
+                        continue;
+                    }
+                    long sequence = Long.parseLong(parts[0]);
+                    lastSequence = Math.max(lastSequence, sequence);
+                    if (sequence > checkpoint) {
+                        ChangeEvent.Type type = "D".equals(parts[1]) ? ChangeEvent.Type.DELETE : ChangeEvent.Type.UPSERT;
+                        // Строки повторов содержат счетчик попыток перед URL
+                        String url = parts.length == 4 ? parts[3] : parts[2];
+                        int attempts = parts.length == 4 ? Integer.parseInt(parts[2]) : 0;
+                        pending.remove(url);
+                        pending.put(url, new Change(type, attempts));
+                    }
+                }
+            }
+        }
+        journal = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (!pending.isEmpty()) {
+            log.info("Из журнала ленты изменений восстановлено {} непримененных событий", pending.size());
+        }
+        scheduler.scheduleWithFixedDelay(this::applySafely,
+                settings.getApplyIntervalMs(), settings.getApplyIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Принимает пакет событий. События с пустым или чужим URL отбрасываются и учитываются в {@code rejected}.
+     */
+    public ChangeFeedResponse accept(List<ChangeEvent> events) {
+        if (events == null || events.isEmpty()) {
+            return new ChangeFeedResponse(false, "События изменений не переданы");
+        }
+        if (events.size() > settings.getMaxEvents()) {
+            return new ChangeFeedResponse(false, "За один запрос можно передать не более "
+                    + settings.getMaxEvents() + " событий");
+        }
+
+        Map<String, ChangeEvent.Type> accepted = new LinkedHashMap<>();
+        int rejected = 0;
+        for (ChangeEvent event : events) {
+            if (event == null || event.getType() == null || !isAcceptable(event.getUrl())) {
+                rejected++;
+                continue;
+            }
+            accepted.remove(event.getUrl());
+            accepted.put(event.getUrl(), event.getType());
+        }
+
+        synchronized (pending) {
+            if (!accepted.isEmpty()) {
+                Map<String, Change> changes = new LinkedHashMap<>();
+                accepted.forEach((url, type) -> changes.put(url, new Change(type, 0)));
+                try {
+                    writeJournal(changes);
+                } catch (IOException e) {
+                    log.error("Не удалось записать события в журнал ленты изменений", e);
+                    return new ChangeFeedResponse(false, "Не удалось сохранить события изменений: " + e.getMessage());
+                }
+                changes.forEach((url, change) -> {
+                    pending.remove(url);
+                    pending.put(url, change);
+                });
+            }
+            return new ChangeFeedResponse(true, null, accepted.size(), rejected, pending.size());
+        }
+    }
+
+    public int pendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Применяет все накопленные события и сдвигает контрольную точку журнала. Неудачные события, для которых
+     * за это время не пришло более нового события того же URL, до сдвига контрольной точки дописываются в журнал
+     * с увеличенным счетчиком попыток и возвращаются в очередь; после исчерпания попыток событие отбрасывается,
+     * а недоступная страница остается в индексе в прежнем виде.
+     */
+    public void apply() throws IOException {
+        Map<String, Change> batch;
+        long upTo;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+            upTo = lastSequence;
+        }
+
+        List<String> upserts = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        batch.forEach((url, change) -> (change.getType() == ChangeEvent.Type.DELETE ? deletes : upserts).add(url));
+        Map<String, String> failed = new LinkedHashMap<>();
+        try {
+            pageManagementService.applyChanges(upserts, deletes, workers).stream()
+                    .filter(result -> !result.isResult())
+                    .forEach(result -> failed.put(result.getUrl(), result.getError()));
+        } catch (RuntimeException e) {
+            batch.keySet().forEach(url -> failed.put(url, e.getMessage()));
+        }
+
+        synchronized (pending) {
+            Map<String, Change> retries = new LinkedHashMap<>();
+            failed.forEach((url, error) -> {
+                Change change = batch.get(url);
+                if (change == null || pending.containsKey(url)) {
+                    return;
+                }
+                int attempts = change.getAttempts() + 1;
+                if (attempts < settings.getMaxAttempts()) {
+                    log.debug("Событие {} для {} не применено (попытка {}): {}", change.getType(), url, attempts, error);
+                    retries.put(url, new Change(change.getType(), attempts));
+                } else {
+                    log.warn("Событие {} для {} отброшено после {} попыток: {}", change.getType(), url, attempts, error);
+                }
+            });
+            pending.putAll(retries);
+            writeJournal(retries);
+            writeCheckpoint(upTo);
+            if (pending.isEmpty()) {
+                journal.truncate(0);
+                journal.force(false);
+            }
+        }
+        log.info("Из ленты изменений применено {} событий, неудачных: {}", batch.size() - failed.size(), failed.size());
+    }
+
+    private void applySafely() {
+        try {
+            apply();
+        } catch (Exception e) {
+            log.error("Ошибка применения ленты изменений", e);
+        }
+    }
+
+    /**
+     * Дописывает события в журнал под новыми номерами и сбрасывает его на диск. Вызывается под блокировкой очереди.
+     */
+    private void writeJournal(Map<String, Change> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        long sequence = lastSequence;
+        for (Map.Entry<String, Change> change : changes.entrySet()) {
+            lines.append(++sequence).append('\t')
+                    .append(change.getValue().getType() == ChangeEvent.Type.DELETE ? 'D' : 'U').append('\t');
+            if (change.getValue().getAttempts() > 0) {
+                lines.append(change.getValue().getAttempts()).append('\t');
+            }
+            lines.append(change.getKey()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        journal.force(false);
+        lastSequence = sequence;
+    }
+
+    private boolean isAcceptable(String url) {
+        if (url == null || url.isBlank() || url.chars().anyMatch(Character::isISOControl)) {
+            return false;
+        }
+        return sitesConfig.getSites().stream().anyMatch(site -> url.startsWith(site.getUrl()));
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        String value = Files.readString(checkpoint, StandardCharsets.UTF_8).trim();
+        return value.isEmpty() ? 0 : Long.parseLong(value);
+    }
+
+    private void writeCheckpoint(long sequence) throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temporary, Long.toString(sequence), StandardCharsets.UTF_8);
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Value
+    private static class Change {
+        ChangeEvent.Type type;
+        int attempts;
+    }
+}
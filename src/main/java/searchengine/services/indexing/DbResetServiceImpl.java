@@ -7,7 +7,15 @@ import liquibase.database.jvm.JdbcConnection;
 import liquibase.resource.ClassLoaderResourceAccessor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import searchengine.services.crawler.CrawlSeedService;
+import searchengine.services.crawler.NearDuplicateDetector;
+import searchengine.services.crawler.SiteActivityTracker;
+import searchengine.services.lucene.LuceneIndexManager;
+import searchengine.services.search.postings.ImpactIndex;
+import searchengine.services.segment.SegmentIndexService;
+import searchengine.services.statistics.SiteCounters;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -18,6 +26,13 @@ import java.sql.Connection;
 public class DbResetServiceImpl implements DbResetService {
 
     private final DataSource dataSource;
+    private final ImpactIndex impactIndex;
+    private final ObjectProvider<LuceneIndexManager> luceneIndexManager;
+    private final ObjectProvider<SegmentIndexService> segmentIndexService;
+    private final SiteCounters siteCounters;
+    private final SiteActivityTracker siteActivityTracker;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final CrawlSeedService crawlSeedService;
 
     @Override
     public void resetDatabase() {
@@ -28,6 +43,13 @@ public class DbResetServiceImpl implements DbResetService {
 
             liquibase.dropAll();
             liquibase.update("");
+            impactIndex.invalidateAll();
+            luceneIndexManager.ifAvailable(LuceneIndexManager::clear);
+            segmentIndexService.ifAvailable(SegmentIndexService::clear);
+            siteCounters.clear();
+            siteActivityTracker.clear();
+            nearDuplicateDetector.clear();
+            crawlSeedService.clear();
 
             log.info("Очистка и пересоздание таблиц успешно завершены.");
         } catch (Exception e) {
@@ -0,0 +1,113 @@
+package searchengine.services.indexing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import searchengine.dto.indexing.IndexJobResponse;
+import searchengine.dto.indexing.IndexJobStatus;
+import searchengine.dto.indexing.IndexingResponse;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Асинхронная индексация отдельных страниц. Запрос только проверяет URL и ставит задачу в ограниченную очередь
+ * пула {@code indexJobExecutor}, поэтому поток Tomcat и соединение с базой не ждут загрузки страницы.
+ * Состояние задач хранится в памяти узла; завершенные задачи забываются через
+ * {@code search-settings.job-retention-minutes}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IndexJobService {
+
+    private final PageManagementService pageManagementService;
+    private final TaskExecutor indexJobExecutor;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    @Value("${search-settings.job-retention-minutes:60}")
+    private long retentionMinutes = 60;
+
+    public IndexingResponse submit(String url) {
+        IndexingResponse check = pageManagementService.checkUrl(url);
+        if (!check.isResult()) {
+            return check;
+        }
+        purgeFinished();
+
+        Job job = new Job(UUID.randomUUID().toString(), url);
+        jobs.put(job.id, job);
+        try {
+            indexJobExecutor.execute(() -> run(job));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.id);
+            return new IndexingResponse(false, "Очередь индексации страниц переполнена, повторите запрос позже");
+        }
+        return new IndexJobResponse(job.id);
+    }
+
+    public Optional<IndexJobStatus> status(String id) {
+        Job job = jobs.get(id);
+        return job == null ? Optional.empty() : Optional.of(job.snapshot());
+    }
+
+    private void run(Job job) {
+        job.start();
+        try {
+            IndexingResponse response = pageManagementService.indexPage(job.url);
+            job.finish(response.isResult(), response.getError());
+        } catch (RuntimeException e) {
+            log.warn("Ошибка индексации страницы {}: {}", job.url, e.getMessage());
+            job.finish(false, "Внутренняя ошибка индексатора: " + e.getMessage());
+        }
+    }
+
+    private void purgeFinished() {
+        LocalDateTime threshold = LocalDateTime.now(ZoneOffset.UTC).minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinishedBefore(threshold));
+    }
+
+    private static final class Job {
+        private final String id;
+        private final String url;
+        private final LocalDateTime submittedAt = LocalDateTime.now(ZoneOffset.UTC);
+        private IndexJobStatus.State state = IndexJobStatus.State.QUEUED;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private Boolean result;
+        private String error;
+
+        private Job(String id, String url) {
+            this.id = id;
+            this.url = url;
+        }
+
+        private synchronized void start() {
+            state = IndexJobStatus.State.RUNNING;
+            startedAt = LocalDateTime.now(ZoneOffset.UTC);
+        }
+
+        private synchronized void finish(boolean result, String error) {
+            this.state = result ? IndexJobStatus.State.COMPLETED : IndexJobStatus.State.FAILED;
+            this.result = result;
+            this.error = error;
+            this.finishedAt = LocalDateTime.now(ZoneOffset.UTC);
+        }
+
+        private synchronized boolean isFinishedBefore(LocalDateTime threshold) {
+            return finishedAt != null && finishedAt.isBefore(threshold);
+        }
+
+        private synchronized IndexJobStatus snapshot() {
+            return new IndexJobStatus(id, url, state, result, error, submittedAt, startedAt, finishedAt);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package searchengine.services.indexing;
 
+import searchengine.dto.indexing.IndexJobStatus;
+import searchengine.dto.indexing.IndexPagesResponse;
 import searchengine.dto.indexing.IndexingResponse;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Сервис, управляющий процессами индексации и поиска.
  * Является основным API для контроллера.
@@ -23,13 +28,27 @@ public interface IndexingService {
     IndexingResponse stopIndexing();
 
     /**
-     * Индексирует или переиндексирует отдельную страницу по ее URL.
-     * Если страница уже проиндексирована, старые данные по ней удаляются.
+     * Ставит в очередь индексацию или переиндексацию отдельной страницы по ее URL.
+     * Если страница уже проиндексирована, ее индекс меняется на разницу лемм.
      * @param url URL страницы для индексации.
-     * @return объект с результатом операции.
+     * @return объект с идентификатором задачи или причиной отказа.
      */
     IndexingResponse indexPage(String url);
 
+    /**
+     * Возвращает состояние задачи индексации страницы.
+     * @param id идентификатор задачи из ответа {@link #indexPage(String)}.
+     * @return состояние задачи или пустое значение, если задача неизвестна или уже забыта.
+     */
+    Optional<IndexJobStatus> getJob(String id);
+
+    /**
+     * Переиндексирует несколько страниц параллельно.
+     * @param urls URL страниц для индексации.
+     * @return общий результат и результат по каждой странице.
+     */
+    IndexPagesResponse indexPages(List<String> urls);
+
     /**
      * Возвращает статистику по всем проиндексированным сайтам.
      * @return объект со статистическими данными.
@@ -3,10 +3,14 @@ package searchengine.services.indexing;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlSettings;
 import searchengine.config.SitesList;
+import searchengine.dto.indexing.IndexJobStatus;
+import searchengine.dto.indexing.IndexPagesResponse;
 import searchengine.dto.indexing.IndexingResponse;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.statistics.StatisticsResponse;
@@ -16,9 +20,19 @@ import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.services.crawler.CrawlFrontier;
+import searchengine.services.crawler.CrawlPriority;
+import searchengine.services.crawler.CrawlSeedService;
+import searchengine.services.crawler.FrontierService;
+import searchengine.services.crawler.NearDuplicateDetector;
 import searchengine.services.crawler.PageProcessorService;
 import searchengine.services.crawler.SiteCrawler;
+import searchengine.services.crawler.SitemapParser.SitemapEntry;
+import searchengine.services.crawler.UrlCanonicalizer;
 import searchengine.services.search.SearchService;
+import searchengine.services.segment.SegmentIndexService;
+import searchengine.services.statistics.SiteCounters;
+import searchengine.services.statistics.StatisticsChanges;
 import searchengine.services.statistics.StatisticsService;
 
 import javax.annotation.PostConstruct;
@@ -28,10 +42,9 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
@@ -40,7 +53,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class IndexingServiceImpl implements IndexingService {
 
     private static final AtomicBoolean isIndexingRunning = new AtomicBoolean(false);
-    private final Map<String, ForkJoinPool> activePools = new ConcurrentHashMap<>();
+    private final Map<String, SiteCrawler> activeCrawlers = new ConcurrentHashMap<>();
 
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
@@ -52,14 +65,31 @@ public class IndexingServiceImpl implements IndexingService {
     private final StatisticsService statisticsService;
     private final PageProcessorService pageProcessor;
     private final PageManagementService pageManagementService;
+    private final IndexJobService indexJobService;
     private final SearchService searchService;
     private final DbResetService dbResetService;
+    private final ObjectProvider<SegmentIndexService> segmentIndexService;
+    private final SiteCounters siteCounters;
+    private final StatisticsChanges statisticsChanges;
+    private final CrawlSettings crawlSettings;
+    private final FrontierService frontierService;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final CrawlSeedService crawlSeedService;
+    private final CrawlPriority crawlPriority;
 
     @Value("${search-settings.delay}")
     private int delay;
 
+    /**
+     * В распределенном режиме обход переживает перезапуск отдельного узла: его аренды истекают
+     * и возвращаются в очередь, поэтому сайты в статусе INDEXING не сбрасываются.
+     */
     @PostConstruct
     public void init() {
+        if (crawlSettings.isDistributed()) {
+            return;
+        }
         List<Site> indexingSites = siteRepository.findByStatus(SiteStatus.INDEXING);
         if (!indexingSites.isEmpty()) {
             for (Site site : indexingSites) {
@@ -72,13 +102,14 @@ public class IndexingServiceImpl implements IndexingService {
 
     @Override
     public IndexingResponse startIndexing() {
+        if (crawlSettings.isDistributed()) {
+            return startDistributedIndexing();
+        }
         if (isIndexingRunning.compareAndSet(false, true)) {
             new Thread(() -> {
                 try {
                     dbResetService.resetDatabase();
-                    activePools.clear();
-                    Thread loggerThread = new Thread(this::logQueueStatus);
-                    loggerThread.start();
+                    activeCrawlers.clear();
 
                     int numberOfSites = sitesConfig.getSites().size();
                     CountDownLatch latch = new CountDownLatch(numberOfSites);
@@ -94,11 +125,11 @@ public class IndexingServiceImpl implements IndexingService {
                     );
 
                     latch.await();
-                    loggerThread.interrupt();
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                 } finally {
                     isIndexingRunning.set(false);
+                    statisticsChanges.markChanged();
                     log.info("Полная индексация всех сайтов завершена.");
                 }
             }, "Indexing-Manager-Thread").start();
@@ -120,6 +151,7 @@ public class IndexingServiceImpl implements IndexingService {
         siteEntity.setStatus(SiteStatus.INDEXING);
         siteEntity.setStatusTime(LocalDateTime.now(ZoneOffset.UTC));
         siteRepository.save(siteEntity);
+        siteCounters.register(siteEntity);
 
         try {
             Jsoup.connect(siteConfig.getUrl()).execute();
@@ -129,22 +161,28 @@ public class IndexingServiceImpl implements IndexingService {
             siteEntity.setLastError(errorMessage);
             siteEntity.setStatus(SiteStatus.FAILED);
             siteRepository.save(siteEntity);
+            statisticsChanges.markChanged();
             return;
         }
 
-        ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
-        activePools.put(siteConfig.getName(), forkJoinPool);
-
         try {
-            Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
-            visitedUrls.add(siteEntity.getUrl());
+            CrawlFrontier frontier = new CrawlFrontier(crawlPriority, urlCanonicalizer,
+                    crawlSettings.getMaxDepth(), crawlSettings.getMaxPages());
+            String rootUrl = urlCanonicalizer.canonicalize(siteEntity.getUrl(), siteEntity.getUrl());
+            frontier.offer(rootUrl == null ? siteEntity.getUrl() : rootUrl, 0, 1, null);
+            for (SitemapEntry seed : crawlSeedService.seeds(siteEntity)) {
+                frontier.offer(seed.getUrl(), 1, seed.getPriority(), seed.getLastModified());
+            }
 
-            SiteCrawler mainTask = new SiteCrawler(pageProcessor, delay, siteEntity, siteEntity.getUrl(), visitedUrls);
-            forkJoinPool.invoke(mainTask);
+            SiteCrawler crawler = new SiteCrawler(pageProcessor, crawlSeedService.throttle(siteEntity, delay),
+                    siteEntity, frontier, crawlSettings.getWorkers(), isIndexingRunning::get);
+            activeCrawlers.put(siteConfig.getName(), crawler);
+            crawler.crawl();
 
             if (isIndexingRunning.get()) {
                 siteEntity.setStatus(SiteStatus.INDEXED);
                 siteEntity.setLastError(null);
+                segmentIndexService.ifAvailable(service -> service.requestSeal(siteEntity));
             } else {
                 siteEntity.setStatus(SiteStatus.FAILED);
                 siteEntity.setLastError("Индексация остановлена пользователем");
@@ -157,19 +195,55 @@ public class IndexingServiceImpl implements IndexingService {
         } finally {
             siteEntity.setStatusTime(LocalDateTime.now(ZoneOffset.UTC));
             siteRepository.save(siteEntity);
-            if (!forkJoinPool.isShutdown()) {
-                forkJoinPool.shutdown();
-            }
-            activePools.remove(siteConfig.getName());
+            statisticsChanges.markChanged();
+            activeCrawlers.remove(siteConfig.getName());
+            nearDuplicateDetector.release(siteEntity);
+            crawlSeedService.release(siteEntity);
         }
     }
 
 
+    /**
+     * Узел, получивший запрос, только пересоздает таблицы и в фоновом потоке ставит в общую очередь главные
+     * страницы сайтов вместе со ссылками из их карт; сам обход выполняют рабочие потоки всех узлов.
+     */
+    private IndexingResponse startDistributedIndexing() {
+        if (!siteRepository.findByStatus(SiteStatus.INDEXING).isEmpty()
+                || !isIndexingRunning.compareAndSet(false, true)) {
+            return new IndexingResponse(false, "Индексация уже запущена");
+        }
+        new Thread(() -> {
+            try {
+                dbResetService.resetDatabase();
+                for (searchengine.config.Site siteConfig : sitesConfig.getSites()) {
+                    Site siteEntity = new Site();
+                    siteEntity.setUrl(siteConfig.getUrl());
+                    siteEntity.setName(siteConfig.getName());
+                    siteEntity.setStatus(SiteStatus.INDEXING);
+                    siteEntity.setStatusTime(LocalDateTime.now(ZoneOffset.UTC));
+                    frontierService.startSite(siteEntity, crawlSeedService.seeds(siteEntity));
+                    siteCounters.register(siteEntity);
+                }
+                log.info("Главные страницы {} сайтов поставлены в очередь распределенного обхода",
+                        sitesConfig.getSites().size());
+            } catch (RuntimeException e) {
+                log.error("Не удалось поставить сайты в очередь распределенного обхода", e);
+            } finally {
+                isIndexingRunning.set(false);
+                statisticsChanges.markChanged();
+            }
+        }, "Indexing-Manager-Thread").start();
+        return new IndexingResponse(true);
+    }
+
     @Override
     public IndexingResponse stopIndexing() {
+        if (crawlSettings.isDistributed()) {
+            return stopDistributedIndexing();
+        }
         if (isIndexingRunning.compareAndSet(true, false)) {
-            activePools.values().forEach(ForkJoinPool::shutdownNow);
-            activePools.clear();
+            activeCrawlers.values().forEach(SiteCrawler::stop);
+            activeCrawlers.clear();
             List<Site> sitesInProgress = siteRepository.findByStatus(SiteStatus.INDEXING);
             for (Site site : sitesInProgress) {
                 site.setStatus(SiteStatus.FAILED);
@@ -177,39 +251,40 @@ public class IndexingServiceImpl implements IndexingService {
                 site.setStatusTime(LocalDateTime.now(ZoneOffset.UTC));
                 siteRepository.save(site);
             }
+            statisticsChanges.markChanged();
             return new IndexingResponse(true);
         } else {
             return new IndexingResponse(false, "Индексация не запущена");
         }
     }
 
-    private void logQueueStatus() {
-        try {
-            while (!Thread.currentThread().isInterrupted()) {
-                System.out.println("\n--- Статус очередей индексации ---");
-                if (activePools.isEmpty()) {
-                    System.out.println("Все задачи по индексации сайтов в данный момент завершены.");
-                } else {
-                    activePools.forEach((siteName, pool) -> System.out.printf(
-                            "Сайт: %-20s | В очереди: %-5d | Активных потоков: %d/%d%n",
-                            siteName,
-                            pool.getQueuedTaskCount(),
-                            pool.getActiveThreadCount(),
-                            pool.getPoolSize()
-                    ));
-                }
-                System.out.println("------------------------------------\n");
-                Thread.sleep(15000);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.out.println("Поток мониторинга очередей остановлен.");
+    private IndexingResponse stopDistributedIndexing() {
+        List<Site> sitesInProgress = siteRepository.findByStatus(SiteStatus.INDEXING);
+        if (sitesInProgress.isEmpty()) {
+            return new IndexingResponse(false, "Индексация не запущена");
+        }
+        for (Site site : sitesInProgress) {
+            siteRepository.updateStatus(site.getId(), SiteStatus.INDEXING, SiteStatus.FAILED,
+                    "Индексация остановлена пользователем", LocalDateTime.now(ZoneOffset.UTC));
         }
+        frontierService.discardQueued();
+        statisticsChanges.markChanged();
+        return new IndexingResponse(true);
     }
 
     @Override
     public IndexingResponse indexPage(String url) {
-        return pageManagementService.indexPage(url);
+        return indexJobService.submit(url);
+    }
+
+    @Override
+    public IndexPagesResponse indexPages(List<String> urls) {
+        return pageManagementService.indexPages(urls);
+    }
+
+    @Override
+    public Optional<IndexJobStatus> getJob(String id) {
+        return indexJobService.status(id);
     }
 
     @Override
@@ -1,19 +1,61 @@
 package searchengine.services.indexing;
 
+import searchengine.dto.indexing.IndexPageResult;
+import searchengine.dto.indexing.IndexPagesResponse;
 import searchengine.dto.indexing.IndexingResponse;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
 /**
  * Сервис для управления индексацией отдельных страниц.
  */
 public interface PageManagementService {
+    /**
+     * Проверяет, что URL указан и принадлежит одному из сайтов в конфигурации. Страница не загружается.
+     *
+     * @param url абсолютный URL страницы.
+     * @return {@link IndexingResponse} с {@code result = true} или с причиной отказа.
+     */
+    IndexingResponse checkUrl(String url);
+
     /**
      * Индексирует или переиндексирует одну страницу по ее URL.
      * <p>
      * Проверяет, что URL принадлежит одному из сайтов в конфигурации.
-     * Если страница уже существует в индексе, она будет удалена и проиндексирована заново.
+     * Если страница уже существует в индексе, ее строка обновляется, а индекс меняется на разницу лемм;
+     * при недоступной странице старая версия остается без изменений.
      *
      * @param url абсолютный URL страницы для индексации.
      * @return {@link IndexingResponse} с результатом операции.
      */
     IndexingResponse indexPage(String url);
-}
\ No newline at end of file
+
+    /**
+     * Параллельно переиндексирует несколько страниц.
+     *
+     * @param urls абсолютные URL страниц, не больше {@code search-settings.max-index-pages}.
+     * @return {@link IndexPagesResponse} с результатом по каждой странице.
+     */
+    IndexPagesResponse indexPages(List<String> urls);
+
+    /**
+     * Удаляет страницу из индекса: уменьшает частоты ее лемм, удаляет строки индекса и саму страницу.
+     *
+     * @param url абсолютный URL страницы.
+     * @return {@link IndexingResponse} с результатом операции; отсутствие страницы в индексе не считается ошибкой.
+     */
+    IndexingResponse deletePage(String url);
+
+    /**
+     * Применяет пакет изменений страниц. Страницы загружаются и разбираются на леммы параллельно вне транзакции,
+     * затем все изменения одного сайта записываются одной транзакцией: новые страницы сохраняются общим
+     * пакетом лемм, у существующих меняется только разница лемм, удаляемые страницы удаляются.
+     *
+     * @param upsertUrls абсолютные URL страниц для индексации или переиндексации.
+     * @param deleteUrls абсолютные URL страниц для удаления.
+     * @param executor   пул, в котором загружаются страницы.
+     * @return {@link IndexPageResult} по каждому URL; при ошибке записи неудачными считаются все URL сайта.
+     */
+    List<IndexPageResult> applyChanges(List<String> upsertUrls, List<String> deleteUrls, Executor executor);
+}
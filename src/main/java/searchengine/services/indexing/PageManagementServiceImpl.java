@@ -1,111 +1,333 @@
 package searchengine.services.indexing;
 
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.config.SitesList;
+import searchengine.dto.indexing.IndexPageResult;
+import searchengine.dto.indexing.IndexPagesResponse;
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.dto.indexing.LemmaDto;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.model.SiteStatus;
-import searchengine.repositories.IndexRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.services.crawler.PageFetcher;
 import searchengine.services.lemma.LemmaEngine;
 import searchengine.services.lemma.LemmaService;
+import searchengine.services.segment.SegmentIndexService;
+import searchengine.services.statistics.SiteCounters;
 
-import javax.persistence.EntityManager;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
+/**
+ * Страница загружается и разбирается на леммы вне транзакции, поэтому при недоступной странице старая версия
+ * остается в индексе. Строка {@code page} обновляется на месте, а индекс меняется только на разницу между
+ * старым и новым набором лемм. Записи одного сайта выполняются по очереди, чтобы параллельные переиндексации
+ * не создавали одинаковые леммы.
+ */
 @Service
 @RequiredArgsConstructor
 public class PageManagementServiceImpl implements PageManagementService {
 
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final IndexRepository indexRepository;
     private final LemmaService lemmaService;
     private final LemmaEngine lemmaEngine;
     private final SitesList sitesConfig;
-    private final EntityManager entityManager;
+    private final ObjectProvider<SegmentIndexService> segmentIndexService;
+    private final SiteCounters siteCounters;
+    private final PageFetcher pageFetcher;
+    private final PlatformTransactionManager transactionManager;
+    private final TaskExecutor pageIndexingExecutor;
 
-    @Value("${search-settings.user-agent}")
-    private String userAgent;
+    private final Map<String, Object> siteLocks = new ConcurrentHashMap<>();
 
-    @Value("${search-settings.referrer}")
-    private String referrer;
+    @Value("${search-settings.max-index-pages:100}")
+    private int maxIndexPages = 100;
 
     @Override
-    @Transactional
-    public IndexingResponse indexPage(String url) {
+    public IndexingResponse checkUrl(String url) {
         if (url == null || url.trim().isEmpty()) {
             return new IndexingResponse(false, "URL страницы не указан");
         }
+        if (findSiteConfig(url).isEmpty()) {
+            return new IndexingResponse(false, "Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+        }
+        return new IndexingResponse(true);
+    }
+
+    @Override
+    public IndexingResponse indexPage(String url) {
+        PreparedPage prepared = preparePage(url);
+        if (prepared.getError() != null) {
+            return new IndexingResponse(false, prepared.getError());
+        }
+        synchronized (siteLock(prepared.getSiteConfig())) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> savePage(prepared));
+        }
+        return new IndexingResponse(true);
+    }
+
+    @Override
+    public IndexPagesResponse indexPages(List<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            return new IndexPagesResponse(false, "URL страниц не указаны", null);
+        }
+        if (urls.size() > maxIndexPages) {
+            return new IndexPagesResponse(false, "За один запрос можно переиндексировать не более "
+                    + maxIndexPages + " страниц", null);
+        }
+
+        List<CompletableFuture<IndexPageResult>> futures = urls.stream()
+                .distinct()
+                .map(url -> CompletableFuture.supplyAsync(() -> indexPageSafely(url), pageIndexingExecutor))
+                .collect(Collectors.toList());
+        List<IndexPageResult> results = futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+        boolean allIndexed = results.stream().allMatch(IndexPageResult::isResult);
+        return new IndexPagesResponse(allIndexed, allIndexed ? null : "Часть страниц не проиндексирована", results);
+    }
+
+    @Override
+    public IndexingResponse deletePage(String url) {
+        IndexingResponse check = checkUrl(url);
+        if (!check.isResult()) {
+            return check;
+        }
 
-        Optional<searchengine.config.Site> optSiteConfig = sitesConfig.getSites().stream()
+        searchengine.config.Site siteConfig = findSiteConfig(url).orElseThrow();
+        String path = pathOf(url, siteConfig);
+        synchronized (siteLock(siteConfig)) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    siteRepository.findByUrl(siteConfig.getUrl())
+                            .flatMap(site -> pageRepository.findBySiteAndPath(site, path))
+                            .ifPresent(this::removePage));
+        }
+        return new IndexingResponse(true);
+    }
+
+    /**
+     * Изменения группируются по сайтам: на сайт приходится одна блокировка и одна транзакция, а леммы всех
+     * новых страниц сайта сохраняются одним {@link LemmaService#saveLemmasForBatch(List)}.
+     */
+    @Override
+    public List<IndexPageResult> applyChanges(List<String> upsertUrls, List<String> deleteUrls, Executor executor) {
+        List<IndexPageResult> results = new ArrayList<>();
+        Map<String, searchengine.config.Site> siteConfigs = new LinkedHashMap<>();
+        Map<String, List<PreparedPage>> upsertsBySite = new HashMap<>();
+        Map<String, List<String>> deletesBySite = new HashMap<>();
+
+        List<CompletableFuture<PreparedPage>> futures = upsertUrls.stream()
+                .distinct()
+                .map(url -> CompletableFuture.supplyAsync(() -> preparePageSafely(url), executor))
+                .collect(Collectors.toList());
+        for (CompletableFuture<PreparedPage> future : futures) {
+            PreparedPage prepared = future.join();
+            if (prepared.getError() != null) {
+                results.add(new IndexPageResult(prepared.getUrl(), false, prepared.getError()));
+                continue;
+            }
+            siteConfigs.putIfAbsent(prepared.getSiteConfig().getUrl(), prepared.getSiteConfig());
+            upsertsBySite.computeIfAbsent(prepared.getSiteConfig().getUrl(), key -> new ArrayList<>()).add(prepared);
+        }
+        for (String url : deleteUrls) {
+            IndexingResponse check = checkUrl(url);
+            if (!check.isResult()) {
+                results.add(new IndexPageResult(url, false, check.getError()));
+                continue;
+            }
+            searchengine.config.Site siteConfig = findSiteConfig(url).orElseThrow();
+            siteConfigs.putIfAbsent(siteConfig.getUrl(), siteConfig);
+            deletesBySite.computeIfAbsent(siteConfig.getUrl(), key -> new ArrayList<>()).add(url);
+        }
+
+        siteConfigs.forEach((siteUrl, siteConfig) -> {
+            List<PreparedPage> upserts = upsertsBySite.getOrDefault(siteUrl, List.of());
+            List<String> deletes = deletesBySite.getOrDefault(siteUrl, List.of());
+            String error = null;
+            try {
+                synchronized (siteLock(siteConfig)) {
+                    new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                            saveSiteChanges(siteConfig, upserts, deletes));
+                }
+            } catch (RuntimeException e) {
+                error = "Не удалось записать изменения сайта: " + e.getMessage();
+            }
+            for (PreparedPage prepared : upserts) {
+                results.add(new IndexPageResult(prepared.getUrl(), error == null, error));
+            }
+            for (String url : deletes) {
+                results.add(new IndexPageResult(url, error == null, error));
+            }
+        });
+        return results;
+    }
+
+    private Optional<searchengine.config.Site> findSiteConfig(String url) {
+        return sitesConfig.getSites().stream()
                 .filter(s -> url.startsWith(s.getUrl()))
                 .findFirst();
+    }
 
-        if (optSiteConfig.isEmpty()) {
-            return new IndexingResponse(false, "Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+    private static String pathOf(String url, searchengine.config.Site siteConfig) {
+        String path = url.substring(siteConfig.getUrl().length());
+        return path.isEmpty() ? "/" : path;
+    }
+
+    private void removePage(Page page) {
+        lemmaService.decrementLemmaFrequency(page);
+        segmentIndexService.ifAvailable(service -> service.deletePage(page));
+        pageRepository.delete(page);
+        siteCounters.addPages(page.getSite(), -1);
+    }
+
+    private IndexPageResult indexPageSafely(String url) {
+        try {
+            IndexingResponse response = indexPage(url);
+            return new IndexPageResult(url, response.isResult(), response.getError());
+        } catch (RuntimeException e) {
+            return new IndexPageResult(url, false, "Внутренняя ошибка индексатора: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Загружает страницу и разбирает ее на леммы. Ошибка возвращается в {@link PreparedPage#getError()}.
+     */
+    private PreparedPage preparePage(String url) {
+        IndexingResponse check = checkUrl(url);
+        if (!check.isResult()) {
+            return PreparedPage.failed(url, check.getError());
+        }
+
+        searchengine.config.Site siteConfig = findSiteConfig(url).orElseThrow();
+        PageFetcher.FetchedPage fetchedPage;
+        try {
+            fetchedPage = pageFetcher.fetch(url);
+        } catch (IOException e) {
+            return PreparedPage.failed(url, "Не удалось получить доступ к странице: " + e.getMessage());
         }
+        if (fetchedPage == null) {
+            return PreparedPage.failed(url, "Страница не является HTML-документом или превышает допустимый размер");
+        }
+        if (fetchedPage.getStatusCode() >= 400) {
+            return PreparedPage.failed(url, "Ошибка получения страницы, статус: " + fetchedPage.getStatusCode());
+        }
+
+        String content = fetchedPage.getDocument().outerHtml();
+        Map<String, Integer> lemmas = lemmaEngine.getLemmaMap(lemmaEngine.cleanHtml(content));
+        return new PreparedPage(url, siteConfig, pathOf(url, siteConfig), fetchedPage.getStatusCode(), content,
+                lemmas, null);
+    }
+
+    private PreparedPage preparePageSafely(String url) {
+        try {
+            return preparePage(url);
+        } catch (RuntimeException e) {
+            return PreparedPage.failed(url, "Внутренняя ошибка индексатора: " + e.getMessage());
+        }
+    }
+
+    private Object siteLock(searchengine.config.Site siteConfig) {
+        return siteLocks.computeIfAbsent(siteConfig.getUrl(), key -> new Object());
+    }
 
-        searchengine.config.Site siteConfig = optSiteConfig.get();
-        Site site = siteRepository.findByUrl(siteConfig.getUrl())
+    private void savePage(PreparedPage prepared) {
+        Site site = findOrCreateSite(prepared.getSiteConfig());
+        Optional<Page> existingPage = pageRepository.findBySiteAndPath(site, prepared.getPath());
+        Page savedPage = savePageRow(site, existingPage, prepared);
+        lemmaService.replacePageLemmas(savedPage, prepared.getLemmas());
+        appendToSegments(savedPage, prepared.getLemmas());
+    }
+
+    private void saveSiteChanges(searchengine.config.Site siteConfig, List<PreparedPage> upserts, List<String> deletes) {
+        Site site = findOrCreateSite(siteConfig);
+        List<LemmaDto> createdPages = new ArrayList<>();
+        for (PreparedPage prepared : upserts) {
+            Optional<Page> existingPage = pageRepository.findBySiteAndPath(site, prepared.getPath());
+            Page savedPage = savePageRow(site, existingPage, prepared);
+            if (existingPage.isEmpty()) {
+                createdPages.add(new LemmaDto(savedPage, prepared.getLemmas()));
+            } else {
+                lemmaService.replacePageLemmas(savedPage, prepared.getLemmas());
+            }
+            appendToSegments(savedPage, prepared.getLemmas());
+        }
+        lemmaService.saveLemmasForBatch(createdPages);
+
+        for (String url : deletes) {
+            pageRepository.findBySiteAndPath(site, pathOf(url, siteConfig)).ifPresent(this::removePage);
+        }
+    }
+
+    private Site findOrCreateSite(searchengine.config.Site siteConfig) {
+        return siteRepository.findByUrl(siteConfig.getUrl())
                 .orElseGet(() -> {
                     Site newSite = new Site();
                     newSite.setUrl(siteConfig.getUrl());
                     newSite.setName(siteConfig.getName());
                     newSite.setStatus(SiteStatus.INDEXED);
                     newSite.setStatusTime(LocalDateTime.now(ZoneOffset.UTC));
-                    return siteRepository.save(newSite);
+                    Site savedSite = siteRepository.save(newSite);
+                    siteCounters.register(savedSite);
+                    return savedSite;
                 });
+    }
 
-        String path = url.substring(site.getUrl().length());
-        if (path.isEmpty()) {
-            path = "/";
+    private Page savePageRow(Site site, Optional<Page> existingPage, PreparedPage prepared) {
+        Page page = existingPage.orElseGet(Page::new);
+        page.setSite(site);
+        page.setPath(prepared.getPath());
+        page.setCode(prepared.getStatusCode());
+        page.setContent(prepared.getContent());
+        page.setAliasOf(null);
+        Page savedPage = pageRepository.saveAndFlush(page);
+        if (existingPage.isEmpty()) {
+            siteCounters.addPages(site, 1);
         }
+        return savedPage;
+    }
 
-
-        pageRepository.findBySiteAndPath(site, path).ifPresent(page -> {
-            lemmaService.decrementLemmaFrequency(page);
-            indexRepository.deleteAllByPage(page);
-            pageRepository.delete(page);
-            entityManager.flush();
+    private void appendToSegments(Page page, Map<String, Integer> lemmas) {
+        segmentIndexService.ifAvailable(service -> {
+            service.deletePage(page);
+            service.appendPage(page, lemmas);
         });
+    }
 
-        try {
-            Connection.Response response = Jsoup.connect(url)
-                    .userAgent(userAgent)
-                    .referrer(referrer)
-                    .execute();
-
-            if (response.statusCode() >= 400) {
-                return new IndexingResponse(false, "Ошибка получения страницы, статус: " + response.statusCode());
-            }
-
-            Page newPage = new Page();
-            newPage.setSite(site);
-            newPage.setPath(path);
-            newPage.setCode(response.statusCode());
-            newPage.setContent(response.body());
-            Page savedPage = pageRepository.saveAndFlush(newPage);
-
-            Map<String, Integer> lemmas = lemmaEngine.getLemmaMap(lemmaEngine.cleanHtml(newPage.getContent()));
-            lemmaService.saveLemmasForPage(savedPage, lemmas);
-            entityManager.flush();
+    /**
+     * Загруженная и разобранная на леммы страница, готовая к записи, либо причина, по которой ее не удалось загрузить.
+     */
+    @lombok.Value
+    private static class PreparedPage {
+        String url;
+        searchengine.config.Site siteConfig;
+        String path;
+        int statusCode;
+        String content;
+        Map<String, Integer> lemmas;
+        String error;
 
-        } catch (IOException e) {
-            return new IndexingResponse(false, "Не удалось получить доступ к странице: " + e.getMessage());
+        static PreparedPage failed(String url, String error) {
+            return new PreparedPage(url, null, null, 0, null, null, error);
         }
-
-        return new IndexingResponse(true);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package searchengine.services.lemma;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ресурсы лемматизации одного потока: собственный анализатор, переиспользуемый {@link Reader},
+ * буфер очищенного текста и таблица счетчиков лемм. Контекст создается при первом обращении потока
+ * к {@link LemmaEngineImpl} и живет до {@link LemmaEngine#releaseThreadResources()}, завершения потока
+ * или закрытия движка; между вызовами в нем не остается ссылок на данные предыдущего текста.
+ */
+final class AnalysisContext implements AutoCloseable {
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final WeakReference<Thread> owner;
+    private final RussianAnalyzer analyzer = new RussianAnalyzer();
+    private final ReusableReader reader = new ReusableReader();
+    private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+    private final Map<String, int[]> counts = new HashMap<>();
+    private final List<int[]> counters = new ArrayList<>();
+    private int usedCounters;
+
+    AnalysisContext(Thread owner) {
+        this.owner = new WeakReference<>(owner);
+    }
+
+    boolean isOwnerAlive() {
+        Thread thread = owner.get();
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * Оставляет в буфере только строчные русские буквы, остальные символы заменяет пробелами.
+     * Длина текста не меняется, поэтому позиции слов в буфере совпадают с позициями в исходном тексте.
+     */
+    char[] clean(String text) {
+        int length = text.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        text.getChars(0, length, buffer, 0);
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(buffer[i]);
+            buffer[i] = c >= 'а' && c <= 'я' ? c : ' ';
+        }
+        return buffer;
+    }
+
+    /**
+     * @return лемма одного слова или пустая строка, если анализатор его отбросил.
+     */
+    String analyze(String word) throws IOException {
+        reader.reset(word);
+        try (TokenStream tokenStream = analyzer.tokenStream("content", reader)) {
+            CharTermAttribute attribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            String lemma = tokenStream.incrementToken() ? attribute.toString() : "";
+            tokenStream.end();
+            return lemma;
+        }
+    }
+
+    void count(String lemma) {
+        int[] counter = counts.get(lemma);
+        if (counter == null) {
+            if (usedCounters == counters.size()) {
+                counters.add(new int[1]);
+            }
+            counter = counters.get(usedCounters++);
+            counter[0] = 0;
+            counts.put(lemma, counter);
+        }
+        counter[0]++;
+    }
+
+    /**
+     * Переносит накопленные счетчики в новую карту нужного размера и очищает контекст для следующего текста.
+     */
+    Map<String, Integer> drainCounts() {
+        Map<String, Integer> result = new HashMap<>((int) (counts.size() / 0.75f) + 1);
+        counts.forEach((lemma, counter) -> result.put(lemma, counter[0]));
+        counts.clear();
+        usedCounters = 0;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        analyzer.close();
+    }
+
+    /**
+     * {@link java.io.StringReader}, который можно перенаправить на новую строку вместо создания нового объекта.
+     */
+    private static final class ReusableReader extends Reader {
+        private String text = "";
+        private int position;
+
+        void reset(String text) {
+            this.text = text;
+            this.position = 0;
+        }
+
+        @Override
+        public int read(char[] target, int offset, int length) {
+            if (position >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(length, text.length() - position);
+            text.getChars(position, position + count, target, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            text = "";
+        }
+    }
+}
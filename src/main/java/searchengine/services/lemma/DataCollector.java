@@ -16,6 +16,10 @@ public class DataCollector {
     public LemmaDto pollLemmaDto() {
         return lemmaQueue.poll();
     }
+    public boolean isEmpty() {
+        return lemmaQueue.isEmpty();
+    }
+
     public int getQueueSize() {
         return lemmaQueue.size();
     }
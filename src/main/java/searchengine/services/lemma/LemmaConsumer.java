@@ -1,51 +1,91 @@
 package searchengine.services.lemma;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import searchengine.dto.indexing.LemmaDto;
+import searchengine.services.segment.SegmentIndexService;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Фоновый поток, который забирает карты лемм страниц из {@link DataCollector} и сохраняет их пакетами.
+ * При остановке поток дописывает уже накопленные пакеты и завершается до закрытия остальных бинов.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class LemmaConsumer {
 
     private static final int BATCH_SIZE = 200;
+    private static final long IDLE_SLEEP_MS = 500;
+    private static final long STOP_TIMEOUT_MS = 10_000;
 
     private final LemmaService lemmaService;
     private final DataCollector dataCollector;
+    private final ObjectProvider<SegmentIndexService> segmentIndexService;
+
+    private volatile boolean running;
+    private Thread thread;
 
     @PostConstruct
     public void init() {
-        new Thread(() -> {
-            while (true) {
-                try {
-                    List<LemmaDto> batch = new ArrayList<>();
-                    while (true) {
-                        LemmaDto lemmaDto = dataCollector.pollLemmaDto();
-                        if (lemmaDto == null) {
-                            break;
-                        }
-                        batch.add(lemmaDto);
-                        if (batch.size() >= BATCH_SIZE) {
-                            break;
-                        }
-                    }
+        SegmentIndexService segments = segmentIndexService.getIfAvailable();
+        running = true;
+        thread = new Thread(() -> consume(segments), "LemmaConsumer-Thread");
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.join(STOP_TIMEOUT_MS);
+        if (thread.isAlive()) {
+            thread.interrupt();
+            thread.join(STOP_TIMEOUT_MS);
+        }
+    }
 
-                    if (!batch.isEmpty()) {
-                        lemmaService.saveLemmasForBatch(batch);
-                    } else {
-                        Thread.sleep(500);
+    private void consume(SegmentIndexService segments) {
+        while (running) {
+            try {
+                List<LemmaDto> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    lemmaService.saveLemmasForBatch(batch);
+                } else {
+                    if (segments != null) {
+                        segments.sealPendingSites(dataCollector::isEmpty);
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                } catch (Exception e) {
-                    e.printStackTrace();
+                    Thread.sleep(IDLE_SLEEP_MS);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Ошибка сохранения пакета лемм", e);
             }
-        }, "LemmaConsumer-Thread").start();
+        }
+
+        List<LemmaDto> batch;
+        while (!Thread.currentThread().isInterrupted() && !(batch = nextBatch()).isEmpty()) {
+            try {
+                lemmaService.saveLemmasForBatch(batch);
+            } catch (Exception e) {
+                log.error("Ошибка сохранения пакета лемм при остановке", e);
+            }
+        }
+    }
+
+    private List<LemmaDto> nextBatch() {
+        List<LemmaDto> batch = new ArrayList<>();
+        LemmaDto lemmaDto;
+        while (batch.size() < BATCH_SIZE && (lemmaDto = dataCollector.pollLemmaDto()) != null) {
+            batch.add(lemmaDto);
+        }
+        return batch;
     }
-}
\ No newline at end of file
+}
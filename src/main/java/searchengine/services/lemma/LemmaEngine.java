@@ -1,5 +1,8 @@
 package searchengine.services.lemma;
 
+import searchengine.dto.indexing.LemmaToken;
+
+import java.util.List;
 import java.util.Map;
 
 public interface LemmaEngine {
@@ -16,4 +19,23 @@ public interface LemmaEngine {
      * @return Карта, где ключ - лемма, значение - количество вхождений
      */
     Map<String, Integer> getLemmaMap(String text);
-}
\ No newline at end of file
+
+    /**
+     * Разбирает текст на леммы за один проход, сохраняя для каждой границы исходного слова.
+     * @param text чистый текст
+     * @return леммы в порядке следования слов в тексте
+     */
+    List<LemmaToken> getLemmaTokens(String text);
+
+    /**
+     * @return статистика кэша «слово → лемма»: размер, попадания и промахи.
+     */
+    WordLemmaCache.Stats wordCacheStats();
+
+    /**
+     * Освобождает анализатор и буферы, закрепленные за текущим потоком. Вызывается потоками,
+     * которые заканчивают работу с текстом, но продолжают жить; при следующем обращении
+     * ресурсы будут созданы заново.
+     */
+    void releaseThreadResources();
+}
@@ -1,25 +1,48 @@
 package searchengine.services.lemma;
 
-import lombok.RequiredArgsConstructor;
 import org.apache.lucene.analysis.ru.RussianAnalyzer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.jsoup.Jsoup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import searchengine.dto.indexing.LemmaToken;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.io.StringReader;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Лемматизация через {@link RussianAnalyzer}. Цепочка анализатора обрабатывает каждое слово независимо
+ * от соседних, поэтому текст разбивается на слова здесь, а лемма каждого слова берется из
+ * {@link WordLemmaCache}: повторяющиеся слова запросов, страниц и сниппетов не проходят
+ * через стеммер и фильтры повторно.
+ * <p>
+ * Каждый поток работает со своим {@link AnalysisContext}, поэтому параллельные обходчики, поиск
+ * и генерация сниппетов не делят между собой ни анализатор, ни буферы. Контексты завершившихся
+ * потоков закрываются при создании новых, остальные — в {@link #close()}.
+ */
 @Service
-@RequiredArgsConstructor
 public class LemmaEngineImpl implements LemmaEngine {
 
-    private final RussianAnalyzer russianAnalyzer;
+    private static final int DEFAULT_WORD_CACHE_SIZE = 100_000;
+    /** Более длинные последовательности букв не считаются словами и не анализируются. */
+    private static final int MAX_WORD_LENGTH = 255;
 
+    private final WordLemmaCache wordCache;
+    private final ThreadLocal<AnalysisContext> contexts = new ThreadLocal<>();
+    private final Set<AnalysisContext> openContexts = ConcurrentHashMap.newKeySet();
 
     public LemmaEngineImpl() {
-        this.russianAnalyzer = new RussianAnalyzer();
+        this(DEFAULT_WORD_CACHE_SIZE);
+    }
+
+    @Autowired
+    public LemmaEngineImpl(@Value("${search-settings.word-cache-size:100000}") int wordCacheSize) {
+        this.wordCache = new WordLemmaCache(wordCacheSize);
     }
 
     @Override
@@ -29,22 +52,89 @@ public class LemmaEngineImpl implements LemmaEngine {
 
     @Override
     public Map<String, Integer> getLemmaMap(String text) {
-        Map<String, Integer> lemmaMap = new HashMap<>();
-        String cleanText = text.toLowerCase().replaceAll("[^а-я\\s]", " ").trim();
+        AnalysisContext context = context();
+        forEachWord(context, text, (lemma, start, end) -> context.count(lemma));
+        return context.drainCounts();
+    }
 
-        try (var tokenStream = russianAnalyzer.tokenStream("content", new StringReader(cleanText))) {
-            CharTermAttribute attribute = tokenStream.addAttribute(CharTermAttribute.class);
-            tokenStream.reset();
+    @Override
+    public List<LemmaToken> getLemmaTokens(String text) {
+        List<LemmaToken> tokens = new ArrayList<>();
+        forEachWord(context(), text, (lemma, start, end) -> tokens.add(new LemmaToken(lemma, start, end)));
+        return tokens;
+    }
 
-            while (tokenStream.incrementToken()) {
-                String lemma = attribute.toString();
+    @Override
+    public WordLemmaCache.Stats wordCacheStats() {
+        return wordCache.stats();
+    }
+
+    @Override
+    public void releaseThreadResources() {
+        AnalysisContext context = contexts.get();
+        if (context != null) {
+            contexts.remove();
+            openContexts.remove(context);
+            context.close();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        openContexts.forEach(AnalysisContext::close);
+        openContexts.clear();
+    }
+
+    private AnalysisContext context() {
+        AnalysisContext context = contexts.get();
+        if (context == null) {
+            openContexts.removeIf(open -> {
+                if (open.isOwnerAlive()) {
+                    return false;
+                }
+                open.close();
+                return true;
+            });
+            context = new AnalysisContext(Thread.currentThread());
+            openContexts.add(context);
+            contexts.set(context);
+        }
+        return context;
+    }
+
+    private void forEachWord(AnalysisContext context, String text, WordConsumer consumer) {
+        char[] clean = context.clean(text);
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && clean[start] == ' ') {
+                start++;
+            }
+            int end = start;
+            while (end < length && clean[end] != ' ') {
+                end++;
+            }
+            if (end > start && end - start <= MAX_WORD_LENGTH) {
+                String lemma = wordCache.get(new String(clean, start, end - start), word -> analyze(context, word));
                 if (!lemma.isEmpty()) {
-                    lemmaMap.put(lemma, lemmaMap.getOrDefault(lemma, 0) + 1);
+                    consumer.accept(lemma, start, end);
                 }
             }
+            start = end;
+        }
+    }
+
+    private static String analyze(AnalysisContext context, String word) {
+        try {
+            return context.analyze(word);
         } catch (IOException e) {
             System.err.println("Произошла ошибка при анализе текста: " + e.getMessage());
+            return "";
         }
-        return lemmaMap;
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    private interface WordConsumer {
+        void accept(String lemma, int startOffset, int endOffset);
+    }
+}
@@ -31,4 +31,12 @@ public interface LemmaService {
      * @param page страница, которая будет удалена.
      */
     void decrementLemmaFrequency(Page page);
+
+    /**
+     * Заменяет леммы и индекс уже сохраненной страницы новой картой лемм.
+     * Меняются только различающиеся строки: удаленные леммы страницы, добавленные и леммы с изменившимся рангом.
+     * @param page сохраненная страница; для новой страницы все леммы считаются добавленными.
+     * @param lemmas новая карта лемм страницы (лемма -> количество).
+     */
+    void replacePageLemmas(Page page, Map<String, Integer> lemmas);
 }
\ No newline at end of file
@@ -1,27 +1,42 @@
 package searchengine.services.lemma;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.dto.indexing.LemmaDto;
-import searchengine.model.Lemma;
+import searchengine.dto.search.SitePostingView;
 import searchengine.model.Page;
-import searchengine.model.SearchIndex;
 import searchengine.model.Site;
 import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
+import searchengine.services.search.postings.ImpactIndex;
+import searchengine.services.statistics.SiteCounters;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import java.util.*;
+import java.util.stream.Collectors;
 
 
 @Service
 @RequiredArgsConstructor
+@ConditionalOnExpression("!'${search-settings.index-mode:database}'.equalsIgnoreCase('lucene')")
 public class LemmaServiceImpl implements LemmaService {
+    private static final int CHUNK_SIZE = 500;
+
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
     private final EntityManager entityManager;
-
+    private final ImpactIndex impactIndex;
+    private final SiteCounters siteCounters;
+
+    /**
+     * Частоты лемм меняются только атомарными запросами к строке: новые леммы вставляются, а у существующих
+     * частота увеличивается на число страниц пакета в одном {@code INSERT ... ON DUPLICATE KEY UPDATE}
+     * по уникальному ключу {@code (site_id, lemma)}. Поэтому пакеты одного сайта, сохраняемые одновременно
+     * несколькими узлами, не теряют приращений и не создают одинаковых лемм.
+     */
     @Override
     @Transactional
     public void saveLemmasForBatch(List<LemmaDto> batch) {
@@ -29,137 +44,168 @@ public class LemmaServiceImpl implements LemmaService {
             return;
         }
 
-        Map<Site, Set<String>> siteToLemmas = new HashMap<>();
+        Map<Site, List<LemmaDto>> pagesBySite = new HashMap<>();
         for (LemmaDto dto : batch) {
             if (dto.getPage() == null || dto.getPage().getSite() == null) {
                 continue;
             }
-            siteToLemmas.computeIfAbsent(dto.getPage().getSite(), k -> new HashSet<>())
-                    .addAll(dto.getLemmaMap().keySet());
-        }
-
-        Map<String, Lemma> existingLemmas = new HashMap<>();
-        for (Map.Entry<Site, Set<String>> entry : siteToLemmas.entrySet()) {
-            lemmaRepository.findAllBySiteAndLemmaIn(entry.getKey(), entry.getValue())
-                    .forEach(lemma -> existingLemmas.put(
-                            lemma.getLemma() + "_" + lemma.getSite().getId(),
-                            lemma
-                    ));
+            pagesBySite.computeIfAbsent(dto.getPage().getSite(), k -> new ArrayList<>()).add(dto);
         }
 
-        List<Lemma> toUpdate = new ArrayList<>();
-        List<Lemma> toCreate = new ArrayList<>();
-        List<SearchIndex> indices = new ArrayList<>();
-
-        for (LemmaDto dto : batch) {
-            if (dto.getPage() == null || dto.getPage().getSite() == null) {
-                continue;
-            }
-
-            Site site = dto.getPage().getSite();
-            Page page = dto.getPage();
-
-            for (Map.Entry<String, Integer> entry : dto.getLemmaMap().entrySet()) {
-                String lemmaKey = entry.getKey() + "_" + site.getId();
-                Lemma lemma = existingLemmas.get(lemmaKey);
-
-                if (lemma != null) {
-                    lemma.setFrequency(lemma.getFrequency() + 1);
-                    if (!toUpdate.contains(lemma)) {
-                        toUpdate.add(lemma);
-                    }
-                } else {
-                    lemma = new Lemma();
-                    lemma.setSite(site);
-                    lemma.setLemma(entry.getKey());
-                    lemma.setFrequency(1);
-                    toCreate.add(lemma);
-                    existingLemmas.put(lemmaKey, lemma);
+        pagesBySite.forEach((site, pages) -> {
+            Map<String, Integer> deltas = new HashMap<>();
+            pages.forEach(dto -> dto.getLemmaMap().keySet().forEach(lemma -> deltas.merge(lemma, 1, Integer::sum)));
+            Map<String, Integer> lemmaIds = upsertLemmas(site, deltas);
+
+            for (LemmaDto dto : pages) {
+                List<String> indexed = dto.getLemmaMap().keySet().stream()
+                        .filter(lemmaIds::containsKey)
+                        .collect(Collectors.toList());
+                for (List<String> chunk : chunks(indexed)) {
+                    insertPostings(site.getId(), dto.getPage().getId(), chunk, lemmaIds, dto.getLemmaMap());
                 }
-
-                SearchIndex index = new SearchIndex();
-                index.setPage(page);
-                index.setLemma(lemma);
-                index.setRank(entry.getValue().floatValue());
-                indices.add(index);
             }
+            impactIndex.invalidateSite(site);
+        });
+    }
+
+    @Override
+    @Transactional
+    public void saveLemmasForPage(Page page, Map<String, Integer> lemmas) {
+        if (page == null || page.getSite() == null || lemmas == null) {
+            return;
         }
+        saveLemmasForBatch(List.of(new LemmaDto(page, lemmas)));
+    }
 
-        if (!toUpdate.isEmpty()) {
-            lemmaRepository.saveAll(toUpdate);
+    @Override
+    @Transactional
+    public void decrementLemmaFrequency(Page page) {
+        if (page == null) {
+            return;
         }
-        if (!toCreate.isEmpty()) {
-            List<Lemma> created = lemmaRepository.saveAll(toCreate);
-            created.forEach(l -> existingLemmas.put(l.getLemma() + "_" + l.getSite().getId(), l));
+
+        List<Integer> lemmaIds = indexRepository.findPostingsByPage(page).stream()
+                .map(SitePostingView::getLemmaId)
+                .distinct()
+                .collect(Collectors.toList());
+        if (lemmaIds.isEmpty()) {
+            return;
         }
 
-        if (!indices.isEmpty()) {
-            indexRepository.saveAll(indices);
+        Site site = page.getSite();
+        indexRepository.deleteAllByPage(page);
+        int deleted = 0;
+        for (List<Integer> ids : chunks(lemmaIds)) {
+            lemmaRepository.addFrequency(site, ids, -1);
+            deleted += lemmaRepository.deleteUnused(site, ids);
         }
-        entityManager.flush();
+        siteCounters.addLemmas(site, -deleted);
+        impactIndex.invalidateSite(site);
     }
 
+    /**
+     * Переиндексация по разнице старой и новой карт лемм. Вместо удаления всех строк страницы и поштучного
+     * сохранения лемм выполняется несколько групповых запросов: удаление исчезнувших строк индекса с уменьшением
+     * частоты их лемм, увеличение частоты известных сайту лемм, многострочные вставки новых лемм и строк индекса
+     * и обновление ранга одним запросом на каждое новое значение ранга. Списки идентификаторов делятся на части
+     * по {@value #CHUNK_SIZE}.
+     */
     @Override
     @Transactional
-    public void saveLemmasForPage(Page page, Map<String, Integer> lemmas) {
+    public void replacePageLemmas(Page page, Map<String, Integer> lemmas) {
         if (page == null || page.getSite() == null || lemmas == null) {
             return;
         }
-
         Site site = page.getSite();
-        List<SearchIndex> indices = new ArrayList<>();
-
-        lemmas.forEach((lemmaStr, count) -> {
-            Lemma lemma = lemmaRepository.findBySiteAndLemma(site, lemmaStr)
-                    .map(existingLemma -> {
-                        existingLemma.setFrequency(existingLemma.getFrequency() + 1);
-                        return lemmaRepository.save(existingLemma);
-                    })
-                    .orElseGet(() -> {
-                        Lemma newLemma = new Lemma();
-                        newLemma.setSite(site);
-                        newLemma.setLemma(lemmaStr);
-                        newLemma.setFrequency(1);
-                        return lemmaRepository.save(newLemma);
-                    });
-
-            SearchIndex index = new SearchIndex();
-            index.setPage(page);
-            index.setLemma(lemma);
-            index.setRank(count.floatValue());
-            indices.add(index);
+        int siteId = site.getId();
+        int pageId = page.getId();
+
+        Map<String, SitePostingView> oldPostings = new HashMap<>();
+        indexRepository.findPostingsByPage(page).forEach(posting -> oldPostings.put(posting.getLemma(), posting));
+
+        List<Integer> removed = new ArrayList<>();
+        Map<Float, List<Integer>> changedByRank = new HashMap<>();
+        oldPostings.forEach((lemma, posting) -> {
+            Integer count = lemmas.get(lemma);
+            if (count == null) {
+                removed.add(posting.getLemmaId());
+            } else if (count.floatValue() != posting.getRank()) {
+                changedByRank.computeIfAbsent(count.floatValue(), rank -> new ArrayList<>()).add(posting.getLemmaId());
+            }
         });
-
-        if (!indices.isEmpty()) {
-            indexRepository.saveAll(indices);
+        List<String> added = lemmas.keySet().stream()
+                .filter(lemma -> !oldPostings.containsKey(lemma))
+                .collect(Collectors.toList());
+
+        int deleted = 0;
+        for (List<Integer> ids : chunks(removed)) {
+            indexRepository.deleteByPageAndLemmaIds(siteId, pageId, ids);
+            lemmaRepository.addFrequency(site, ids, -1);
+            deleted += lemmaRepository.deleteUnused(site, ids);
         }
+        changedByRank.forEach((rank, ids) ->
+                chunks(ids).forEach(chunk -> indexRepository.updateRank(siteId, pageId, chunk, rank)));
+
+        if (!added.isEmpty()) {
+            Map<String, Integer> deltas = new HashMap<>();
+            added.forEach(lemma -> deltas.put(lemma, 1));
+            Map<String, Integer> lemmaIds = upsertLemmas(site, deltas);
+            List<String> indexed = added.stream().filter(lemmaIds::containsKey).collect(Collectors.toList());
+            for (List<String> chunk : chunks(indexed)) {
+                insertPostings(siteId, pageId, chunk, lemmaIds, lemmas);
+            }
+        }
+
+        siteCounters.addLemmas(site, -deleted);
+        impactIndex.invalidateSite(site);
     }
 
-    @Override
-    @Transactional
-    public void decrementLemmaFrequency(Page page) {
-        if (page == null) {
-            return;
+    /**
+     * Вставляет леммы сайта или увеличивает их частоту на переданное приращение и возвращает их идентификаторы.
+     * Число созданных лемм берется из числа затронутых строк: MySQL считает вставку за одну строку,
+     * а обновление существующей — за две.
+     */
+    private Map<String, Integer> upsertLemmas(Site site, Map<String, Integer> deltas) {
+        Map<String, Integer> lemmaIds = new HashMap<>();
+        int created = 0;
+        for (List<String> chunk : chunks(new ArrayList<>(deltas.keySet()))) {
+            Query query = entityManager.createNativeQuery("INSERT INTO lemma (site_id, lemma, frequency) VALUES "
+                    + String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?)"))
+                    + " ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)");
+            int position = 1;
+            for (String lemma : chunk) {
+                query.setParameter(position++, site.getId());
+                query.setParameter(position++, lemma);
+                query.setParameter(position++, deltas.get(lemma));
+            }
+            created += 2 * chunk.size() - query.executeUpdate();
+            lemmaRepository.findAllBySiteAndLemmaIn(site, chunk)
+                    .forEach(lemma -> lemmaIds.putIfAbsent(lemma.getLemma(), lemma.getId()));
         }
+        siteCounters.addLemmas(site, created);
+        return lemmaIds;
+    }
 
-        List<SearchIndex> indices = indexRepository.findAllByPage(page);
-        if (indices.isEmpty()) {
-            return;
+    private void insertPostings(int siteId, int pageId, List<String> lemmas, Map<String, Integer> lemmaIds,
+                                Map<String, Integer> counts) {
+        Query query = entityManager.createNativeQuery("INSERT INTO search_index (site_id, page_id, lemma_id, `rank`) VALUES "
+                + String.join(", ", Collections.nCopies(lemmas.size(), "(?, ?, ?, ?)")));
+        int position = 1;
+        for (String lemma : lemmas) {
+            query.setParameter(position++, siteId);
+            query.setParameter(position++, pageId);
+            query.setParameter(position++, lemmaIds.get(lemma));
+            query.setParameter(position++, counts.get(lemma).floatValue());
         }
+        query.executeUpdate();
+    }
 
-        indexRepository.deleteAll(indices);
-
-        indices.stream()
-                .map(SearchIndex::getLemma)
-                .distinct()
-                .forEach(lemma -> {
-                    int newFrequency = lemma.getFrequency() - 1;
-                    if (newFrequency <= 0) {
-                        lemmaRepository.delete(lemma);
-                    } else {
-                        lemma.setFrequency(newFrequency);
-                        lemmaRepository.save(lemma);
-                    }
-                });
+    private static <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += CHUNK_SIZE) {
+            chunks.add(items.subList(from, Math.min(items.size(), from + CHUNK_SIZE)));
+        }
+        return chunks;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package searchengine.services.lemma;
+
+import lombok.Value;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ограниченный потокобезопасный кэш «слово → лемма».
+ * <p>
+ * Записи хранятся в двух поколениях: новые слова попадают в текущее, а слово, найденное в предыдущем,
+ * переносится в текущее. Когда текущее поколение заполняется наполовину от {@code capacity},
+ * предыдущее отбрасывается целиком. Так часто встречающиеся слова живут неограниченно долго, редкие
+ * вытесняются, чтение не берет блокировок, а общий размер не превышает {@code capacity}.
+ */
+public final class WordLemmaCache {
+
+    private final int generationSize;
+    private volatile Map<String, String> current = new ConcurrentHashMap<>();
+    private volatile Map<String, String> previous = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public WordLemmaCache(int capacity) {
+        this.generationSize = Math.max(1, capacity / 2);
+    }
+
+    /**
+     * @return лемма слова; пустая строка означает, что слово отбрасывается анализатором (стоп-слово).
+     */
+    public String get(String word, Function<String, String> analyzer) {
+        String lemma = current.get(word);
+        if (lemma != null) {
+            hits.increment();
+            return lemma;
+        }
+        lemma = previous.get(word);
+        if (lemma != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            lemma = analyzer.apply(word);
+        }
+        put(word, lemma);
+        return lemma;
+    }
+
+    public Stats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        return new Stats(current.size() + previous.size(), generationSize * 2, hitCount, missCount, evictions.sum());
+    }
+
+    private void put(String word, String lemma) {
+        Map<String, String> generation = current;
+        generation.put(word, lemma);
+        if (generation.size() >= generationSize) {
+            rotate(generation);
+        }
+    }
+
+    private synchronized void rotate(Map<String, String> full) {
+        if (current != full) {
+            return;
+        }
+        evictions.add(previous.size());
+        previous = full;
+        current = new ConcurrentHashMap<>();
+    }
+
+    @Value
+    public static class Stats {
+        int entries;
+        int capacity;
+        long hits;
+        long misses;
+        long evictions;
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package searchengine.services.lucene;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.MMapDirectory;
+import org.jsoup.Jsoup;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.config.LuceneSettings;
+import searchengine.model.Page;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Владелец файлового индекса Lucene: единственный {@link IndexWriter} и NRT-читатели,
+ * которые обновляются после каждой записи без ожидания фиксации на диск.
+ * <p>
+ * Фиксация ({@code commit}) с синхронизацией файлов выполняется раз в {@code lucene-settings.commit-interval-ms}
+ * и при остановке. После аварийного завершения теряются страницы, записанные после последней фиксации;
+ * их восстанавливает повторная индексация.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "search-settings.index-mode", havingValue = "lucene")
+public class LuceneIndexManager {
+
+    public static final String FIELD_PAGE_ID = "page_id";
+    public static final String FIELD_SITE_URL = "site_url";
+    public static final String FIELD_SITE_NAME = "site_name";
+    public static final String FIELD_PATH = "path";
+    public static final String FIELD_TITLE = "title";
+    public static final String FIELD_CONTENT = "content";
+
+    private static final FieldType CONTENT_TYPE = new FieldType();
+
+    static {
+        CONTENT_TYPE.setTokenized(true);
+        CONTENT_TYPE.setStored(true);
+        CONTENT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        CONTENT_TYPE.freeze();
+    }
+
+    private final LuceneSettings luceneSettings;
+
+    private final Analyzer analyzer = new RussianAnalyzer();
+    private MMapDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path indexPath = Path.of(luceneSettings.getIndexPath());
+        Files.createDirectories(indexPath);
+        directory = new MMapDirectory(indexPath);
+
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        config.setRAMBufferSizeMB(luceneSettings.getRamBufferMb());
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, new SearcherFactory());
+        log.info("Индекс Lucene открыт: {}", indexPath.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        commit();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    /**
+     * Добавляет страницы в индекс, заменяя ранее проиндексированные версии с теми же идентификаторами.
+     */
+    public void indexPages(Collection<Page> pages) {
+        try {
+            for (Page page : pages) {
+                writer.updateDocument(pageTerm(page.getId()), toDocument(page));
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать страницы в индекс Lucene", e);
+        }
+    }
+
+    public void deletePage(int pageId) {
+        try {
+            writer.deleteDocuments(pageTerm(pageId));
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось удалить страницу из индекса Lucene", e);
+        }
+    }
+
+    public void clear() {
+        try {
+            writer.deleteAll();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось очистить индекс Lucene", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lucene-settings.commit-interval-ms:60000}")
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось зафиксировать индекс Lucene", e);
+        }
+    }
+
+    public IndexSearcher acquireSearcher() throws IOException {
+        return searcherManager.acquire();
+    }
+
+    public void releaseSearcher(IndexSearcher searcher) throws IOException {
+        searcherManager.release(searcher);
+    }
+
+    /**
+     * Размер файлов индекса на диске — для сравнения с таблицей {@code search_index}.
+     */
+    public long sizeOnDisk() throws IOException {
+        long size = 0;
+        for (String file : directory.listAll()) {
+            size += directory.fileLength(file);
+        }
+        return size;
+    }
+
+    private Document toDocument(Page page) {
+        org.jsoup.nodes.Document html = Jsoup.parse(page.getContent());
+        Document document = new Document();
+        document.add(new StringField(FIELD_PAGE_ID, String.valueOf(page.getId()), Field.Store.YES));
+        document.add(new StringField(FIELD_SITE_URL, page.getSite().getUrl(), Field.Store.YES));
+        document.add(new StoredField(FIELD_SITE_NAME, page.getSite().getName()));
+        document.add(new StoredField(FIELD_PATH, page.getPath()));
+        document.add(new StoredField(FIELD_TITLE, html.title()));
+        document.add(new Field(FIELD_CONTENT, html.text(), CONTENT_TYPE));
+        return document;
+    }
+
+    private Term pageTerm(int pageId) {
+        return new Term(FIELD_PAGE_ID, String.valueOf(pageId));
+    }
+}
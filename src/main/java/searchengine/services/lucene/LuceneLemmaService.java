@@ -0,0 +1,62 @@
+package searchengine.services.lucene;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import searchengine.dto.indexing.LemmaDto;
+import searchengine.model.Page;
+import searchengine.services.lemma.LemmaService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Реализация {@link LemmaService} для режима {@code lucene}: вместо строк таблиц {@code lemma}
+ * и {@code search_index} страницы записываются в индекс Lucene, который сам выполняет
+ * русскую морфологию. Карты лемм, посчитанные краулером, здесь не используются.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "search-settings.index-mode", havingValue = "lucene")
+public class LuceneLemmaService implements LemmaService {
+
+    private final LuceneIndexManager indexManager;
+
+    @Override
+    public void saveLemmasForBatch(List<LemmaDto> batch) {
+        List<Page> pages = batch.stream()
+                .map(LemmaDto::getPage)
+                .filter(Objects::nonNull)
+                .filter(page -> page.getSite() != null)
+                .collect(Collectors.toList());
+        if (!pages.isEmpty()) {
+            indexManager.indexPages(pages);
+        }
+    }
+
+    @Override
+    public void saveLemmasForPage(Page page, Map<String, Integer> lemmas) {
+        if (page == null || page.getSite() == null) {
+            return;
+        }
+        indexManager.indexPages(List.of(page));
+    }
+
+    @Override
+    public void decrementLemmaFrequency(Page page) {
+        if (page == null) {
+            return;
+        }
+        indexManager.deletePage(page.getId());
+    }
+
+    @Override
+    public void replacePageLemmas(Page page, Map<String, Integer> lemmas) {
+        if (page == null || page.getSite() == null) {
+            return;
+        }
+        indexManager.indexPages(List.of(page));
+    }
+}
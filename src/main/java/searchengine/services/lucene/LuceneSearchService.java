@@ -0,0 +1,155 @@
+package searchengine.services.lucene;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchResponse;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.search.SearchService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Реализация {@link SearchService} для режима {@code lucene}. Все леммы запроса обязательны,
+ * релевантность — оценка BM25, нормированная на лучшую оценку выдачи, сниппеты строит
+ * {@link UnifiedHighlighter} по смещениям, сохраненным в индексе.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "search-settings.index-mode", havingValue = "lucene")
+public class LuceneSearchService implements SearchService {
+
+    private static final int SNIPPET_FALLBACK_LENGTH = 250;
+    private static final int HIGHLIGHT_MAX_LENGTH = 1_000_000;
+
+    private final LuceneIndexManager indexManager;
+    private final SiteRepository siteRepository;
+
+    @Override
+    public SearchResponse search(String query, String siteUrl, int offset, int limit) {
+        if (query == null || query.isBlank()) {
+            return new SearchResponse(false, "Задан пустой поисковый запрос");
+        }
+        boolean sitesMissing = siteUrl != null ? siteRepository.findByUrl(siteUrl).isEmpty() : siteRepository.count() == 0;
+        if (sitesMissing) {
+            return new SearchResponse(false, "Сайты для поиска не найдены или не проиндексированы");
+        }
+
+        Query luceneQuery = buildQuery(query, siteUrl);
+        if (luceneQuery == null) {
+            return new SearchResponse(true, 0, Collections.emptyList());
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = indexManager.acquireSearcher();
+            int count = searcher.count(luceneQuery);
+            if (count == 0 || offset >= count || offset + limit <= 0) {
+                return new SearchResponse(true, count, Collections.emptyList());
+            }
+
+            TopDocs topDocs = searcher.search(luceneQuery, offset + limit);
+            if (topDocs.scoreDocs.length == 0) {
+                return new SearchResponse(true, count, Collections.emptyList());
+            }
+            ScoreDoc[] window = Arrays.copyOfRange(topDocs.scoreDocs,
+                    Math.min(offset, topDocs.scoreDocs.length), topDocs.scoreDocs.length);
+            float maxScore = topDocs.scoreDocs[0].score > 0 ? topDocs.scoreDocs[0].score : 1.0f;
+
+            String[] snippets = highlight(searcher, luceneQuery, new TopDocs(topDocs.totalHits, window));
+
+            List<SearchData> data = new ArrayList<>(window.length);
+            for (int i = 0; i < window.length; i++) {
+                Document document = searcher.doc(window[i].doc);
+                data.add(new SearchData(
+                        document.get(LuceneIndexManager.FIELD_SITE_URL),
+                        document.get(LuceneIndexManager.FIELD_SITE_NAME),
+                        document.get(LuceneIndexManager.FIELD_PATH),
+                        document.get(LuceneIndexManager.FIELD_TITLE),
+                        snippets[i] != null ? snippets[i] : fallbackSnippet(document),
+                        window[i].score / maxScore
+                ));
+            }
+            return new SearchResponse(true, count, data);
+        } catch (IOException e) {
+            log.error("Ошибка поиска по индексу Lucene", e);
+            return new SearchResponse(false, "Ошибка поиска: " + e.getMessage());
+        } finally {
+            release(searcher);
+        }
+    }
+
+    private Query buildQuery(String query, String siteUrl) {
+        Set<String> terms = analyze(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        terms.forEach(term -> builder.add(
+                new TermQuery(new Term(LuceneIndexManager.FIELD_CONTENT, term)), BooleanClause.Occur.MUST));
+        if (siteUrl != null) {
+            builder.add(new TermQuery(new Term(LuceneIndexManager.FIELD_SITE_URL, siteUrl)), BooleanClause.Occur.FILTER);
+        }
+        return builder.build();
+    }
+
+    private Set<String> analyze(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        try (TokenStream tokenStream = indexManager.getAnalyzer().tokenStream(LuceneIndexManager.FIELD_CONTENT, text)) {
+            CharTermAttribute attribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                terms.add(attribute.toString());
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            log.warn("Не удалось разобрать поисковый запрос: {}", e.getMessage());
+        }
+        return terms;
+    }
+
+    private String[] highlight(IndexSearcher searcher, Query query, TopDocs window) throws IOException {
+        UnifiedHighlighter highlighter = new UnifiedHighlighter(searcher, indexManager.getAnalyzer());
+        highlighter.setFormatter(new DefaultPassageFormatter("<b>", "</b>", "... ", false));
+        highlighter.setMaxLength(HIGHLIGHT_MAX_LENGTH);
+        return highlighter.highlight(LuceneIndexManager.FIELD_CONTENT, query, window, 1);
+    }
+
+    private String fallbackSnippet(Document document) {
+        String content = document.get(LuceneIndexManager.FIELD_CONTENT);
+        return content == null ? "" : content.substring(0, Math.min(content.length(), SNIPPET_FALLBACK_LENGTH));
+    }
+
+    private void release(IndexSearcher searcher) {
+        if (searcher == null) {
+            return;
+        }
+        try {
+            indexManager.releaseSearcher(searcher);
+        } catch (IOException e) {
+            log.warn("Не удалось освободить читатель индекса Lucene: {}", e.getMessage());
+        }
+    }
+}
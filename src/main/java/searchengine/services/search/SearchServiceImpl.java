@@ -3,35 +3,75 @@ package searchengine.services.search;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
+import searchengine.config.IndexMode;
+import searchengine.config.ReplicaRouting;
 import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchPageView;
 import searchengine.dto.search.SearchResponse;
 import searchengine.model.*;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 import searchengine.services.lemma.LemmaEngine;
+import searchengine.services.search.postings.BlockMaxWand;
+import searchengine.services.search.postings.ImpactIndex;
+import searchengine.services.search.postings.PostingCursor;
+import searchengine.services.search.postings.PostingList;
+import searchengine.services.search.postings.ScoredPage;
+import searchengine.services.search.postings.TopKMerge;
+import searchengine.services.search.shard.ShardedSearchService;
+import searchengine.services.segment.SegmentIndexService;
+import searchengine.services.statistics.SiteCounters;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@ConditionalOnExpression("!'${search-settings.index-mode:database}'.equalsIgnoreCase('lucene')")
 public class SearchServiceImpl implements SearchService {
 
     private final LemmaEngine lemmaEngine;
     private final SiteRepository siteRepository;
-    private final LemmaRepository lemmaRepository;
     private final PageRepository pageRepository;
-    private final IndexRepository indexRepository;
+    private final ImpactIndex impactIndex;
+    private final ObjectProvider<SegmentIndexService> segmentIndexService;
+    private final SnippetGenerator snippetGenerator;
+    private final SiteCounters siteCounters;
+    private final TaskExecutor searchExecutor;
+    private final ObjectProvider<ShardedSearchService> shardedSearchService;
+
+    @Value("${search-settings.index-mode:database}")
+    private IndexMode indexMode;
+
+    @Value("${search-settings.exact-count-limit:10000}")
+    private int exactCountLimit = 10_000;
 
     private static final double FREQUENCY_THRESHOLD_PERCENT = 0.95;
 
+    /**
+     * Поиск только читает данные, поэтому его read-only транзакции могут обслуживаться репликой.
+     * Если включены шарды ({@code shard-settings.enabled}), запрос целиком выполняет координатор шардов.
+     */
     @Override
     public SearchResponse search(String query, String siteUrl, int offset, int limit) {
+        ShardedSearchService sharded = shardedSearchService.getIfAvailable();
+        if (sharded != null) {
+            return sharded.search(query, siteUrl, offset, limit);
+        }
+        return ReplicaRouting.preferReplica(() -> searchLemmas(query, siteUrl, offset, limit));
+    }
+
+    private SearchResponse searchLemmas(String query, String siteUrl, int offset, int limit) {
         if (query == null || query.isBlank()) {
             return new SearchResponse(false, "Задан пустой поисковый запрос");
         }
@@ -42,22 +82,178 @@ public class SearchServiceImpl implements SearchService {
         }
 
         Set<String> queryLemmaStrings = lemmaEngine.getLemmaMap(query).keySet();
-        List<Lemma> foundLemmas = lemmaRepository.findAllByLemmaInAndSiteIn(queryLemmaStrings, sitesToSearch);
+        List<Lemma> foundLemmas = findLemmas(queryLemmaStrings, sitesToSearch);
 
         List<Lemma> filteredLemmas = filterAndSortLemmas(foundLemmas, queryLemmaStrings, sitesToSearch);
         if (filteredLemmas.isEmpty() || (!isSingleSiteSearch(siteUrl) && queryLemmaStrings.size() > countUniqueLemmas(filteredLemmas))) {
             return createEmptyResponse();
         }
 
-        List<Page> pages = findPagesWithAllLemmas(filteredLemmas);
-        if (pages.isEmpty()) {
+        Set<String> requiredLemmas = filteredLemmas.stream().map(Lemma::getLemma).collect(Collectors.toSet());
+        int k = offset + limit;
+        List<SiteResult> siteResults = fanOut(foundLemmas, requiredLemmas, k);
+
+        int count = siteResults.stream().mapToInt(SiteResult::getMatchCount).sum();
+        if (count == 0) {
             return createEmptyResponse();
         }
+        if (offset >= count) {
+            return new SearchResponse(true, count, Collections.emptyList());
+        }
+
+        List<ScoredPage> topPages = TopKMerge.merge(siteResults.stream()
+                .map(SiteResult::getTopPages)
+                .collect(Collectors.toList()), k);
+        if (topPages.isEmpty()) {
+            return new SearchResponse(true, count, Collections.emptyList());
+        }
+        float maxScore = topPages.get(0).getScore() > 0 ? topPages.get(0).getScore() : 1.0f;
+        List<ScoredPage> window = topPages.subList(Math.min(offset, topPages.size()), topPages.size());
+
+        Map<Integer, SearchPageView> pagesById = pageRepository.findSearchPagesByIds(
+                        window.stream().map(ScoredPage::getPageId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(SearchPageView::getId, Function.identity()));
+
+        List<SearchData> data = window.stream()
+                .filter(scored -> pagesById.containsKey(scored.getPageId()))
+                .map(scored -> toSearchData(pagesById.get(scored.getPageId()),
+                        scored.getScore() / maxScore, queryLemmaStrings))
+                .collect(Collectors.toList());
+        return new SearchResponse(true, count, data);
+    }
+
+    /**
+     * Запускает подзапросы по сайтам параллельно в {@code searchExecutor}. Разбиение лемм на
+     * обязательные и необязательные сделано заранее по суммарной статистике всех сайтов, поэтому
+     * каждый сайт оценивает страницы по одним и тем же правилам. Сайты, где нет хотя бы одной
+     * обязательной леммы, не запрашиваются: совпадений на них быть не может.
+     */
+    private List<SiteResult> fanOut(List<Lemma> foundLemmas, Set<String> requiredLemmas, int k) {
+        List<List<Lemma>> lemmasBySite = foundLemmas.stream()
+                .collect(Collectors.groupingBy(lemma -> lemma.getSite().getId()))
+                .values().stream()
+                .filter(siteLemmas -> siteLemmas.stream().map(Lemma::getLemma).filter(requiredLemmas::contains)
+                        .distinct().count() == requiredLemmas.size())
+                .collect(Collectors.toList());
+        if (lemmasBySite.size() == 1) {
+            return List.of(searchSite(lemmasBySite.get(0), requiredLemmas, k));
+        }
+
+        List<CompletableFuture<SiteResult>> futures = lemmasBySite.stream()
+                .map(siteLemmas -> CompletableFuture.supplyAsync(
+                        ReplicaRouting.propagate(() -> searchSite(siteLemmas, requiredLemmas, k)), searchExecutor))
+                .collect(Collectors.toList());
+        try {
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-        List<SearchData> searchData = calculateRelevanceAndPrepareData(pages, queryLemmaStrings, query);
-        List<SearchData> paginatedResults = paginateResults(searchData, offset, limit);
+    private SiteResult searchSite(List<Lemma> siteLemmas, Set<String> requiredLemmas, int k) {
+        List<Lemma> required = siteLemmas.stream()
+                .filter(lemma -> requiredLemmas.contains(lemma.getLemma()))
+                .collect(Collectors.toList());
+        if (indexMode == IndexMode.IMPACT || indexMode == IndexMode.SEGMENT) {
+            return searchSiteImpactOrdered(required, siteLemmas, k);
+        }
+        return searchSiteExhaustive(required, siteLemmas, k);
+    }
 
-        return new SearchResponse(true, searchData.size(), paginatedResults);
+    /**
+     * Поиск с ранней остановкой: оцениваются только кандидаты, способные попасть в первые
+     * {@code k} результатов сайта. Число совпадений точное до {@code search-settings.exact-count-limit},
+     * дальше — оценка.
+     */
+    private SiteResult searchSiteImpactOrdered(List<Lemma> required, List<Lemma> siteLemmas, int k) {
+        Map<String, List<Lemma>> requiredByString = required.stream()
+                .collect(Collectors.groupingBy(Lemma::getLemma));
+        Map<String, List<Lemma>> optionalByString = siteLemmas.stream()
+                .filter(lemma -> !requiredByString.containsKey(lemma.getLemma()))
+                .collect(Collectors.groupingBy(Lemma::getLemma));
+
+        List<PostingList> requiredPostings = mergePostings(requiredByString);
+        int count = BlockMaxWand.countMatches(requiredPostings, Math.max(exactCountLimit, k));
+        if (count == 0) {
+            return new SiteResult(0, List.of());
+        }
+        return new SiteResult(count, BlockMaxWand.topK(requiredPostings, mergePostings(optionalByString), k));
+    }
+
+    /**
+     * Полный перебор: оцениваются все страницы, на которых есть обязательные леммы. Пересечение
+     * и оценки считаются по спискам вхождений из {@link ImpactIndex}, без запросов к базе на каждую страницу.
+     */
+    private SiteResult searchSiteExhaustive(List<Lemma> required, List<Lemma> siteLemmas, int k) {
+        List<PostingList> requiredPostings = mergePostings(required.stream()
+                .collect(Collectors.groupingBy(Lemma::getLemma)));
+        requiredPostings.sort(Comparator.comparingInt(PostingList::size));
+        List<PostingCursor> otherRequired = requiredPostings.subList(1, requiredPostings.size()).stream()
+                .map(PostingList::cursor)
+                .collect(Collectors.toList());
+        List<PostingCursor> scoring = mergePostings(siteLemmas.stream()
+                .collect(Collectors.groupingBy(Lemma::getLemma))).stream()
+                .map(PostingList::cursor)
+                .collect(Collectors.toList());
+
+        PostingCursor rarest = requiredPostings.get(0).cursor();
+        List<ScoredPage> scored = new ArrayList<>();
+        for (int next = rarest.nextPage(); next != PostingCursor.NO_MORE_PAGES; next = rarest.nextPage()) {
+            int pageId = next;
+            if (!otherRequired.stream().allMatch(cursor -> cursor.advance(pageId) == pageId)) {
+                continue;
+            }
+            float absoluteRelevance = 0f;
+            for (PostingCursor cursor : scoring) {
+                if (cursor.advance(pageId) == pageId) {
+                    absoluteRelevance += cursor.rank();
+                }
+            }
+            if (absoluteRelevance > 0) {
+                scored.add(new ScoredPage(pageId, absoluteRelevance));
+            }
+        }
+        scored.sort(Comparator.comparingDouble(ScoredPage::getScore).reversed()
+                .thenComparingInt(ScoredPage::getPageId));
+        return new SiteResult(scored.size(), new ArrayList<>(scored.subList(0, Math.min(k, scored.size()))));
+    }
+
+    private List<PostingList> mergePostings(Map<String, List<Lemma>> lemmasByString) {
+        return lemmasByString.values().stream()
+                .map(lemmas -> PostingList.union(lemmas.stream()
+                        .map(this::getPostings)
+                        .collect(Collectors.toList())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * В режиме {@code segment} леммы сайтов, у которых уже есть сегменты, берутся из словарей
+     * сегментов без обращения к базе; остальные сайты ищутся по таблице {@code lemma}.
+     */
+    private List<Lemma> findLemmas(Set<String> queryLemmas, List<Site> sites) {
+        SegmentIndexService segments = indexMode == IndexMode.SEGMENT ? segmentIndexService.getIfAvailable() : null;
+        if (segments == null) {
+            return impactIndex.findLemmas(queryLemmas, sites);
+        }
+        Map<Boolean, List<Site>> bySegments = sites.stream().collect(Collectors.partitioningBy(segments::hasSegments));
+        List<Lemma> lemmas = new ArrayList<>(segments.findLemmas(queryLemmas, bySegments.get(true)));
+        if (!bySegments.get(false).isEmpty()) {
+            lemmas.addAll(impactIndex.findLemmas(queryLemmas, bySegments.get(false)));
+        }
+        return lemmas;
+    }
+
+    private PostingList getPostings(Lemma lemma) {
+        SegmentIndexService segments = indexMode == IndexMode.SEGMENT ? segmentIndexService.getIfAvailable() : null;
+        if (segments != null && segments.hasSegments(lemma.getSite())) {
+            return segments.getPostings(lemma);
+        }
+        return impactIndex.getPostings(lemma);
     }
 
     private List<Site> getSitesToSearch(String siteUrl) {
@@ -75,7 +271,7 @@ public class SearchServiceImpl implements SearchService {
             return lemmas;
         }
 
-        long totalPages = sites.stream().mapToLong(pageRepository::countBySite).sum();
+        long totalPages = sites.stream().mapToLong(siteCounters::getPageCount).sum();
         if (totalPages == 0) {
             return Collections.emptyList();
         }
@@ -96,131 +292,16 @@ public class SearchServiceImpl implements SearchService {
         return result.isEmpty() && !lemmas.isEmpty() ? lemmas : result;
     }
 
-    private List<Page> findPagesWithAllLemmas(List<Lemma> lemmas) {
-        if (lemmas.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        Map<String, List<Lemma>> lemmasByString = lemmas.stream().collect(Collectors.groupingBy(Lemma::getLemma));
-        List<String> sortedLemmaStrings = lemmasByString.keySet().stream()
-                .sorted(Comparator.comparingInt(key -> lemmasByString.get(key).stream().mapToInt(Lemma::getFrequency).sum()))
-                .collect(Collectors.toList());
-
-        String rarestLemma = sortedLemmaStrings.get(0);
-        List<Page> initialPages = findPagesForLemmaString(rarestLemma, lemmasByString);
-        if (initialPages.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        Map<Integer, Page> resultMap = initialPages.stream()
-                .collect(Collectors.toMap(Page::getId, Function.identity(), (a, b) -> a));
-
-        for (int i = 1; i < sortedLemmaStrings.size(); i++) {
-            String nextLemma = sortedLemmaStrings.get(i);
-            List<Page> nextPages = findPagesForLemmaString(nextLemma, lemmasByString);
-            Set<Integer> nextPageIds = nextPages.stream().map(Page::getId).collect(Collectors.toSet());
-            resultMap.keySet().retainAll(nextPageIds);
-            if (resultMap.isEmpty()) {
-                return Collections.emptyList();
-            }
-        }
-        return new ArrayList<>(resultMap.values());
-    }
-
-    private List<Page> findPagesForLemmaString(String lemmaString, Map<String, List<Lemma>> allLemmas) {
-        return allLemmas.get(lemmaString).stream()
-                .flatMap(lemma -> indexRepository.findDistinctPagesByLemma(lemma).stream())
-                .distinct()
-                .collect(Collectors.toList());
-    }
-
-    private List<SearchData> calculateRelevanceAndPrepareData(List<Page> pages, Set<String> queryLemmas, String query) {
-        List<Page> pagesWithSites = pageRepository.findPagesWithSites(pages);
-
-        Map<Page, Float> pageRelevance = new HashMap<>();
-        float maxAbsoluteRelevance = 0.0f;
-
-        for (Page page : pagesWithSites) {
-            List<Lemma> lemmasForSite = lemmaRepository.findAllBySiteAndLemmaIn(page.getSite(), queryLemmas);
-            if (lemmasForSite.isEmpty()) {
-                continue;
-            }
-
-            List<SearchIndex> indexes = indexRepository.findAllByPageAndLemmaIn(page, lemmasForSite);
-            float absoluteRelevance = indexes.stream().map(SearchIndex::getRank).reduce(0f, Float::sum);
-
-            if (absoluteRelevance > 0) {
-                pageRelevance.put(page, absoluteRelevance);
-                if (absoluteRelevance > maxAbsoluteRelevance) {
-                    maxAbsoluteRelevance = absoluteRelevance;
-                }
-            }
-        }
-
-        if (pageRelevance.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        final float finalMaxRelevance = maxAbsoluteRelevance > 0 ? maxAbsoluteRelevance : 1.0f;
-
-        return pageRelevance.entrySet().stream()
-                .map(entry -> {
-                    Page page = entry.getKey();
-                    float absoluteRelevance = entry.getValue();
-                    return new SearchData(
-                            page.getSite().getUrl(),
-                            page.getSite().getName(),
-                            page.getPath(),
-                            Jsoup.parse(page.getContent()).title(),
-                            generateSnippet(page.getContent(), query, queryLemmas),
-                            absoluteRelevance / finalMaxRelevance
-                    );
-                })
-                .sorted(Comparator.comparing(SearchData::getRelevance).reversed())
-                .collect(Collectors.toList());
-    }
-
-    private String generateSnippet(String htmlContent, String originalQuery, Set<String> queryLemmas) {
-        String text = Jsoup.parse(htmlContent).text().replaceAll("\\s+", " ").trim();
-
-        Optional<String> bestSentenceOpt = Arrays.stream(text.split("(?<=[.!?])\\s*"))
-                .map(s -> new AbstractMap.SimpleEntry<>(s, countLemmaOccurrences(s, queryLemmas)))
-                .filter(entry -> entry.getValue() > 0)
-                .max(Comparator.comparingInt(AbstractMap.SimpleEntry::getValue))
-                .map(AbstractMap.SimpleEntry::getKey);
-
-        String snippetText = bestSentenceOpt.orElse(text.substring(0, Math.min(text.length(), 250)));
-
-        Set<String> queryWords = new HashSet<>(Arrays.asList(originalQuery.toLowerCase().split("\\s+")));
-        String[] snippetParts = snippetText.split("(?<=[\\s.,!?;:\"'()])|(?=[\\s.,!?;:\"'()])");
-
-        StringBuilder resultSnippet = new StringBuilder();
-
-        for (String part : snippetParts) {
-              if (queryWords.contains(part.toLowerCase())) {
-                resultSnippet.append("<b>").append(part).append("</b>");
-            } else {
-                resultSnippet.append(part);
-            }
-        }
-
-        return resultSnippet.toString();
-    }
-
-    private int countLemmaOccurrences(String sentence, Set<String> queryLemmas) {
-        return lemmaEngine.getLemmaMap(sentence).keySet().stream()
-                .filter(queryLemmas::contains)
-                .mapToInt(l -> 1)
-                .sum();
-    }
-
-    private List<SearchData> paginateResults(List<SearchData> data, int offset, int limit) {
-        data.sort(Comparator.comparing(SearchData::getRelevance).reversed());
-        if (offset >= data.size()) {
-            return Collections.emptyList();
-        }
-        int toIndex = Math.min(offset + limit, data.size());
-        return data.subList(offset, toIndex);
+    private SearchData toSearchData(SearchPageView page, float relevance, Set<String> queryLemmas) {
+        Document document = Jsoup.parse(page.getContent());
+        return new SearchData(
+                page.getSiteUrl(),
+                page.getSiteName(),
+                page.getPath(),
+                document.title(),
+                snippetGenerator.generate(document.text(), queryLemmas),
+                relevance
+        );
     }
 
     private boolean isSingleSiteSearch(String siteUrl) {
@@ -238,4 +319,10 @@ public class SearchServiceImpl implements SearchService {
     private SearchResponse createEmptyResponse() {
         return new SearchResponse(true, 0, Collections.emptyList());
     }
-}
\ No newline at end of file
+
+    @lombok.Value
+    private static class SiteResult {
+        int matchCount;
+        List<ScoredPage> topPages;
+    }
+}
@@ -0,0 +1,119 @@
+package searchengine.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.nodes.Entities;
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.LemmaToken;
+import searchengine.services.lemma.LemmaEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Строит сниппет по смещениям лемм: текст страницы анализируется один раз, затем скользящим окном
+ * выбирается участок, где встречается больше всего разных лемм запроса, и в нем выделяются все
+ * словоформы этих лемм, а не только слова, буквально совпавшие с запросом.
+ */
+@Component
+@RequiredArgsConstructor
+public class SnippetGenerator {
+
+    static final int SNIPPET_LENGTH = 250;
+    private static final String ELLIPSIS = "...";
+
+    private final LemmaEngine lemmaEngine;
+
+    public String generate(String text, Set<String> queryLemmas) {
+        List<LemmaToken> matches = new ArrayList<>();
+        for (LemmaToken token : lemmaEngine.getLemmaTokens(text)) {
+            if (queryLemmas.contains(token.getLemma())) {
+                matches.add(token);
+            }
+        }
+        if (matches.isEmpty()) {
+            return render(text, 0, snapEnd(text, Math.min(text.length(), SNIPPET_LENGTH)), matches);
+        }
+
+        int[] window = densestWindow(matches);
+        int first = window[0];
+        int last = window[1];
+        int windowStart = matches.get(first).getStartOffset();
+        int windowEnd = matches.get(last).getEndOffset();
+        int start = Math.max(0, windowStart - Math.max(0, SNIPPET_LENGTH - (windowEnd - windowStart)) / 2);
+        int end = Math.min(text.length(), Math.max(start + SNIPPET_LENGTH, windowEnd));
+        start = Math.min(snapStart(text, start), windowStart);
+        end = Math.max(snapEnd(text, end), windowEnd);
+        return render(text, start, end, matches);
+    }
+
+    /**
+     * Двумя указателями ищет окно не длиннее {@link #SNIPPET_LENGTH} символов с наибольшим числом
+     * разных лемм запроса, при равенстве — с наибольшим числом вхождений.
+     * @return индексы первого и последнего совпадения окна.
+     */
+    private int[] densestWindow(List<LemmaToken> matches) {
+        Map<String, Integer> inWindow = new HashMap<>();
+        int bestFirst = 0;
+        int bestLast = 0;
+        int bestDistinct = 0;
+        int bestCount = 0;
+        int first = 0;
+        for (int last = 0; last < matches.size(); last++) {
+            inWindow.merge(matches.get(last).getLemma(), 1, Integer::sum);
+            while (matches.get(last).getEndOffset() - matches.get(first).getStartOffset() > SNIPPET_LENGTH && first < last) {
+                inWindow.computeIfPresent(matches.get(first).getLemma(), (lemma, count) -> count > 1 ? count - 1 : null);
+                first++;
+            }
+            int count = last - first + 1;
+            if (inWindow.size() > bestDistinct || (inWindow.size() == bestDistinct && count > bestCount)) {
+                bestDistinct = inWindow.size();
+                bestCount = count;
+                bestFirst = first;
+                bestLast = last;
+            }
+        }
+        return new int[]{bestFirst, bestLast};
+    }
+
+    private String render(String text, int start, int end, List<LemmaToken> matches) {
+        StringBuilder snippet = new StringBuilder(end - start + 64);
+        if (start > 0) {
+            snippet.append(ELLIPSIS);
+        }
+        int position = start;
+        for (LemmaToken token : matches) {
+            if (token.getStartOffset() < position || token.getEndOffset() > end) {
+                continue;
+            }
+            snippet.append(Entities.escape(text.substring(position, token.getStartOffset())))
+                    .append("<b>")
+                    .append(Entities.escape(text.substring(token.getStartOffset(), token.getEndOffset())))
+                    .append("</b>");
+            position = token.getEndOffset();
+        }
+        snippet.append(Entities.escape(text.substring(position, end)));
+        if (end < text.length()) {
+            snippet.append(ELLIPSIS);
+        }
+        return snippet.toString();
+    }
+
+    private int snapStart(String text, int start) {
+        if (start == 0 || Character.isWhitespace(text.charAt(start - 1))) {
+            return start;
+        }
+        int space = text.indexOf(' ', start);
+        return space < 0 ? start : space + 1;
+    }
+
+    private int snapEnd(String text, int end) {
+        if (end >= text.length() || Character.isWhitespace(text.charAt(end))) {
+            return end;
+        }
+        int space = text.lastIndexOf(' ', end);
+        return space <= 0 ? end : space;
+    }
+}
@@ -0,0 +1,151 @@
+package searchengine.services.search.postings;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отбор top-K страниц по алгоритму Block-Max WAND.
+ * <p>
+ * Страница попадает в выдачу, только если содержит все обязательные леммы; необязательные
+ * (слишком частые) леммы лишь добавляют свой ранг к оценке. Пока куча лучших результатов не
+ * заполнена, оценивается каждый кандидат. После этого для очередного кандидата сначала
+ * считается верхняя граница оценки по максимальным рангам текущих блоков всех списков; если она
+ * не превышает порог кучи, весь диапазон до конца ближайшего блока пропускается без оценки.
+ */
+public final class BlockMaxWand {
+
+    private static final Comparator<ScoredPage> WORST_FIRST = Comparator
+            .comparingDouble(ScoredPage::getScore)
+            .thenComparing(ScoredPage::getPageId, Comparator.reverseOrder());
+
+    private BlockMaxWand() {
+    }
+
+    /**
+     * @param required списки вхождений обязательных лемм.
+     * @param optional списки вхождений лемм, которые учитываются только в оценке.
+     * @param k        сколько лучших страниц вернуть.
+     * @return страницы в порядке убывания оценки.
+     */
+    public static List<ScoredPage> topK(List<PostingList> required, List<PostingList> optional, int k) {
+        if (required.isEmpty() || k <= 0) {
+            return List.of();
+        }
+
+        List<PostingCursor> requiredCursors = cursorsByCost(required);
+        List<PostingCursor> optionalCursors = cursorsByCost(optional);
+        PostingCursor lead = requiredCursors.get(0);
+
+        PriorityQueue<ScoredPage> heap = new PriorityQueue<>(k + 1, WORST_FIRST);
+        float threshold = Float.NEGATIVE_INFINITY;
+
+        int pageId = lead.nextPage();
+        while (pageId != PostingCursor.NO_MORE_PAGES) {
+            if (heap.size() >= k) {
+                float upperBound = 0f;
+                int skipUntil = PostingCursor.NO_MORE_PAGES;
+                for (PostingCursor cursor : requiredCursors) {
+                    upperBound += cursor.blockMaxRank(pageId);
+                    skipUntil = Math.min(skipUntil, cursor.blockLastId(pageId));
+                }
+                for (PostingCursor cursor : optionalCursors) {
+                    upperBound += cursor.blockMaxRank(pageId);
+                    skipUntil = Math.min(skipUntil, cursor.blockLastId(pageId));
+                }
+                if (upperBound <= threshold) {
+                    if (skipUntil == PostingCursor.NO_MORE_PAGES) {
+                        break;
+                    }
+                    pageId = lead.advance(skipUntil + 1);
+                    continue;
+                }
+            }
+
+            int candidate = alignRequired(requiredCursors, pageId);
+            if (candidate != pageId) {
+                pageId = candidate == PostingCursor.NO_MORE_PAGES ? candidate : lead.advance(candidate);
+                continue;
+            }
+
+            float score = 0f;
+            for (PostingCursor cursor : requiredCursors) {
+                score += cursor.rank();
+            }
+            for (PostingCursor cursor : optionalCursors) {
+                if (cursor.advance(pageId) == pageId) {
+                    score += cursor.rank();
+                }
+            }
+
+            if (heap.size() < k) {
+                heap.add(new ScoredPage(pageId, score));
+            } else if (score > threshold) {
+                heap.poll();
+                heap.add(new ScoredPage(pageId, score));
+            }
+            if (heap.size() >= k) {
+                threshold = heap.peek().getScore();
+            }
+            pageId = lead.nextPage();
+        }
+
+        List<ScoredPage> result = new ArrayList<>(heap);
+        result.sort(WORST_FIRST.reversed());
+        return result;
+    }
+
+    /**
+     * Подсчитывает число страниц, содержащих все обязательные леммы. Оценки при этом не вычисляются.
+     * Точный подсчет останавливается на {@code exactLimit} совпадениях: дальше число экстраполируется
+     * по доле уже пройденного самого короткого списка, чтобы не обходить пересечение целиком.
+     *
+     * @return точное число, если совпадений меньше {@code exactLimit}, иначе оценку не меньше {@code exactLimit}.
+     */
+    public static int countMatches(List<PostingList> required, int exactLimit) {
+        if (required.isEmpty()) {
+            return 0;
+        }
+        List<PostingCursor> cursors = cursorsByCost(required);
+        PostingCursor lead = cursors.get(0);
+        int count = 0;
+        int pageId = lead.nextPage();
+        while (pageId != PostingCursor.NO_MORE_PAGES) {
+            int candidate = alignRequired(cursors, pageId);
+            if (candidate == pageId) {
+                count++;
+                if (count >= exactLimit) {
+                    return (int) Math.max(count, (long) count * lead.cost() / lead.consumed());
+                }
+                pageId = lead.nextPage();
+            } else {
+                pageId = candidate == PostingCursor.NO_MORE_PAGES ? candidate : lead.advance(candidate);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Продвигает все курсоры, кроме ведущего, к странице {@code pageId}.
+     * @return {@code pageId}, если страница есть во всех списках, иначе ближайшую страницу, с которой стоит продолжить.
+     */
+    private static int alignRequired(List<PostingCursor> cursors, int pageId) {
+        for (int i = 1; i < cursors.size(); i++) {
+            int found = cursors.get(i).advance(pageId);
+            if (found != pageId) {
+                return found;
+            }
+        }
+        return pageId;
+    }
+
+    private static List<PostingCursor> cursorsByCost(List<PostingList> lists) {
+        List<PostingCursor> cursors = new ArrayList<>(lists.size());
+        for (PostingList list : lists) {
+            cursors.add(list.cursor());
+        }
+        cursors.sort(Comparator.comparingInt(PostingCursor::cost));
+        return cursors;
+    }
+}
@@ -0,0 +1,214 @@
+package searchengine.services.search.postings;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.ReplicaRouting;
+import searchengine.dto.search.PostingView;
+import searchengine.model.Lemma;
+import searchengine.model.Site;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.services.statistics.SiteCounters;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш лемм и списков вхождений с заранее посчитанными максимальными рангами блоков.
+ * <p>
+ * Список строится из таблицы {@code search_index} при первом обращении к лемме, а строки леммы запроса
+ * (в том числе отсутствие леммы на сайте) — из таблицы {@code lemma}. Закодированные данные хранятся вне
+ * кучи в {@link OffHeapLruCache} объемом {@code search-settings.posting-cache-mb} и
+ * {@code search-settings.lemma-cache-mb} и вытесняются по давности использования.
+ * <p>
+ * Ключ записи содержит версию индекса сайта: поколение, которое этот узел увеличивает после своей записи,
+ * и время {@code site.counters_time}, которое обновляют при сохранении счетчиков все узлы. После изменения
+ * версии старые записи больше не находятся и вытесняются из кэша первыми, поэтому сброс сайта не
+ * перебирает кэш. Запись на другом узле становится видна после сохранения его счетчиков
+ * ({@code statistics-settings.flush-interval-ms}).
+ * <p>
+ * Промахи всегда читаются с основной базы, даже если поиск идет с реплики: данные отстающей реплики,
+ * прочитанные после сброса, остались бы в кэше до следующей записи по сайту.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImpactIndex {
+
+    private static final int ABSENT = -1;
+
+    private final IndexRepository indexRepository;
+    private final LemmaRepository lemmaRepository;
+    private final SiteCounters siteCounters;
+
+    @Value("${search-settings.posting-cache-mb:256}")
+    private long postingCacheMb;
+
+    @Value("${search-settings.lemma-cache-mb:16}")
+    private long lemmaCacheMb;
+
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+    private OffHeapLruCache<PostingKey> postings;
+    private OffHeapLruCache<LemmaKey> lemmas;
+
+    @PostConstruct
+    public void init() {
+        postings = new OffHeapLruCache<>(postingCacheMb << 20);
+        lemmas = new OffHeapLruCache<>(lemmaCacheMb << 20);
+    }
+
+    public PostingList getPostings(Lemma lemma) {
+        int siteId = lemma.getSite().getId();
+        long generation = generation(siteId);
+        PostingKey key = new PostingKey(siteId, generation, siteVersion(lemma.getSite()), lemma.getId());
+        ByteBuffer cached = postings.get(key);
+        if (cached != null) {
+            return PostingList.wrap(cached);
+        }
+        PostingList list = loadPostings(lemma);
+        postings.put(key, list.encode(), () -> generation(siteId) == generation);
+        return list;
+    }
+
+    /**
+     * Строки лемм запроса на указанных сайтах. В базу уходит один запрос только за парами
+     * (сайт, лемма), которых нет в кэше; отсутствие леммы на сайте тоже кэшируется.
+     * Возвращаемые строки ссылаются на переданные объекты сайтов.
+     */
+    public List<Lemma> findLemmas(Set<String> queryLemmas, List<Site> sites) {
+        List<Lemma> result = new ArrayList<>();
+        Map<Integer, Site> missedSites = new HashMap<>();
+        Set<String> missedLemmas = new HashSet<>();
+        Set<LemmaKey> missedKeys = new HashSet<>();
+        for (Site site : sites) {
+            long generation = generation(site.getId());
+            for (String lemma : queryLemmas) {
+                LemmaKey key = new LemmaKey(site.getId(), generation, siteVersion(site), lemma);
+                ByteBuffer cached = lemmas.get(key);
+                if (cached == null) {
+                    missedSites.put(site.getId(), site);
+                    missedLemmas.add(lemma);
+                    missedKeys.add(key);
+                } else if (cached.getInt(0) != ABSENT) {
+                    result.add(toLemma(site, lemma, cached.getInt(0), cached.getInt(4)));
+                }
+            }
+        }
+        if (missedSites.isEmpty()) {
+            return result;
+        }
+
+        Map<Integer, Map<String, Lemma>> loaded = new HashMap<>();
+        List<Lemma> rows = ReplicaRouting.onPrimary(
+                () -> lemmaRepository.findAllByLemmaInAndSiteIn(missedLemmas, missedSites.values()));
+        for (Lemma lemma : rows) {
+            loaded.computeIfAbsent(lemma.getSite().getId(), id -> new HashMap<>()).put(lemma.getLemma(), lemma);
+        }
+        for (LemmaKey key : missedKeys) {
+            Lemma lemma = loaded.getOrDefault(key.getSiteId(), Map.of()).get(key.getLemma());
+            ByteBuffer value = ByteBuffer.allocate(8)
+                    .putInt(0, lemma == null ? ABSENT : lemma.getId())
+                    .putInt(4, lemma == null ? 0 : lemma.getFrequency());
+            lemmas.put(key, value, () -> generation(key.getSiteId()) == key.getGeneration());
+            if (lemma != null) {
+                result.add(toLemma(missedSites.get(key.getSiteId()), key.getLemma(), lemma.getId(), lemma.getFrequency()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Сбрасывает леммы и списки вхождений сайта на этом узле и отмечает изменение для остальных узлов.
+     * Внутри транзакции сброс откладывается до ее фиксации, чтобы параллельный поиск не успел
+     * закэшировать еще не записанные данные.
+     */
+    public void invalidateSite(Site site) {
+        if (site == null || site.getId() == null) {
+            return;
+        }
+        siteCounters.markIndexChanged(site);
+        Integer siteId = site.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictSite(siteId);
+                }
+            });
+        } else {
+            evictSite(siteId);
+        }
+    }
+
+    public void invalidateAll() {
+        generations.values().forEach(AtomicLong::incrementAndGet);
+        postings.clear();
+        lemmas.clear();
+    }
+
+    public OffHeapLruCache.CacheStats postingStats() {
+        return postings.stats();
+    }
+
+    public OffHeapLruCache.CacheStats lemmaStats() {
+        return lemmas.stats();
+    }
+
+    /**
+     * Записи с прежним поколением остаются в кэше, но больше не находятся. Загрузка, начатая до сброса,
+     * увидит новое поколение при вставке и не займет место в кэше устаревшими данными.
+     */
+    private void evictSite(Integer siteId) {
+        generations.computeIfAbsent(siteId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    private long generation(int siteId) {
+        return generations.computeIfAbsent(siteId, id -> new AtomicLong()).get();
+    }
+
+    private static long siteVersion(Site site) {
+        return site.getCountersTime() == null ? 0 : site.getCountersTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private PostingList loadPostings(Lemma lemma) {
+        List<PostingView> rows = ReplicaRouting.onPrimary(() -> indexRepository.findPostingsByLemma(lemma));
+        int[] pageIds = new int[rows.size()];
+        float[] ranks = new float[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            pageIds[i] = rows.get(i).getPageId();
+            ranks[i] = rows.get(i).getRank();
+        }
+        return new PostingList(pageIds, ranks);
+    }
+
+    private static Lemma toLemma(Site site, String lemmaString, int id, int frequency) {
+        Lemma lemma = new Lemma();
+        lemma.setId(id);
+        lemma.setSite(site);
+        lemma.setLemma(lemmaString);
+        lemma.setFrequency(frequency);
+        return lemma;
+    }
+
+    @lombok.Value
+    private static class PostingKey {
+        int siteId;
+        long generation;
+        long siteVersion;
+        int lemmaId;
+    }
+
+    @lombok.Value
+    private static class LemmaKey {
+        int siteId;
+        long generation;
+        long siteVersion;
+        String lemma;
+    }
+}
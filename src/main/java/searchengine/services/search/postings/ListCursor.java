@@ -0,0 +1,117 @@
+package searchengine.services.search.postings;
+
+/**
+ * Курсор одного списка вхождений. Переходы выполняются за амортизированное время, пропорциональное
+ * числу пропущенных блоков, а не записей. Удаленные страницы пропускаются по ходу прохода: их
+ * отсортированный список просматривается тем же монотонным указателем, что и записи.
+ */
+final class ListCursor implements PostingCursor {
+
+    private final PostingList postings;
+    private final int[] deleted;
+    private int position = -1;
+    private int block = 0;
+    private int shallowBlock = 0;
+    private int deletedIndex = 0;
+
+    ListCursor(PostingList postings) {
+        this.postings = postings;
+        this.deleted = postings.deletedPageIds();
+    }
+
+    @Override
+    public int pageId() {
+        if (position < 0) {
+            return -1;
+        }
+        return position < postings.rawSize() ? postings.pageId(position) : NO_MORE_PAGES;
+    }
+
+    @Override
+    public float rank() {
+        return postings.rank(position);
+    }
+
+    @Override
+    public int cost() {
+        return postings.rawSize();
+    }
+
+    @Override
+    public int consumed() {
+        return Math.min(position + 1, postings.rawSize());
+    }
+
+    @Override
+    public int nextPage() {
+        position++;
+        return skipDeleted();
+    }
+
+    /**
+     * Сначала пропускаются целые блоки по их последнему идентификатору, затем выполняется
+     * двоичный поиск внутри найденного блока.
+     */
+    @Override
+    public int advance(int target) {
+        int current = pageId();
+        if (current >= target) {
+            return current;
+        }
+        while (block < postings.blockCount() && postings.blockLastId(block) < target) {
+            block++;
+        }
+        if (block >= postings.blockCount()) {
+            position = postings.rawSize();
+            return NO_MORE_PAGES;
+        }
+        int low = Math.max(position + 1, block * PostingList.BLOCK_SIZE);
+        int high = Math.min((block + 1) * PostingList.BLOCK_SIZE, postings.rawSize()) - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postings.pageId(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        position = low;
+        return skipDeleted();
+    }
+
+    @Override
+    public float blockMaxRank(int target) {
+        int b = moveShallow(target);
+        return b < postings.blockCount() ? postings.blockMaxRank(b) : 0f;
+    }
+
+    @Override
+    public int blockLastId(int target) {
+        int b = moveShallow(target);
+        return b < postings.blockCount() ? postings.blockLastId(b) : NO_MORE_PAGES;
+    }
+
+    private int skipDeleted() {
+        while (position < postings.rawSize()) {
+            int pageId = postings.pageId(position);
+            while (deletedIndex < deleted.length && deleted[deletedIndex] < pageId) {
+                deletedIndex++;
+            }
+            if (deletedIndex >= deleted.length || deleted[deletedIndex] != pageId) {
+                block = position / PostingList.BLOCK_SIZE;
+                return pageId;
+            }
+            position++;
+        }
+        position = postings.rawSize();
+        return NO_MORE_PAGES;
+    }
+
+    private int moveShallow(int target) {
+        shallowBlock = Math.max(shallowBlock, block);
+        while (shallowBlock < postings.blockCount() && postings.blockLastId(shallowBlock) < target) {
+            shallowBlock++;
+        }
+        return shallowBlock;
+    }
+}
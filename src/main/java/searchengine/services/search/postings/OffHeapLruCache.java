@@ -0,0 +1,109 @@
+package searchengine.services.search.postings;
+
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Кэш с ограничением по объему, значения которого лежат вне кучи Java в прямых {@link ByteBuffer}.
+ * В куче остаются только ключи и заголовки буферов, поэтому объем закэшированных данных не влияет
+ * на размер кучи и длительность сборок мусора.
+ * <p>
+ * Значения короче {@link #MIN_DIRECT_BYTES} хранятся в куче: у прямого буфера есть собственные объекты
+ * в куче и заголовок выделения, и для строки в несколько байт они больше самих данных. В объем кэша
+ * каждой записи засчитывается, кроме данных, {@link #ENTRY_OVERHEAD} байт на узел карты, ключ и буфер.
+ * <p>
+ * Вытеснение — по давности использования (LRU): при нехватке места удаляются записи, к которым
+ * дольше всего не обращались. Значение больше всего кэша не сохраняется.
+ */
+public final class OffHeapLruCache<K> {
+
+    static final int MIN_DIRECT_BYTES = 1024;
+    static final int ENTRY_OVERHEAD = 128;
+
+    private final long capacityBytes;
+    private final LinkedHashMap<K, ByteBuffer> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public OffHeapLruCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * @return буфер только для чтения с позицией 0 или {@code null}, если значения нет.
+     *         Буфер остается пригодным для чтения, даже если запись будет вытеснена.
+     */
+    public synchronized ByteBuffer get(K key) {
+        ByteBuffer value = entries.get(key);
+        if (value == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return value.asReadOnlyBuffer();
+    }
+
+    /**
+     * Копирует оставшиеся байты {@code value} в кэш. Проверка {@code stillValid} выполняется
+     * под той же блокировкой, что и вставка, чтобы значение, прочитанное до сброса, не попало в кэш после него.
+     */
+    public synchronized void put(K key, ByteBuffer value, BooleanSupplier stillValid) {
+        int size = value.remaining();
+        if (charge(size) > capacityBytes || !stillValid.getAsBoolean()) {
+            return;
+        }
+        ByteBuffer previous = entries.remove(key);
+        if (previous != null) {
+            usedBytes -= charge(previous.capacity());
+        }
+        evictUntilFits(charge(size));
+        ByteBuffer stored = size < MIN_DIRECT_BYTES ? ByteBuffer.allocate(size) : ByteBuffer.allocateDirect(size);
+        stored.put(value.duplicate()).flip();
+        entries.put(key, stored);
+        usedBytes += charge(size);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(entries.size(), usedBytes, capacityBytes, hits, misses, evictions);
+    }
+
+    private static long charge(int size) {
+        return (long) size + ENTRY_OVERHEAD;
+    }
+
+    private void evictUntilFits(long charge) {
+        Iterator<Map.Entry<K, ByteBuffer>> eldest = entries.entrySet().iterator();
+        while (usedBytes + charge > capacityBytes && eldest.hasNext()) {
+            usedBytes -= charge(eldest.next().getValue().capacity());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    @Value
+    public static class CacheStats {
+        int entries;
+        long usedBytes;
+        long capacityBytes;
+        long hits;
+        long misses;
+        long evictions;
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+}
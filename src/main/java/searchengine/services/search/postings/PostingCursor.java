@@ -0,0 +1,41 @@
+package searchengine.services.search.postings;
+
+/**
+ * Курсор, последовательно проходящий по {@link PostingList}. Позиция курсора только возрастает.
+ * До первого вызова {@link #nextPage()} или {@link #advance(int)} текущая страница равна {@code -1}.
+ */
+public interface PostingCursor {
+
+    int NO_MORE_PAGES = Integer.MAX_VALUE;
+
+    int pageId();
+
+    float rank();
+
+    /**
+     * Сколько записей всего проходит курсор, включая удаленные страницы; служит оценкой стоимости прохода.
+     */
+    int cost();
+
+    /**
+     * Сколько записей курсор уже прошел, включая текущую.
+     */
+    int consumed();
+
+    int nextPage();
+
+    /**
+     * Перемещает курсор на первую страницу с идентификатором не меньше {@code target}.
+     */
+    int advance(int target);
+
+    /**
+     * Верхняя граница ранга страниц от {@code target} до {@link #blockLastId(int)}. Позиция курсора не меняется.
+     */
+    float blockMaxRank(int target);
+
+    /**
+     * Последний идентификатор страницы в блоке, который содержал бы {@code target}.
+     */
+    int blockLastId(int target);
+}
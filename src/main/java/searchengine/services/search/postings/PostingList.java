@@ -0,0 +1,234 @@
+package searchengine.services.search.postings;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Неизменяемый список вхождений леммы: идентификаторы страниц по возрастанию и ранг леммы на каждой из них.
+ * <p>
+ * Список разбит на блоки по {@link #BLOCK_SIZE} записей. Для каждого блока заранее вычислены
+ * последний идентификатор страницы и максимальный ранг, что позволяет при поиске top-K
+ * пропускать целые блоки, не вычисляя оценки входящих в них страниц.
+ * <p>
+ * Данные хранятся в {@link ByteBuffer} в формате фиксированной ширины: заголовок (число записей, число блоков,
+ * максимальный ранг), таблица последних идентификаторов блоков, таблица максимальных рангов блоков,
+ * идентификаторы страниц и ранги. Поэтому {@link #wrap(ByteBuffer)} ничего не копирует и не пересчитывает:
+ * курсор читает записи прямо из буфера кэша вне кучи или из отображенного в память файла сегмента.
+ * <p>
+ * Список сегмента может содержать удаленные страницы: их идентификаторы передаются в
+ * {@link #wrap(ByteBuffer, int[])}, и курсор пропускает их при проходе. Объединение нескольких списков
+ * ({@link #union(List)}) тоже ничего не копирует: его курсор сливает курсоры частей.
+ */
+public final class PostingList {
+
+    public static final int BLOCK_SIZE = 64;
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + Float.BYTES;
+    public static final PostingList EMPTY = new PostingList(new int[0], new float[0]);
+
+    private final ByteBuffer buffer;
+    private final int rawSize;
+    private final int blockCount;
+    private final float maxRank;
+    private final int[] deletedPageIds;
+    private final int size;
+    private final List<PostingList> parts;
+
+    /**
+     * @param pageIds идентификаторы страниц, отсортированные по возрастанию, без повторов.
+     * @param ranks   ранги леммы на соответствующих страницах.
+     */
+    public PostingList(int[] pageIds, float[] ranks) {
+        if (pageIds.length != ranks.length) {
+            throw new IllegalArgumentException("Количество страниц и рангов не совпадает");
+        }
+        int blocks = (pageIds.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ByteBuffer out = ByteBuffer.allocate(encodedLength(pageIds.length, blocks));
+        float globalMax = 0f;
+        for (int block = 0; block < blocks; block++) {
+            int from = block * BLOCK_SIZE;
+            int to = Math.min(from + BLOCK_SIZE, pageIds.length);
+            float blockMax = 0f;
+            for (int i = from; i < to; i++) {
+                blockMax = Math.max(blockMax, ranks[i]);
+            }
+            out.putInt(HEADER_BYTES + block * Integer.BYTES, pageIds[to - 1]);
+            out.putFloat(HEADER_BYTES + (blocks + block) * Integer.BYTES, blockMax);
+            globalMax = Math.max(globalMax, blockMax);
+        }
+        int pageIdsAt = HEADER_BYTES + blocks * 2 * Integer.BYTES;
+        for (int i = 0; i < pageIds.length; i++) {
+            out.putInt(pageIdsAt + i * Integer.BYTES, pageIds[i]);
+            out.putFloat(pageIdsAt + (pageIds.length + i) * Integer.BYTES, ranks[i]);
+        }
+        out.putInt(0, pageIds.length).putInt(Integer.BYTES, blocks).putFloat(Integer.BYTES * 2, globalMax);
+
+        this.buffer = out;
+        this.rawSize = pageIds.length;
+        this.blockCount = blocks;
+        this.maxRank = globalMax;
+        this.deletedPageIds = new int[0];
+        this.size = rawSize;
+        this.parts = null;
+    }
+
+    private PostingList(ByteBuffer buffer, int[] deletedPageIds) {
+        this.rawSize = buffer.getInt(0);
+        this.blockCount = buffer.getInt(Integer.BYTES);
+        this.maxRank = buffer.getFloat(Integer.BYTES * 2);
+        this.buffer = buffer.limit(encodedLength(rawSize, blockCount));
+        this.deletedPageIds = deletedPageIds;
+        this.size = rawSize - countDeleted();
+        this.parts = null;
+    }
+
+    private PostingList(List<PostingList> parts) {
+        this.buffer = null;
+        this.rawSize = parts.stream().mapToInt(PostingList::rawSize).sum();
+        this.blockCount = 0;
+        this.maxRank = (float) parts.stream().mapToDouble(PostingList::maxRank).max().orElse(0);
+        this.deletedPageIds = new int[0];
+        this.size = parts.stream().mapToInt(PostingList::size).sum();
+        this.parts = parts;
+    }
+
+    /**
+     * Список поверх закодированного представления, начинающегося с текущей позиции {@code in}.
+     * Данные не копируются: буфер должен оставаться неизменным, пока список используется.
+     */
+    public static PostingList wrap(ByteBuffer in) {
+        return wrap(in, new int[0]);
+    }
+
+    /**
+     * @param deletedPageIds отсортированные идентификаторы удаленных страниц, которые курсор пропускает.
+     */
+    public static PostingList wrap(ByteBuffer in, int[] deletedPageIds) {
+        return new PostingList(in.slice(), deletedPageIds);
+    }
+
+    /**
+     * Объединяет непересекающиеся списки вхождений одной леммы: разных сайтов или разных сегментов одного сайта.
+     * Записи не копируются, курсор объединения проходит по курсорам частей.
+     */
+    public static PostingList union(List<PostingList> lists) {
+        List<PostingList> parts = new ArrayList<>();
+        for (PostingList list : lists) {
+            if (list.parts != null) {
+                parts.addAll(list.parts);
+            } else if (list.rawSize > 0) {
+                parts.add(list);
+            }
+        }
+        if (parts.isEmpty()) {
+            return EMPTY;
+        }
+        return parts.size() == 1 ? parts.get(0) : new PostingList(List.copyOf(parts));
+    }
+
+    /**
+     * Число записей без удаленных страниц.
+     */
+    public int size() {
+        return size;
+    }
+
+    public float maxRank() {
+        return maxRank;
+    }
+
+    /**
+     * Число записей вместе с удаленными страницами — столько проходит курсор.
+     */
+    int rawSize() {
+        return rawSize;
+    }
+
+    int pageId(int index) {
+        return buffer.getInt(HEADER_BYTES + (blockCount * 2 + index) * Integer.BYTES);
+    }
+
+    float rank(int index) {
+        return buffer.getFloat(HEADER_BYTES + (blockCount * 2 + rawSize + index) * Integer.BYTES);
+    }
+
+    int[] deletedPageIds() {
+        return deletedPageIds;
+    }
+
+    int blockCount() {
+        return blockCount;
+    }
+
+    int blockLastId(int block) {
+        return buffer.getInt(HEADER_BYTES + block * Integer.BYTES);
+    }
+
+    float blockMaxRank(int block) {
+        return buffer.getFloat(HEADER_BYTES + (blockCount + block) * Integer.BYTES);
+    }
+
+    /**
+     * Закодированное представление списка только для чтения, с позицией 0; см. {@link #wrap(ByteBuffer)}.
+     * Объединение и список с удаленными страницами сначала переписываются в новый список из живых записей.
+     */
+    public ByteBuffer encode() {
+        if (parts == null && size == rawSize) {
+            return buffer.asReadOnlyBuffer().position(0);
+        }
+        int[] ids = new int[size];
+        float[] liveRanks = new float[size];
+        PostingCursor cursor = cursor();
+        for (int i = 0; cursor.nextPage() != PostingCursor.NO_MORE_PAGES; i++) {
+            ids[i] = cursor.pageId();
+            liveRanks[i] = cursor.rank();
+        }
+        return new PostingList(ids, liveRanks).encode();
+    }
+
+    public PostingCursor cursor() {
+        if (parts == null) {
+            return new ListCursor(this);
+        }
+        List<PostingCursor> cursors = new ArrayList<>(parts.size());
+        parts.forEach(part -> cursors.add(part.cursor()));
+        return new UnionCursor(cursors);
+    }
+
+    private int countDeleted() {
+        int count = 0;
+        int pageIdsAt = HEADER_BYTES + blockCount * 2 * Integer.BYTES;
+        for (int pageId : deletedPageIds) {
+            int low = 0;
+            int high = rawSize - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midId = buffer.getInt(pageIdsAt + mid * Integer.BYTES);
+                if (midId < pageId) {
+                    low = mid + 1;
+                } else if (midId > pageId) {
+                    high = mid - 1;
+                } else {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int encodedLength(int size, int blocks) {
+        return HEADER_BYTES + (blocks * 2 + size * 2) * Integer.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        int[] head = new int[Math.min(size, 8)];
+        PostingCursor cursor = cursor();
+        for (int i = 0; i < head.length; i++) {
+            head[i] = cursor.nextPage();
+        }
+        return "PostingList{size=" + size + ", maxRank=" + maxRank + ", pageIds=" + Arrays.toString(head) + "}";
+    }
+}
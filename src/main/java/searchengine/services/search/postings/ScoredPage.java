@@ -0,0 +1,9 @@
+package searchengine.services.search.postings;
+
+import lombok.Value;
+
+@Value
+public class ScoredPage {
+    int pageId;
+    float score;
+}
@@ -0,0 +1,56 @@
+package searchengine.services.search.postings;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Слияние нескольких списков top-K, каждый из которых уже отсортирован по убыванию оценки,
+ * через кучу из голов списков: на каждый элемент результата приходится {@code O(log m)}
+ * операций, где {@code m} — число списков.
+ */
+public final class TopKMerge {
+
+    private static final Comparator<Head> BEST_FIRST = Comparator
+            .comparingDouble((Head head) -> head.current().getScore()).reversed()
+            .thenComparingInt(head -> head.current().getPageId());
+
+    private TopKMerge() {
+    }
+
+    public static List<ScoredPage> merge(List<List<ScoredPage>> lists, int k) {
+        PriorityQueue<Head> heap = new PriorityQueue<>(Math.max(1, lists.size()), BEST_FIRST);
+        for (List<ScoredPage> list : lists) {
+            if (!list.isEmpty()) {
+                heap.add(new Head(list));
+            }
+        }
+        List<ScoredPage> result = new ArrayList<>(Math.min(k, 1024));
+        while (result.size() < k && !heap.isEmpty()) {
+            Head head = heap.poll();
+            result.add(head.current());
+            if (head.advance()) {
+                heap.add(head);
+            }
+        }
+        return result;
+    }
+
+    private static final class Head {
+        private final List<ScoredPage> list;
+        private int position;
+
+        private Head(List<ScoredPage> list) {
+            this.list = list;
+        }
+
+        private ScoredPage current() {
+            return list.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < list.size();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package searchengine.services.search.postings;
+
+import java.util.List;
+
+/**
+ * Курсор объединения непересекающихся списков: текущей страницей становится наименьшая среди курсоров частей.
+ * Граница блока — ближайшая из границ частей, а максимальный ранг — наибольший из их блоков: на этом
+ * отрезке каждая часть остается внутри своего блока, поэтому оценка остается верхней границей.
+ */
+final class UnionCursor implements PostingCursor {
+
+    private final List<PostingCursor> cursors;
+    private PostingCursor current;
+    private boolean started;
+
+    UnionCursor(List<PostingCursor> cursors) {
+        this.cursors = cursors;
+    }
+
+    @Override
+    public int pageId() {
+        if (!started) {
+            return -1;
+        }
+        return current == null ? NO_MORE_PAGES : current.pageId();
+    }
+
+    @Override
+    public float rank() {
+        return current.rank();
+    }
+
+    @Override
+    public int cost() {
+        int cost = 0;
+        for (PostingCursor cursor : cursors) {
+            cost += cursor.cost();
+        }
+        return cost;
+    }
+
+    @Override
+    public int consumed() {
+        int consumed = 0;
+        for (PostingCursor cursor : cursors) {
+            consumed += cursor.consumed();
+        }
+        return consumed;
+    }
+
+    @Override
+    public int nextPage() {
+        if (!started) {
+            started = true;
+            cursors.forEach(PostingCursor::nextPage);
+        } else if (current != null) {
+            current.nextPage();
+        }
+        return selectCurrent();
+    }
+
+    @Override
+    public int advance(int target) {
+        int pageId = pageId();
+        if (pageId >= target) {
+            return pageId;
+        }
+        started = true;
+        for (PostingCursor cursor : cursors) {
+            cursor.advance(target);
+        }
+        return selectCurrent();
+    }
+
+    @Override
+    public float blockMaxRank(int target) {
+        float max = 0f;
+        for (PostingCursor cursor : cursors) {
+            max = Math.max(max, cursor.blockMaxRank(target));
+        }
+        return max;
+    }
+
+    @Override
+    public int blockLastId(int target) {
+        int last = NO_MORE_PAGES;
+        for (PostingCursor cursor : cursors) {
+            last = Math.min(last, cursor.blockLastId(target));
+        }
+        return last;
+    }
+
+    private int selectCurrent() {
+        current = null;
+        int min = NO_MORE_PAGES;
+        for (PostingCursor cursor : cursors) {
+            int pageId = cursor.pageId();
+            if (pageId < min) {
+                min = pageId;
+                current = cursor;
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,131 @@
+package searchengine.services.search.shard;
+
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import searchengine.services.search.postings.ScoredPage;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Запросы к одному шарду — отдельной базе с той же схемой, что и основная. Набор сайтов шарда
+ * определяется его таблицей {@code site}: каждый сайт индексируется ровно в один шард.
+ */
+public class ShardClient {
+
+    private static final Comparator<ScoredPage> WORST_FIRST = Comparator
+            .comparingDouble(ScoredPage::getScore)
+            .thenComparing(Comparator.comparingInt(ScoredPage::getPageId).reversed());
+
+    private final String name;
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * @param queryTimeoutSeconds тайм-аут отдельного SQL-запроса; медленный запрос прерывается
+     *                            на стороне базы, а не только перестает ожидаться координатором.
+     */
+    public ShardClient(String name, DataSource dataSource, int queryTimeoutSeconds) {
+        this.name = name;
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setQueryTimeout(queryTimeoutSeconds);
+        this.jdbc = new NamedParameterJdbcTemplate(template);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Локальная статистика термов шарда: число сайтов и страниц, а также суммарная частота каждой
+     * найденной леммы запроса. Координатор складывает статистику всех шардов.
+     */
+    public TermStatistics termStatistics(Set<String> lemmas, String siteUrl) {
+        MapSqlParameterSource params = new MapSqlParameterSource("lemmas", lemmas).addValue("siteUrl", siteUrl);
+        String siteFilter = siteUrl == null ? "" : " WHERE s.url = :siteUrl";
+        Map<String, Object> sites = jdbc.queryForMap(
+                "SELECT COUNT(*) AS sites, COALESCE(SUM(s.page_count), 0) AS pages FROM site s" + siteFilter, params);
+
+        Map<String, Long> frequencies = new HashMap<>();
+        jdbc.query("SELECT l.lemma, SUM(l.frequency) AS frequency FROM lemma l JOIN site s ON s.id = l.site_id " +
+                        "WHERE l.lemma IN (:lemmas)" + (siteUrl == null ? "" : " AND s.url = :siteUrl") +
+                        " GROUP BY l.lemma",
+                params,
+                row -> {
+                    frequencies.put(row.getString("lemma"), row.getLong("frequency"));
+                });
+        return new TermStatistics(((Number) sites.get("sites")).intValue(), ((Number) sites.get("pages")).longValue(),
+                frequencies);
+    }
+
+    /**
+     * Страницы, на которых есть все обязательные леммы, с оценкой — суммой рангов всех лемм запроса.
+     * Возвращает общее число таких страниц и лучшие {@code k} из них.
+     */
+    public ShardResult search(Set<String> lemmas, Set<String> requiredLemmas, String siteUrl, int k) {
+        MapSqlParameterSource params = new MapSqlParameterSource("lemmas", lemmas)
+                .addValue("required", requiredLemmas)
+                .addValue("requiredCount", requiredLemmas.size())
+                .addValue("siteUrl", siteUrl);
+        String sql = "SELECT i.page_id, SUM(i.`rank`) AS score FROM search_index i " +
+                "JOIN lemma l ON l.id = i.lemma_id " +
+                (siteUrl == null ? "" : "JOIN site s ON s.id = l.site_id ") +
+                "WHERE l.lemma IN (:lemmas)" + (siteUrl == null ? "" : " AND s.url = :siteUrl") +
+                " GROUP BY i.page_id" +
+                " HAVING COUNT(DISTINCT CASE WHEN l.lemma IN (:required) THEN l.lemma END) = :requiredCount";
+
+        PriorityQueue<ScoredPage> top = new PriorityQueue<>(Math.max(1, k), WORST_FIRST);
+        int[] count = new int[1];
+        jdbc.query(sql, params, row -> {
+            count[0]++;
+            ScoredPage page = new ScoredPage(row.getInt("page_id"), row.getFloat("score"));
+            if (top.size() < k) {
+                top.add(page);
+            } else if (k > 0 && WORST_FIRST.compare(page, top.peek()) > 0) {
+                top.poll();
+                top.add(page);
+            }
+        });
+        List<ScoredPage> topPages = new ArrayList<>(top);
+        topPages.sort(WORST_FIRST.reversed());
+        return new ShardResult(count[0], topPages);
+    }
+
+    public List<ShardPage> fetchPages(Collection<Integer> pageIds) {
+        return jdbc.query("SELECT p.id, p.path, p.content, s.url, s.name FROM page p JOIN site s ON s.id = p.site_id " +
+                        "WHERE p.id IN (:ids)",
+                new MapSqlParameterSource("ids", pageIds),
+                (row, rowNum) -> new ShardPage(row.getInt("id"), row.getString("url"), row.getString("name"),
+                        row.getString("path"), row.getString("content")));
+    }
+
+    @Value
+    public static class TermStatistics {
+        int siteCount;
+        long pageCount;
+        Map<String, Long> frequencies;
+    }
+
+    @Value
+    public static class ShardResult {
+        int matchCount;
+        List<ScoredPage> topPages;
+    }
+
+    @Value
+    public static class ShardPage {
+        int id;
+        String siteUrl;
+        String siteName;
+        String path;
+        String content;
+    }
+}
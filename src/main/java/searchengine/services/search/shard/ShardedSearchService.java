@@ -0,0 +1,252 @@
+package searchengine.services.search.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import searchengine.config.ShardSettings;
+import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchResponse;
+import searchengine.services.lemma.LemmaEngine;
+import searchengine.services.search.SnippetGenerator;
+import searchengine.services.search.postings.ScoredPage;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Координатор распределенного поиска по шардам из {@code shard-settings.shards}. Запрос выполняется
+ * в три рассылки, каждая параллельно по всем шардам в {@code searchExecutor}:
+ * <ol>
+ *     <li>сбор статистики термов, из которой складывается глобальная статистика: число страниц и частоты лемм;</li>
+ *     <li>локальный top-K каждого шарда с обязательными леммами, выбранными по глобальной статистике,
+ *     поэтому все шарды оценивают страницы по одним правилам;</li>
+ *     <li>загрузка содержимого страниц, попавших в запрошенное окно общего top-K.</li>
+ * </ol>
+ * Ответа каждого шарда ожидается не дольше {@code shard-settings.timeout-ms}. Шард, не успевший ответить
+ * или ответивший ошибкой, пропускается, а ответ помечается флагом {@code partial}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "shard-settings", name = "enabled", havingValue = "true")
+public class ShardedSearchService {
+
+    private static final double FREQUENCY_THRESHOLD_PERCENT = 0.95;
+
+    private final LemmaEngine lemmaEngine;
+    private final SnippetGenerator snippetGenerator;
+    private final TaskExecutor searchExecutor;
+    private final List<ShardClient> shards;
+    private final long timeoutMs;
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Autowired
+    public ShardedSearchService(LemmaEngine lemmaEngine, SnippetGenerator snippetGenerator, TaskExecutor searchExecutor,
+                                ShardSettings shardSettings, DataSourceProperties properties) {
+        this.lemmaEngine = lemmaEngine;
+        this.snippetGenerator = snippetGenerator;
+        this.searchExecutor = searchExecutor;
+        this.timeoutMs = shardSettings.getTimeoutMs();
+        this.shards = new ArrayList<>();
+        for (ShardSettings.Shard shard : shardSettings.getShards()) {
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(shard.getUrl())
+                    .username(shard.getUsername() != null ? shard.getUsername() : properties.determineUsername())
+                    .password(shard.getPassword() != null ? shard.getPassword() : properties.determinePassword())
+                    .build();
+            pool.setMaximumPoolSize(shard.getMaxPoolSize());
+            pool.setReadOnly(true);
+            pool.setPoolName("Shard-" + shard.getName());
+            pools.add(pool);
+            shards.add(new ShardClient(shard.getName(), pool, queryTimeoutSeconds(timeoutMs)));
+        }
+    }
+
+    ShardedSearchService(LemmaEngine lemmaEngine, SnippetGenerator snippetGenerator, TaskExecutor searchExecutor,
+                         List<ShardClient> shards, long timeoutMs) {
+        this.lemmaEngine = lemmaEngine;
+        this.snippetGenerator = snippetGenerator;
+        this.searchExecutor = searchExecutor;
+        this.shards = shards;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    public SearchResponse search(String query, String siteUrl, int offset, int limit) {
+        if (query == null || query.isBlank()) {
+            return new SearchResponse(false, "Задан пустой поисковый запрос");
+        }
+        Set<String> queryLemmas = lemmaEngine.getLemmaMap(query).keySet();
+        if (queryLemmas.isEmpty()) {
+            return response(0, List.of(), false);
+        }
+        boolean[] partial = new boolean[1];
+
+        Map<ShardClient, ShardClient.TermStatistics> statistics =
+                scatter(shards, shard -> shard.termStatistics(queryLemmas, siteUrl), partial);
+        int siteCount = statistics.values().stream().mapToInt(ShardClient.TermStatistics::getSiteCount).sum();
+        if (siteCount == 0 && !partial[0]) {
+            return new SearchResponse(false, "Сайты для поиска не найдены или не проиндексированы");
+        }
+
+        GlobalStatistics global = GlobalStatistics.of(statistics.values());
+        Set<String> requiredLemmas = requiredLemmas(global, queryLemmas, siteUrl != null && siteCount == 1);
+        if (requiredLemmas.isEmpty() || (siteUrl == null && global.getFrequencies().size() < queryLemmas.size())) {
+            return response(0, List.of(), partial[0]);
+        }
+
+        int k = offset + limit;
+        List<ShardClient> candidates = statistics.entrySet().stream()
+                .filter(entry -> entry.getValue().getFrequencies().keySet().containsAll(requiredLemmas))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        Map<ShardClient, ShardClient.ShardResult> results = scatter(candidates,
+                shard -> shard.search(global.getFrequencies().keySet(), requiredLemmas, siteUrl, k), partial);
+
+        int count = results.values().stream().mapToInt(ShardClient.ShardResult::getMatchCount).sum();
+        List<ShardHit> top = results.entrySet().stream()
+                .flatMap(entry -> entry.getValue().getTopPages().stream()
+                        .map(page -> new ShardHit(entry.getKey(), page)))
+                .sorted(ShardHit.BEST_FIRST)
+                .limit(k)
+                .collect(Collectors.toList());
+        if (offset >= top.size()) {
+            return response(count, List.of(), partial[0]);
+        }
+        float maxScore = top.get(0).getPage().getScore() > 0 ? top.get(0).getPage().getScore() : 1.0f;
+        List<ShardHit> window = top.subList(offset, top.size());
+
+        Map<ShardClient, List<Integer>> idsByShard = window.stream().collect(Collectors.groupingBy(ShardHit::getShard,
+                Collectors.mapping(hit -> hit.getPage().getPageId(), Collectors.toList())));
+        Map<ShardClient, Map<Integer, ShardClient.ShardPage>> pages = scatter(idsByShard.keySet(),
+                shard -> shard.fetchPages(idsByShard.get(shard)).stream()
+                        .collect(Collectors.toMap(ShardClient.ShardPage::getId, Function.identity())),
+                partial);
+
+        List<SearchData> data = new ArrayList<>();
+        for (ShardHit hit : window) {
+            ShardClient.ShardPage page = pages.getOrDefault(hit.getShard(), Map.of()).get(hit.getPage().getPageId());
+            if (page != null) {
+                data.add(toSearchData(page, hit.getPage().getScore() / maxScore, queryLemmas));
+            }
+        }
+        return response(count, data, partial[0]);
+    }
+
+    /**
+     * Те же правила, что и у поиска по одной базе: леммы, встречающиеся почти на всех страницах,
+     * не обязательны, но если других нет, обязательны все найденные.
+     */
+    private Set<String> requiredLemmas(GlobalStatistics global, Set<String> queryLemmas, boolean singleSite) {
+        Set<String> found = global.getFrequencies().keySet();
+        if (singleSite && queryLemmas.size() == 1) {
+            return found;
+        }
+        if (global.getPageCount() == 0) {
+            return Set.of();
+        }
+        Set<String> required = found.stream()
+                .filter(lemma -> (double) global.getFrequencies().get(lemma) / global.getPageCount() < FREQUENCY_THRESHOLD_PERCENT)
+                .collect(Collectors.toSet());
+        return required.isEmpty() ? found : required;
+    }
+
+    /**
+     * Рассылает вызов по шардам и собирает ответы, уложившиеся в общий для рассылки срок.
+     */
+    private <T> Map<ShardClient, T> scatter(Collection<ShardClient> targets, Function<ShardClient, T> call,
+                                            boolean[] partial) {
+        Map<ShardClient, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (ShardClient shard : targets) {
+            futures.put(shard, CompletableFuture.supplyAsync(() -> call.apply(shard), searchExecutor));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Map<ShardClient, T> results = new LinkedHashMap<>();
+        for (Map.Entry<ShardClient, CompletableFuture<T>> entry : futures.entrySet()) {
+            String shardName = entry.getKey().getName();
+            try {
+                results.put(entry.getKey(), entry.getValue().get(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                partial[0] = true;
+                entry.getValue().cancel(true);
+                log.warn("Шард {} не ответил за {} мс", shardName, timeoutMs);
+            } catch (ExecutionException e) {
+                partial[0] = true;
+                log.warn("Ошибка запроса к шарду {}: {}", shardName, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                partial[0] = true;
+                break;
+            }
+        }
+        return results;
+    }
+
+    private SearchData toSearchData(ShardClient.ShardPage page, float relevance, Set<String> queryLemmas) {
+        Document document = Jsoup.parse(page.getContent());
+        return new SearchData(
+                page.getSiteUrl(),
+                page.getSiteName(),
+                page.getPath(),
+                document.title(),
+                snippetGenerator.generate(document.text(), queryLemmas),
+                relevance
+        );
+    }
+
+    private static SearchResponse response(int count, List<SearchData> data, boolean partial) {
+        SearchResponse response = new SearchResponse(true, count, data);
+        if (partial) {
+            response.setPartial(true);
+        }
+        return response;
+    }
+
+    private static int queryTimeoutSeconds(long timeoutMs) {
+        return (int) Math.max(1, (timeoutMs + 999) / 1000);
+    }
+
+    @Value
+    private static class GlobalStatistics {
+        long pageCount;
+        Map<String, Long> frequencies;
+
+        static GlobalStatistics of(Collection<ShardClient.TermStatistics> statistics) {
+            Map<String, Long> frequencies = new HashMap<>();
+            statistics.forEach(shard -> shard.getFrequencies().forEach((lemma, frequency) ->
+                    frequencies.merge(lemma, frequency, Long::sum)));
+            return new GlobalStatistics(statistics.stream().mapToLong(ShardClient.TermStatistics::getPageCount).sum(),
+                    frequencies);
+        }
+    }
+
+    @Value
+    private static class ShardHit {
+        static final Comparator<ShardHit> BEST_FIRST = Comparator
+                .comparingDouble((ShardHit hit) -> hit.getPage().getScore()).reversed()
+                .thenComparing(hit -> hit.getShard().getName())
+                .thenComparingInt(hit -> hit.getPage().getPageId());
+
+        ShardClient shard;
+        ScoredPage page;
+    }
+}
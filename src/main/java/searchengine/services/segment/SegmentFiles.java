@@ -0,0 +1,90 @@
+package searchengine.services.segment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Имена файлов сегментов и атомарная запись изменяемых служебных файлов каталога сайта:
+ * манифеста со списком живых сегментов и файлов удаленных страниц.
+ */
+final class SegmentFiles {
+
+    private static final String MANIFEST = "segments";
+
+    private SegmentFiles() {
+    }
+
+    static Path dictionary(Path directory, long generation) {
+        return directory.resolve("seg_" + generation + ".dict");
+    }
+
+    static Path postings(Path directory, long generation) {
+        return directory.resolve("seg_" + generation + ".post");
+    }
+
+    static Path pages(Path directory, long generation) {
+        return directory.resolve("seg_" + generation + ".pages");
+    }
+
+    static Path deletes(Path directory, long generation) {
+        return directory.resolve("seg_" + generation + ".del");
+    }
+
+    static void delete(Path directory, long generation) throws IOException {
+        Files.deleteIfExists(dictionary(directory, generation));
+        Files.deleteIfExists(postings(directory, generation));
+        Files.deleteIfExists(pages(directory, generation));
+        Files.deleteIfExists(deletes(directory, generation));
+    }
+
+    static List<Long> readManifest(Path directory) throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return List.of();
+        }
+        return Files.readAllLines(manifest, StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .map(Long::parseLong)
+                .collect(Collectors.toList());
+    }
+
+    static void writeManifest(Path directory, List<Long> generations) throws IOException {
+        List<String> lines = new ArrayList<>();
+        generations.forEach(generation -> lines.add(String.valueOf(generation)));
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static int[] readDeletes(Path directory, long generation) throws IOException {
+        Path file = deletes(directory, generation);
+        if (!Files.exists(file)) {
+            return new int[0];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int[] pageIds = new int[buffer.getInt()];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = buffer.getInt();
+        }
+        return pageIds;
+    }
+
+    static void writeDeletes(Path directory, long generation, int[] pageIds) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * (pageIds.length + 1));
+        buffer.putInt(pageIds.length);
+        for (int pageId : pageIds) {
+            buffer.putInt(pageId);
+        }
+        Path temp = directory.resolve(deletes(directory, generation).getFileName() + ".tmp");
+        Files.write(temp, buffer.array());
+        Files.move(temp, deletes(directory, generation), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
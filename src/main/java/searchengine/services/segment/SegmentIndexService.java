@@ -0,0 +1,411 @@
+package searchengine.services.segment;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import searchengine.config.SegmentSettings;
+import searchengine.dto.search.SitePostingView;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.services.search.postings.PostingList;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Индекс сайтов в виде неизменяемых сегментных файлов, отображаемых в память.
+ * <p>
+ * После полного обхода сайта его индекс выгружается из MySQL в один большой сегмент.
+ * Переиндексация отдельных страниц дописывает маленькие сегменты и помечает старые версии
+ * страниц удаленными; когда маленьких сегментов накапливается {@code merge-factor}, фоновый
+ * поток сливает их в один. Пока у сайта нет сегментов, поиск по нему идет через базу данных.
+ * Сегменты прежнего формата при запуске не читаются и удаляются.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "search-settings.index-mode", havingValue = "segment")
+public class SegmentIndexService {
+
+    private static final String SITE_DIRECTORY_PREFIX = "site-";
+
+    private final SegmentSettings settings;
+    private final IndexRepository indexRepository;
+    private final PageRepository pageRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Map<Integer, SiteSegments> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, Site> pendingSeals = new ConcurrentHashMap<>();
+    private final ExecutorService mergeExecutor =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Segment-Merger-Thread"));
+
+    public SegmentIndexService(SegmentSettings settings, IndexRepository indexRepository,
+                               PageRepository pageRepository, PlatformTransactionManager transactionManager) {
+        this.settings = settings;
+        this.indexRepository = indexRepository;
+        this.pageRepository = pageRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        Path root = Path.of(settings.getIndexPath());
+        Files.createDirectories(root);
+        try (Stream<Path> directories = Files.list(root)) {
+            for (Path directory : directories.collect(Collectors.toList())) {
+                String name = directory.getFileName().toString();
+                if (!Files.isDirectory(directory) || !name.startsWith(SITE_DIRECTORY_PREFIX)) {
+                    continue;
+                }
+                int siteId = Integer.parseInt(name.substring(SITE_DIRECTORY_PREFIX.length()));
+                SiteSegments segments = new SiteSegments(directory);
+                try {
+                    for (long generation : SegmentFiles.readManifest(directory)) {
+                        segments.segments.add(SegmentReader.open(directory, generation));
+                        segments.nextGeneration = Math.max(segments.nextGeneration, generation + 1);
+                    }
+                } catch (IOException e) {
+                    log.warn("Сегменты {} не прочитаны и удалены, поиск по сайту идет через базу до следующей выгрузки: {}",
+                            directory, e.getMessage());
+                    FileSystemUtils.deleteRecursively(directory);
+                    continue;
+                }
+                sites.put(siteId, segments);
+            }
+        }
+        log.info("Загружены сегменты индекса для {} сайтов из {}", sites.size(), root.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        mergeExecutor.shutdownNow();
+    }
+
+    public boolean hasSegments(Site site) {
+        SiteSegments segments = sites.get(site.getId());
+        return segments != null && !segments.segments.isEmpty();
+    }
+
+    /**
+     * Возвращает леммы запроса, найденные в словарях сегментов. Это несохраняемые сущности:
+     * частота равна числу неудаленных страниц в списках вхождений, идентификатор не заполнен.
+     */
+    public List<Lemma> findLemmas(Collection<String> lemmaStrings, Collection<Site> sitesToSearch) {
+        List<Lemma> result = new ArrayList<>();
+        for (Site site : sitesToSearch) {
+            SiteSegments segments = sites.get(site.getId());
+            if (segments == null) {
+                continue;
+            }
+            List<SegmentReader> readers = segments.segments;
+            for (String lemmaString : lemmaStrings) {
+                int frequency = 0;
+                for (SegmentReader reader : readers) {
+                    TermEntry entry = reader.lookup(lemmaString);
+                    frequency += entry == null ? 0 : reader.postings(entry).size();
+                }
+                if (frequency > 0) {
+                    Lemma lemma = new Lemma();
+                    lemma.setSite(site);
+                    lemma.setLemma(lemmaString);
+                    lemma.setFrequency(frequency);
+                    result.add(lemma);
+                }
+            }
+        }
+        return result;
+    }
+
+    public PostingList getPostings(Lemma lemma) {
+        SiteSegments segments = sites.get(lemma.getSite().getId());
+        if (segments == null) {
+            return PostingList.EMPTY;
+        }
+        List<PostingList> lists = new ArrayList<>();
+        for (SegmentReader reader : segments.segments) {
+            TermEntry entry = reader.lookup(lemma.getLemma());
+            if (entry != null) {
+                lists.add(reader.postings(entry));
+            }
+        }
+        return PostingList.union(lists);
+    }
+
+    /**
+     * Запрашивает выгрузку индекса сайта в сегмент. Сама выгрузка выполняется, когда очередь
+     * лемм будет разобрана, см. {@link #sealPendingSites(BooleanSupplier)}.
+     */
+    public void requestSeal(Site site) {
+        pendingSeals.put(site.getId(), site);
+    }
+
+    /**
+     * Выгружает сайты, для которых запрошено построение сегментов. Запросы считываются до проверки
+     * очереди: если после этого очередь пуста, все страницы этих сайтов уже записаны в базу.
+     * @param queueDrained проверка, что очередь лемм пуста и ни один пакет не обрабатывается.
+     */
+    public void sealPendingSites(BooleanSupplier queueDrained) {
+        List<Site> ready = new ArrayList<>(pendingSeals.values());
+        if (ready.isEmpty() || !queueDrained.getAsBoolean()) {
+            return;
+        }
+        for (Site site : ready) {
+            pendingSeals.remove(site.getId(), site);
+            try {
+                sealSite(site);
+            } catch (IOException | RuntimeException e) {
+                log.error("Не удалось построить сегмент индекса сайта {}", site.getUrl(), e);
+            }
+        }
+    }
+
+    /**
+     * Строит один сегмент со всем индексом сайта и заменяет им все прежние сегменты.
+     */
+    public void sealSite(Site site) throws IOException {
+        SiteSegments segments = sites.computeIfAbsent(site.getId(), this::createSiteSegments);
+        synchronized (segments) {
+            long generation = segments.nextGeneration++;
+            try (SegmentWriter writer = new SegmentWriter(segments.directory, generation)) {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<SitePostingView> rows = indexRepository.streamPostingsBySite(site)) {
+                        writePostings(writer, rows.iterator());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                pageRepository.findPagePathsBySite(site).forEach(page -> writer.addPage(page.getId(), page.getPath()));
+                writer.finish();
+                replaceSegments(segments, new ArrayList<>(segments.segments), SegmentReader.open(segments.directory, generation));
+                log.info("Построен сегмент {} сайта {}: {} страниц", generation, site.getUrl(), writer.pageCount());
+            }
+        }
+    }
+
+    /**
+     * Дописывает маленький сегмент с одной переиндексированной страницей после фиксации транзакции.
+     */
+    public void appendPage(Page page, Map<String, Integer> lemmas) {
+        afterCommit(() -> {
+            SiteSegments segments = sites.get(page.getSite().getId());
+            if (segments == null || segments.segments.isEmpty()) {
+                return;
+            }
+            synchronized (segments) {
+                long generation = segments.nextGeneration++;
+                try (SegmentWriter writer = new SegmentWriter(segments.directory, generation)) {
+                    for (Map.Entry<String, Integer> lemma : lemmas.entrySet()) {
+                        writer.addPostings(lemma.getKey(),
+                                new PostingList(new int[]{page.getId()}, new float[]{lemma.getValue()}));
+                    }
+                    writer.addPage(page.getId(), page.getPath());
+                    writer.finish();
+                    replaceSegments(segments, List.of(), SegmentReader.open(segments.directory, generation));
+                }
+                scheduleMergeIfNeeded(segments);
+            }
+        });
+    }
+
+    /**
+     * Помечает страницу удаленной во всех сегментах сайта после фиксации транзакции.
+     */
+    public void deletePage(Page page) {
+        int pageId = page.getId();
+        afterCommit(() -> {
+            SiteSegments segments = sites.get(page.getSite().getId());
+            if (segments == null) {
+                return;
+            }
+            synchronized (segments) {
+                for (SegmentReader reader : segments.segments) {
+                    if (reader.containsLivePage(pageId)) {
+                        reader.markDeleted(pageId);
+                    }
+                }
+            }
+        });
+    }
+
+    public void clear() {
+        pendingSeals.clear();
+        for (SiteSegments segments : sites.values()) {
+            synchronized (segments) {
+                segments.segments.clear();
+                try {
+                    FileSystemUtils.deleteRecursively(segments.directory);
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить каталог сегментов {}: {}", segments.directory, e.getMessage());
+                }
+            }
+        }
+        sites.clear();
+    }
+
+    private void writePostings(SegmentWriter writer, Iterator<SitePostingView> rows) throws IOException {
+        int currentLemmaId = -1;
+        String currentLemma = null;
+        int[] pageIds = new int[256];
+        float[] ranks = new float[256];
+        int length = 0;
+        while (rows.hasNext()) {
+            SitePostingView row = rows.next();
+            if (row.getLemmaId() != currentLemmaId) {
+                addPostings(writer, currentLemma, pageIds, ranks, length);
+                currentLemmaId = row.getLemmaId();
+                currentLemma = row.getLemma();
+                length = 0;
+            }
+            if (length == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, length * 2);
+                ranks = Arrays.copyOf(ranks, length * 2);
+            }
+            pageIds[length] = row.getPageId();
+            ranks[length] = row.getRank();
+            length++;
+        }
+        addPostings(writer, currentLemma, pageIds, ranks, length);
+    }
+
+    private static void addPostings(SegmentWriter writer, String lemma, int[] pageIds, float[] ranks, int length)
+            throws IOException {
+        if (length > 0) {
+            writer.addPostings(lemma, new PostingList(Arrays.copyOf(pageIds, length), Arrays.copyOf(ranks, length)));
+        }
+    }
+
+    private void scheduleMergeIfNeeded(SiteSegments segments) {
+        if (!segments.mergeScheduled && smallSegments(segments).size() >= settings.getMergeFactor()) {
+            segments.mergeScheduled = true;
+            mergeExecutor.submit(() -> mergeSmallSegments(segments));
+        }
+    }
+
+    private void mergeSmallSegments(SiteSegments segments) {
+        synchronized (segments) {
+            try {
+                List<SegmentReader> small = smallSegments(segments);
+                if (small.size() < 2) {
+                    return;
+                }
+                long generation = segments.nextGeneration++;
+                try (SegmentWriter writer = new SegmentWriter(segments.directory, generation)) {
+                    TreeMap<String, List<SegmentReader>> termOwners = new TreeMap<>();
+                    for (SegmentReader reader : small) {
+                        reader.terms().forEach(entry ->
+                                termOwners.computeIfAbsent(entry.getLemma(), key -> new ArrayList<>()).add(reader));
+                    }
+                    for (Map.Entry<String, List<SegmentReader>> term : termOwners.entrySet()) {
+                        List<PostingList> lists = new ArrayList<>();
+                        for (SegmentReader reader : term.getValue()) {
+                            lists.add(reader.postings(reader.lookup(term.getKey())));
+                        }
+                        writer.addPostings(term.getKey(), PostingList.union(lists));
+                    }
+                    small.forEach(reader -> reader.forEachLivePage(writer::addPage));
+                    writer.finish();
+                    replaceSegments(segments, small, SegmentReader.open(segments.directory, generation));
+                    log.info("Слито {} маленьких сегментов в сегмент {} ({})", small.size(), generation, segments.directory);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Ошибка слияния сегментов в {}", segments.directory, e);
+            } finally {
+                segments.mergeScheduled = false;
+            }
+        }
+    }
+
+    private List<SegmentReader> smallSegments(SiteSegments segments) {
+        return segments.segments.stream()
+                .filter(reader -> reader.livePageCount() <= settings.getSmallSegmentPages())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Публикует новый набор сегментов: сначала манифест на диске, затем список для читателей.
+     * Файлы вытесненных сегментов удаляются; уже открытые отображения остаются валидными до сборки мусора.
+     */
+    private void replaceSegments(SiteSegments segments, List<SegmentReader> removed, SegmentReader added) throws IOException {
+        List<SegmentReader> updated = new ArrayList<>(segments.segments);
+        updated.removeAll(removed);
+        updated.add(added);
+        SegmentFiles.writeManifest(segments.directory,
+                updated.stream().map(SegmentReader::generation).collect(Collectors.toList()));
+        segments.segments = new CopyOnWriteArrayList<>(updated);
+        for (SegmentReader reader : removed) {
+            SegmentFiles.delete(segments.directory, reader.generation());
+        }
+    }
+
+    private SiteSegments createSiteSegments(int siteId) {
+        Path directory = Path.of(settings.getIndexPath(), SITE_DIRECTORY_PREFIX + siteId);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SiteSegments(directory);
+    }
+
+    private void afterCommit(SegmentTask task) {
+        Runnable action = () -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                log.error("Ошибка записи сегмента индекса", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SegmentTask {
+        void run() throws IOException;
+    }
+
+    private static final class SiteSegments {
+        private final Path directory;
+        private volatile List<SegmentReader> segments = new CopyOnWriteArrayList<>();
+        private long nextGeneration;
+        private boolean mergeScheduled;
+
+        private SiteSegments(Path directory) {
+            this.directory = directory;
+        }
+    }
+}
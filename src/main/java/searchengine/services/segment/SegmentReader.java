@@ -0,0 +1,220 @@
+package searchengine.services.segment;
+
+import searchengine.services.search.postings.PostingList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Читатель сегмента, записанного {@link SegmentWriter}. Файлы словаря, списков вхождений и
+ * таблицы страниц отображаются в память через {@link FileChannel#map}; все чтения выполняются
+ * через {@link ByteBuffer#duplicate()}, поэтому один читатель безопасно используется из
+ * нескольких потоков без копирования данных в кучу.
+ * <p>
+ * Сегмент неизменяем, кроме списка удаленных страниц, который хранится в отдельном файле {@code .del}.
+ */
+final class SegmentReader {
+
+    private static final int PAGE_ENTRY_BYTES = Integer.BYTES * 2;
+    private static final int PAGES_HEADER_BYTES = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final long generation;
+    private final MappedByteBuffer dictionary;
+    private final MappedByteBuffer postings;
+    private final MappedByteBuffer pages;
+    private final long blockIndexOffset;
+    private final int termCount;
+    private final int blockCount;
+    private final int pageCount;
+    private volatile int[] deletedPageIds;
+
+    private SegmentReader(Path directory, long generation) throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        this.dictionary = map(SegmentFiles.dictionary(directory, generation));
+        this.postings = map(SegmentFiles.postings(directory, generation));
+        this.pages = map(SegmentFiles.pages(directory, generation));
+
+        int footer = dictionary.capacity() - SegmentWriter.DICT_FOOTER_BYTES;
+        this.blockIndexOffset = dictionary.getLong(footer);
+        this.termCount = dictionary.getInt(footer + Long.BYTES);
+        this.blockCount = dictionary.getInt(footer + Long.BYTES + Integer.BYTES);
+        if (dictionary.getInt(footer + Long.BYTES + Integer.BYTES * 2) != SegmentWriter.MAGIC
+                || pages.getInt(0) != SegmentWriter.MAGIC) {
+            throw new IOException("Поврежден сегмент " + generation + " в " + directory);
+        }
+        this.pageCount = pages.getInt(Integer.BYTES);
+        this.deletedPageIds = SegmentFiles.readDeletes(directory, generation);
+    }
+
+    static SegmentReader open(Path directory, long generation) throws IOException {
+        return new SegmentReader(directory, generation);
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    int livePageCount() {
+        return pageCount - deletedPageIds.length;
+    }
+
+    /**
+     * Ищет лемму в словаре: двоичный поиск по первым терминам блоков, затем последовательный
+     * просмотр одного блока с восстановлением терминов из общего префикса.
+     */
+    TermEntry lookup(String lemma) {
+        if (blockCount == 0) {
+            return null;
+        }
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            ByteBuffer in = dictionaryAt(blockOffset(mid));
+            if (readEntry(in, new byte[0]).getLemma().compareTo(lemma) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        ByteBuffer in = dictionaryAt(blockOffset(low));
+        byte[] previous = new byte[0];
+        int termsInBlock = Math.min(SegmentWriter.TERMS_PER_BLOCK, termCount - low * SegmentWriter.TERMS_PER_BLOCK);
+        for (int i = 0; i < termsInBlock; i++) {
+            TermEntry entry = readEntry(in, previous);
+            int compare = entry.getLemma().compareTo(lemma);
+            if (compare == 0) {
+                return entry;
+            }
+            if (compare > 0) {
+                return null;
+            }
+            previous = entry.getLemma().getBytes(StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    /**
+     * Все леммы сегмента в порядке словаря; используется при слиянии сегментов.
+     */
+    List<TermEntry> terms() {
+        List<TermEntry> entries = new ArrayList<>(termCount);
+        ByteBuffer in = dictionaryAt(0);
+        byte[] previous = new byte[0];
+        for (int i = 0; i < termCount; i++) {
+            TermEntry entry = readEntry(in, previous);
+            entries.add(entry);
+            previous = entry.getLemma().getBytes(StandardCharsets.UTF_8);
+        }
+        return entries;
+    }
+
+    /**
+     * Список вхождений леммы поверх отображенного файла, без копирования в кучу. Удаленные страницы
+     * пропускает курсор списка; {@link PostingList#size()} их не учитывает.
+     */
+    PostingList postings(TermEntry entry) {
+        ByteBuffer in = postings.duplicate();
+        in.position((int) entry.getPostingsOffset());
+        return PostingList.wrap(in, deletedPageIds);
+    }
+
+    boolean containsLivePage(int pageId) {
+        return pageIndex(pageId) >= 0 && Arrays.binarySearch(deletedPageIds, pageId) < 0;
+    }
+
+    void forEachLivePage(BiConsumer<Integer, String> consumer) {
+        int[] deleted = deletedPageIds;
+        for (int i = 0; i < pageCount; i++) {
+            int pageId = pages.getInt(PAGES_HEADER_BYTES + i * PAGE_ENTRY_BYTES);
+            if (Arrays.binarySearch(deleted, pageId) < 0) {
+                consumer.accept(pageId, pathAt(i));
+            }
+        }
+    }
+
+    /**
+     * Помечает страницу удаленной. Файл сегмента не переписывается: идентификатор добавляется в файл {@code .del}.
+     */
+    synchronized void markDeleted(int pageId) throws IOException {
+        int[] current = deletedPageIds;
+        if (pageIndex(pageId) < 0 || Arrays.binarySearch(current, pageId) >= 0) {
+            return;
+        }
+        int[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = pageId;
+        Arrays.sort(updated);
+        SegmentFiles.writeDeletes(directory, generation, updated);
+        deletedPageIds = updated;
+    }
+
+    private int pageIndex(int pageId) {
+        int low = 0;
+        int high = pageCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = pages.getInt(PAGES_HEADER_BYTES + mid * PAGE_ENTRY_BYTES);
+            if (midId < pageId) {
+                low = mid + 1;
+            } else if (midId > pageId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private String pathAt(int index) {
+        int pathsStart = PAGES_HEADER_BYTES + pageCount * PAGE_ENTRY_BYTES;
+        ByteBuffer in = pages.duplicate();
+        in.position(pathsStart + pages.getInt(PAGES_HEADER_BYTES + index * PAGE_ENTRY_BYTES + Integer.BYTES));
+        byte[] path = new byte[VarInt.readInt(in)];
+        in.get(path);
+        return new String(path, StandardCharsets.UTF_8);
+    }
+
+    private long blockOffset(int block) {
+        return dictionary.getLong((int) blockIndexOffset + block * Long.BYTES);
+    }
+
+    private ByteBuffer dictionaryAt(long offset) {
+        ByteBuffer in = dictionary.duplicate();
+        in.position((int) offset);
+        return in;
+    }
+
+    private TermEntry readEntry(ByteBuffer in, byte[] previous) {
+        int shared = VarInt.readInt(in);
+        int suffixLength = VarInt.readInt(in);
+        byte[] term = Arrays.copyOf(previous, shared + suffixLength);
+        in.get(term, shared, suffixLength);
+        int docFreq = VarInt.readInt(in);
+        long postingsOffset = VarInt.readLong(in);
+        return new TermEntry(new String(term, StandardCharsets.UTF_8), docFreq, postingsOffset);
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Файл сегмента превышает 2 ГБ: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
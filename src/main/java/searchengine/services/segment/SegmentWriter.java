@@ -0,0 +1,161 @@
+package searchengine.services.segment;
+
+import searchengine.services.search.postings.PostingList;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Записывает один неизменяемый сегмент индекса сайта из трех файлов:
+ * <ul>
+ *     <li>{@code .post} — списки вхождений в формате {@link PostingList#encode()}: с таблицей блоков
+ *     и записями фиксированной ширины, чтобы поиск читал их из отображенного файла без декодирования;</li>
+ *     <li>{@code .dict} — отсортированный словарь лемм с префиксным сжатием блоками по
+ *     {@link #TERMS_PER_BLOCK} терминов, для каждой леммы — число страниц и смещение списка;</li>
+ *     <li>{@code .pages} — таблица «идентификатор страницы → путь».</li>
+ * </ul>
+ * Списки вхождений можно добавлять в любом порядке лемм: словарь сортируется при {@link #finish()}.
+ */
+final class SegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x53454732;
+    static final int TERMS_PER_BLOCK = 16;
+    static final int DICT_FOOTER_BYTES = Long.BYTES + Integer.BYTES * 3;
+
+    private final Path directory;
+    private final long generation;
+    private final FileOutputStream postingsFile;
+    private final OutputStream postings;
+    private long postingsOffset;
+    private final Map<String, long[]> terms = new HashMap<>();
+    private final TreeMap<Integer, String> pages = new TreeMap<>();
+    private boolean finished;
+
+    SegmentWriter(Path directory, long generation) throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        this.postingsFile = new FileOutputStream(SegmentFiles.postings(directory, generation).toFile());
+        this.postings = new BufferedOutputStream(postingsFile, 1 << 16);
+    }
+
+    /**
+     * Записывает живые записи списка; удаленные страницы в новый сегмент не попадают.
+     */
+    void addPostings(String lemma, PostingList list) throws IOException {
+        if (list.size() == 0) {
+            return;
+        }
+        if (terms.containsKey(lemma)) {
+            throw new IllegalStateException("Лемма уже записана в сегмент: " + lemma);
+        }
+        terms.put(lemma, new long[]{postingsOffset, list.size()});
+        ByteBuffer encoded = list.encode();
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        postings.write(bytes);
+        postingsOffset += bytes.length;
+    }
+
+    void addPage(int pageId, String path) {
+        pages.put(pageId, path);
+    }
+
+    int pageCount() {
+        return pages.size();
+    }
+
+    void finish() throws IOException {
+        postings.flush();
+        postingsFile.getChannel().force(true);
+        postings.close();
+        writeDictionary();
+        writePages();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            postings.close();
+            SegmentFiles.delete(directory, generation);
+        }
+    }
+
+    private void writeDictionary() throws IOException {
+        List<String> sortedTerms = new ArrayList<>(terms.keySet());
+        sortedTerms.sort(null);
+
+        try (FileOutputStream file = new FileOutputStream(SegmentFiles.dictionary(directory, generation).toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            List<Long> blockOffsets = new ArrayList<>();
+            byte[] previous = new byte[0];
+            for (int i = 0; i < sortedTerms.size(); i++) {
+                byte[] current = sortedTerms.get(i).getBytes(StandardCharsets.UTF_8);
+                int shared = 0;
+                if (i % TERMS_PER_BLOCK == 0) {
+                    blockOffsets.add((long) out.size());
+                } else {
+                    shared = commonPrefix(previous, current);
+                }
+                long[] info = terms.get(sortedTerms.get(i));
+                VarInt.write(out, shared);
+                VarInt.write(out, current.length - shared);
+                out.write(current, shared, current.length - shared);
+                VarInt.write(out, info[1]);
+                VarInt.write(out, info[0]);
+                previous = current;
+            }
+            long blockIndexOffset = out.size();
+            for (long offset : blockOffsets) {
+                out.writeLong(offset);
+            }
+            out.writeLong(blockIndexOffset);
+            out.writeInt(sortedTerms.size());
+            out.writeInt(blockOffsets.size());
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getChannel().force(true);
+        }
+    }
+
+    private void writePages() throws IOException {
+        ByteArrayOutputStream paths = new ByteArrayOutputStream();
+        try (FileOutputStream file = new FileOutputStream(SegmentFiles.pages(directory, generation).toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(pages.size());
+            for (Map.Entry<Integer, String> page : pages.entrySet()) {
+                out.writeInt(page.getKey());
+                out.writeInt(paths.size());
+                byte[] path = page.getValue().getBytes(StandardCharsets.UTF_8);
+                VarInt.write(paths, path.length);
+                paths.write(path);
+            }
+            paths.writeTo(out);
+            out.flush();
+            file.getChannel().force(true);
+        }
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int limit = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < limit && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,10 @@
+package searchengine.services.segment;
+
+import lombok.Value;
+
+@Value
+class TermEntry {
+    String lemma;
+    int docFreq;
+    long postingsOffset;
+}
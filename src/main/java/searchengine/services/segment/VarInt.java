@@ -0,0 +1,41 @@
+package searchengine.services.segment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Кодирование целых чисел переменной длины: по 7 бит на байт, старший бит — признак продолжения.
+ */
+final class VarInt {
+
+    private VarInt() {
+    }
+
+    static int write(OutputStream out, long value) throws IOException {
+        int written = 1;
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            written++;
+        }
+        out.write((int) value);
+        return written;
+    }
+
+    static int readInt(ByteBuffer in) {
+        return (int) readLong(in);
+    }
+
+    static long readLong(ByteBuffer in) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+}
@@ -0,0 +1,242 @@
+package searchengine.services.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.CrawlSettings;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Материализованные счетчики страниц и лемм по сайтам. Пути записи (обход, сохранение лемм,
+ * переиндексация страницы) меняют счетчики после фиксации своей транзакции, а статистика и поиск
+ * читают их из памяти без запросов COUNT.
+ * <p>
+ * Раз в {@code statistics-settings.flush-interval-ms} накопленные приращения прибавляются к колонкам
+ * таблицы {@code site}, а при старте значения загружаются оттуда. Сайт без сохраненных счетчиков, а также сайт,
+ * индексация которого была прервана, один раз пересчитывается запросами COUNT при первом обращении.
+ * Так как сохраняются приращения, а не итоговые значения, один сайт могут одновременно обходить несколько
+ * узлов; в распределенном режиме после сохранения узел перечитывает общие значения из таблицы.
+ * <p>
+ * Колонка {@code counters_time} обновляется при каждом сохранении, в том числе когда индекс сайта изменился
+ * без изменения счетчиков, и служит версией индекса сайта для кэшей поиска других узлов.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteCounters {
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final StatisticsChanges statisticsChanges;
+    private final CrawlSettings crawlSettings;
+
+    private final Map<Integer, Counters> countersBySite = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        for (Site site : siteRepository.findAll()) {
+            if (site.getCountersTime() != null && site.getStatus() != SiteStatus.INDEXING) {
+                countersBySite.put(site.getId(), new Counters(site.getPageCount(), site.getLemmaCount(), false));
+            }
+        }
+    }
+
+    /**
+     * Заводит нулевые счетчики для только что созданного сайта, чтобы первая запись не вызывала пересчет.
+     */
+    public void register(Site site) {
+        countersBySite.put(site.getId(), new Counters(0, 0, true));
+        statisticsChanges.markChanged();
+    }
+
+    public long getPageCount(Site site) {
+        return counters(site.getId()).pages();
+    }
+
+    public long getLemmaCount(Site site) {
+        return counters(site.getId()).lemmas();
+    }
+
+    public void addPages(Site site, int delta) {
+        apply(site, delta, 0);
+    }
+
+    public void addLemmas(Site site, int delta) {
+        apply(site, 0, delta);
+    }
+
+    /**
+     * Отмечает изменение индекса сайта, не затронувшее счетчики: при следующем сохранении обновится
+     * {@code counters_time}, и другие узлы сбросят кэши поиска по этому сайту.
+     */
+    public void markIndexChanged(Site site) {
+        if (site == null || site.getId() == null) {
+            return;
+        }
+        Integer siteId = site.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counters(siteId).changed.set(true);
+                }
+            });
+        } else {
+            counters(siteId).changed.set(true);
+        }
+    }
+
+    public void clear() {
+        countersBySite.clear();
+        statisticsChanges.markChanged();
+    }
+
+    @Scheduled(fixedDelayString = "${statistics-settings.flush-interval-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        countersBySite.forEach(this::flush);
+        if (crawlSettings.isDistributed()) {
+            refresh();
+        }
+    }
+
+    private void flush(Integer siteId, Counters counters) {
+        boolean absolute = counters.absolute.getAndSet(false);
+        boolean changed = counters.changed.getAndSet(false);
+        long pages = counters.pendingPages.getAndSet(0);
+        long lemmas = counters.pendingLemmas.getAndSet(0);
+        if (!absolute && !changed && pages == 0 && lemmas == 0) {
+            return;
+        }
+        counters.persistedPages.addAndGet(pages);
+        counters.persistedLemmas.addAndGet(lemmas);
+        try {
+            LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+            if (absolute) {
+                siteRepository.updateCounters(siteId, counters.persistedPages.get(), counters.persistedLemmas.get(), now);
+            } else {
+                siteRepository.addCounters(siteId, pages, lemmas, now);
+            }
+        } catch (RuntimeException e) {
+            counters.persistedPages.addAndGet(-pages);
+            counters.persistedLemmas.addAndGet(-lemmas);
+            counters.add(pages, lemmas);
+            if (absolute) {
+                counters.absolute.set(true);
+            }
+            if (changed) {
+                counters.changed.set(true);
+            }
+            log.warn("Не удалось сохранить счетчики сайта {}: {}", siteId, e.getMessage());
+        }
+    }
+
+    /**
+     * Подхватывает приращения, сохраненные другими узлами. Несохраненные приращения этого узла остаются поверх.
+     */
+    private void refresh() {
+        try {
+            for (Site site : siteRepository.findAll()) {
+                Counters counters = countersBySite.get(site.getId());
+                if (counters != null && site.getCountersTime() != null && !counters.absolute.get()) {
+                    counters.persistedPages.set(site.getPageCount());
+                    counters.persistedLemmas.set(site.getLemmaCount());
+                }
+            }
+            statisticsChanges.markChanged();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось перечитать счетчики сайтов: {}", e.getMessage());
+        }
+    }
+
+    private void apply(Site site, int pages, int lemmas) {
+        if (site == null || site.getId() == null || (pages == 0 && lemmas == 0)) {
+            return;
+        }
+        Integer siteId = site.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyCommitted(siteId, pages, lemmas);
+                }
+            });
+        } else {
+            applyCommitted(siteId, pages, lemmas);
+        }
+    }
+
+    /**
+     * Если счетчиков сайта еще нет, они пересчитываются уже после фиксации изменения,
+     * поэтому само изменение повторно не прибавляется.
+     */
+    private void applyCommitted(Integer siteId, int pages, int lemmas) {
+        boolean[] recounted = new boolean[1];
+        Counters counters = countersBySite.computeIfAbsent(siteId, id -> {
+            recounted[0] = true;
+            return recount(id);
+        });
+        if (!recounted[0]) {
+            counters.add(pages, lemmas);
+        }
+        statisticsChanges.markChanged();
+    }
+
+    private Counters counters(Integer siteId) {
+        return countersBySite.computeIfAbsent(siteId, this::recount);
+    }
+
+    private Counters recount(Integer siteId) {
+        return new Counters(pageRepository.countBySiteId(siteId), lemmaRepository.countBySiteId(siteId), true);
+    }
+
+    /**
+     * Значение счетчика складывается из последнего известного значения в таблице и еще не сохраненных приращений.
+     * Флаг {@code absolute} означает, что значение получено пересчетом или обнулением и при сохранении
+     * должно заменить колонку целиком. Флаг {@code changed} требует сохранения даже без приращений.
+     */
+    private static final class Counters {
+        private final AtomicLong persistedPages;
+        private final AtomicLong persistedLemmas;
+        private final AtomicLong pendingPages = new AtomicLong();
+        private final AtomicLong pendingLemmas = new AtomicLong();
+        private final AtomicBoolean absolute;
+        private final AtomicBoolean changed = new AtomicBoolean();
+
+        private Counters(long pages, long lemmas, boolean absolute) {
+            this.persistedPages = new AtomicLong(pages);
+            this.persistedLemmas = new AtomicLong(lemmas);
+            this.absolute = new AtomicBoolean(absolute);
+        }
+
+        private long pages() {
+            return persistedPages.get() + pendingPages.get();
+        }
+
+        private long lemmas() {
+            return persistedLemmas.get() + pendingLemmas.get();
+        }
+
+        private void add(long pageDelta, long lemmaDelta) {
+            pendingPages.addAndGet(pageDelta);
+            pendingLemmas.addAndGet(lemmaDelta);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package searchengine.services.statistics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчик версий статистики. Пути записи только увеличивают версию, а поток событий
+ * {@link StatisticsStreamService} раз в интервал сравнивает ее с уже отправленной, поэтому любое
+ * число изменений между двумя рассылками превращается в одно событие.
+ */
+@Component
+public class StatisticsChanges {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public void markChanged() {
+        version.incrementAndGet();
+    }
+
+    public long version() {
+        return version.get();
+    }
+}
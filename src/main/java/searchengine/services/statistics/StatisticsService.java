@@ -1,5 +1,7 @@
 package searchengine.services.statistics;
 
+import searchengine.dto.statistics.CacheStatisticsResponse;
+import searchengine.dto.statistics.FetchStatisticsResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 
 /**
@@ -12,4 +14,16 @@ public interface StatisticsService {
      * @return {@link StatisticsResponse} с общей и детализированной статистикой.
      */
     StatisticsResponse getStatistics();
-}
\ No newline at end of file
+
+    /**
+     * Собирает размер, попадания и промахи кэшей поиска и лемматизации.
+     * @return {@link CacheStatisticsResponse} по каждому кэшу.
+     */
+    CacheStatisticsResponse getCacheStatistics();
+
+    /**
+     * Собирает счетчики загрузки страниц: успешные загрузки, прерванные по заголовкам и обрезанные по размеру.
+     * @return {@link FetchStatisticsResponse} с момента запуска приложения.
+     */
+    FetchStatisticsResponse getFetchStatistics();
+}
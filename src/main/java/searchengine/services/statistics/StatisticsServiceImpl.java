@@ -2,16 +2,24 @@ package searchengine.services.statistics;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import searchengine.config.ReplicaRouting;
+import searchengine.dto.statistics.CacheStatisticsItem;
+import searchengine.dto.statistics.CacheStatisticsResponse;
 import searchengine.dto.statistics.DetailedStatisticsItem;
+import searchengine.dto.statistics.FetchStatisticsResponse;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.Site;
 import searchengine.model.SiteStatus;
-import searchengine.repositories.LemmaRepository;
-import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.services.crawler.PageFetcher;
+import searchengine.services.crawler.SiteActivityTracker;
 import searchengine.services.indexing.IndexingServiceImpl;
+import searchengine.services.lemma.LemmaEngine;
+import searchengine.services.lemma.WordLemmaCache;
+import searchengine.services.search.postings.ImpactIndex;
+import searchengine.services.search.postings.OffHeapLruCache;
 
 import java.time.ZoneOffset;
 import java.util.ArrayList;
@@ -22,11 +30,40 @@ import java.util.List;
 public class StatisticsServiceImpl implements StatisticsService {
 
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final SiteCounters siteCounters;
+    private final SiteActivityTracker siteActivityTracker;
+    private final LemmaEngine lemmaEngine;
+    private final ImpactIndex impactIndex;
+    private final PageFetcher pageFetcher;
 
     @Override
     public StatisticsResponse getStatistics() {
+        return ReplicaRouting.preferReplica(this::collectStatistics);
+    }
+
+    @Override
+    public CacheStatisticsResponse getCacheStatistics() {
+        WordLemmaCache.Stats words = lemmaEngine.wordCacheStats();
+        return new CacheStatisticsResponse(true, List.of(
+                new CacheStatisticsItem("words", words.getEntries(), words.getHits(), words.getMisses(),
+                        words.getEvictions(), words.hitRate()),
+                toItem("lemmas", impactIndex.lemmaStats()),
+                toItem("postings", impactIndex.postingStats())));
+    }
+
+    @Override
+    public FetchStatisticsResponse getFetchStatistics() {
+        PageFetcher.Stats stats = pageFetcher.stats();
+        return new FetchStatisticsResponse(true, stats.getFetched(), stats.getBytes(), stats.getAbortedContentType(),
+                stats.getAbortedContentLength(), stats.getTruncated(), stats.getFailed());
+    }
+
+    private static CacheStatisticsItem toItem(String name, OffHeapLruCache.CacheStats stats) {
+        return new CacheStatisticsItem(name, stats.getEntries(), stats.getHits(), stats.getMisses(),
+                stats.getEvictions(), stats.hitRate());
+    }
+
+    private StatisticsResponse collectStatistics() {
         TotalStatistics total = new TotalStatistics();
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
         List<Site> sitesList = siteRepository.findAll();
@@ -51,11 +88,12 @@ public class StatisticsServiceImpl implements StatisticsService {
                 item.setError(site.getLastError());
             }
 
-            int pagesCount = pageRepository.countBySite(site);
-            int lemmasCount = lemmaRepository.countBySite(site);
+            int pagesCount = (int) siteCounters.getPageCount(site);
+            int lemmasCount = (int) siteCounters.getLemmaCount(site);
 
             item.setPages(pagesCount);
             item.setLemmas(lemmasCount);
+            item.setRecentErrors(siteActivityTracker.recentErrors(site));
 
             totalPages += pagesCount;
             totalLemmas += lemmasCount;
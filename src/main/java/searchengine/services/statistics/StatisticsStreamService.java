@@ -0,0 +1,148 @@
+package searchengine.services.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.dto.statistics.DetailedStatisticsItem;
+import searchengine.dto.statistics.StatisticsData;
+import searchengine.dto.statistics.StatisticsDelta;
+import searchengine.dto.statistics.TotalStatistics;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поток статистики по Server-Sent Events. Подписчик сразу получает событие {@code snapshot}
+ * с полной статистикой, затем — события {@code delta} только с изменившимися сайтами.
+ * Рассылка идет не чаще раза в {@code statistics-settings.stream-interval-ms} и только при
+ * изменении версии {@link StatisticsChanges}, так что число клиентов не влияет на нагрузку на базу.
+ * <p>
+ * Рассылка работает в собственном потоке, чтобы медленный клиент не задерживал общий планировщик
+ * {@code @Scheduled} со сбросом счетчиков и коммитами Lucene. Снимок нового подписчика — это то же
+ * состояние, от которого считается следующая дельта, поэтому подписка и расчет дельты идут под
+ * одной блокировкой, а отправка дельты — уже вне ее.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StatisticsStreamService {
+
+    private final StatisticsService statisticsService;
+    private final StatisticsChanges statisticsChanges;
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "Statistics-Stream-Thread"));
+
+    private final Object lock = new Object();
+    private Map<String, DetailedStatisticsItem> lastSent = new LinkedHashMap<>();
+    private TotalStatistics lastTotal;
+    private long sentVersion = -1;
+
+    @Value("${statistics-settings.stream-interval-ms:1000}")
+    private long streamIntervalMs;
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::publishSafely, streamIntervalMs, streamIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(0L));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        synchronized (lock) {
+            // Без подписчиков дельты не считаются, поэтому запомненное состояние могло устареть
+            if (emitters.isEmpty()) {
+                refresh(statisticsChanges.version());
+            }
+            StatisticsData snapshot = new StatisticsData();
+            snapshot.setTotal(lastTotal);
+            snapshot.setDetailed(new ArrayList<>(lastSent.values()));
+            // До возврата из контроллера SseEmitter только буферизует события, так что блокировка не ждет сеть
+            if (send(emitter, "snapshot", snapshot)) {
+                emitters.add(emitter);
+            }
+        }
+        return emitter;
+    }
+
+    void publish() {
+        StatisticsDelta delta;
+        List<SseEmitter> recipients;
+        synchronized (lock) {
+            long version = statisticsChanges.version();
+            if (emitters.isEmpty() || version == sentVersion) {
+                return;
+            }
+            Map<String, DetailedStatisticsItem> previous = lastSent;
+            TotalStatistics previousTotal = lastTotal;
+            refresh(version);
+
+            List<DetailedStatisticsItem> changed = new ArrayList<>();
+            lastSent.forEach((url, item) -> {
+                if (!item.equals(previous.get(url))) {
+                    changed.add(item);
+                }
+            });
+            List<String> removed = new ArrayList<>(previous.keySet());
+            removed.removeAll(lastSent.keySet());
+
+            if (changed.isEmpty() && removed.isEmpty() && lastTotal.equals(previousTotal)) {
+                return;
+            }
+            delta = new StatisticsDelta(lastTotal, changed, removed);
+            recipients = List.copyOf(emitters);
+        }
+        recipients.forEach(emitter -> send(emitter, "delta", delta));
+    }
+
+    private void publishSafely() {
+        try {
+            publish();
+        } catch (Exception e) {
+            log.error("Ошибка рассылки статистики", e);
+        }
+    }
+
+    private void refresh(long version) {
+        StatisticsData data = statisticsService.getStatistics().getStatistics();
+        Map<String, DetailedStatisticsItem> current = new LinkedHashMap<>();
+        data.getDetailed().forEach(item -> current.put(item.getUrl(), item));
+        lastSent = current;
+        lastTotal = data.getTotal();
+        sentVersion = version;
+    }
+
+    private boolean send(SseEmitter emitter, String name, Object payload) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(payload));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Подписчик статистики отключился: {}", e.getMessage());
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
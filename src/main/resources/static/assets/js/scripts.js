@@ -1459,6 +1459,41 @@ var API = function(){
         });
     }
 
+    function subscribeStatistics() {
+        var state = null;
+        var source = new EventSource(backendApiUrl + '/statistics/stream');
+        function render() {
+            if (state && !$('#search').is(':visible')) {
+                send['statistics'].action({result: true, statistics: state}, $('.Statistics'));
+            }
+        }
+        source.addEventListener('snapshot', function(event) {
+            state = JSON.parse(event.data);
+            render();
+        });
+        source.addEventListener('delta', function(event) {
+            if (!state) {
+                return;
+            }
+            var delta = JSON.parse(event.data);
+            state.total = delta.total;
+            state.detailed = state.detailed.filter(function(site) {
+                return delta.removed.indexOf(site.url) === -1;
+            });
+            delta.detailed.forEach(function(changed) {
+                var index = state.detailed.findIndex(function(site) {
+                    return site.url === changed.url;
+                });
+                if (index === -1) {
+                    state.detailed.push(changed);
+                } else {
+                    state.detailed[index] = changed;
+                }
+            });
+            render();
+        });
+    }
+
     var send = {
         startIndexing:{
             address: '/startIndexing',
@@ -1739,6 +1774,11 @@ var API = function(){
 
                                         var updateInterval = settings.updateIntervalMs || 5000;
 
+                                        if (window.EventSource) {
+                                            subscribeStatistics();
+                                            return;
+                                        }
+
                                         sendData(
                                             send['statistics'].address,
                                             send['statistics'].type,
@@ -0,0 +1,88 @@
+package searchengine.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private HikariDataSource replica;
+    private ReplicaRoutingDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        HikariDataSource primary = pool("jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1");
+        replica = pool("jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1");
+        ReplicaSettings settings = new ReplicaSettings();
+        settings.setLagQuery("");
+        settings.setLagCheckIntervalMs(60_000);
+
+        dataSource = new ReplicaRoutingDataSource(primary, List.of(replica), settings);
+        dataSource.checkReplicas();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("На реплику уходят только read-only транзакции, помеченные для чтения с реплики")
+    void shouldRouteOnlyPreferredReadOnlyTransactionsToReplica() {
+        assertThat(ReplicaRouting.preferReplica(() -> databaseIn(readOnly)))
+                .isEqualToIgnoringCase("routing_replica");
+        assertThat(ReplicaRouting.preferReplica(() -> databaseIn(readWrite)))
+                .isEqualToIgnoringCase("routing_primary");
+        assertThat(databaseIn(readOnly))
+                .isEqualToIgnoringCase("routing_primary");
+    }
+
+    @Test
+    @DisplayName("Чтение для кэша уходит на основную базу даже внутри чтения с реплики")
+    void shouldRouteOnPrimaryReadsToPrimaryInsidePreferReplica() {
+        assertThat(ReplicaRouting.preferReplica(() -> ReplicaRouting.onPrimary(() -> databaseIn(readOnly))))
+                .isEqualToIgnoringCase("routing_primary");
+        assertThat(ReplicaRouting.preferReplica(() -> {
+            ReplicaRouting.onPrimary(() -> databaseIn(readOnly));
+            return databaseIn(readOnly);
+        })).isEqualToIgnoringCase("routing_replica");
+    }
+
+    @Test
+    @DisplayName("Недоступная реплика исключается, и чтение переходит на основную базу")
+    void shouldFallBackToPrimaryWhenReplicaIsDown() {
+        replica.close();
+        dataSource.checkReplicas();
+
+        assertThat(ReplicaRouting.preferReplica(() -> databaseIn(readOnly)))
+                .isEqualToIgnoringCase("routing_primary");
+    }
+
+    private String databaseIn(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT DATABASE()", String.class));
+    }
+
+    private static HikariDataSource pool(String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(url);
+        pool.setUsername("sa");
+        return pool;
+    }
+}
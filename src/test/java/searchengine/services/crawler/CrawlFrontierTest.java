@@ -0,0 +1,53 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlSettings;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CrawlFrontierTest {
+
+    private final CrawlSettings settings = new CrawlSettings();
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(settings);
+
+    @Test
+    @DisplayName("Ссылки выдаются по приоритету: ближе к главной, больше входящих ссылок, свежее в карте сайта")
+    void poll_shouldReturnMostValuableUrlsFirst() {
+        CrawlFrontier frontier = new CrawlFrontier(new CrawlPriority(settings), canonicalizer, 10, 100);
+        frontier.offer("https://test.com", 0, 1, null);
+        frontier.offerLinks(List.of("https://test.com/deep", "https://test.com/popular"), 3);
+        for (int i = 0; i < 4; i++) {
+            frontier.offer("https://test.com/popular", 3, 0, null);
+        }
+        frontier.offer("https://test.com/fresh", 3, 0.5, Instant.now().minus(1, ChronoUnit.DAYS));
+        frontier.offer("https://test.com/stale", 3, 0.5, Instant.now().minus(365, ChronoUnit.DAYS));
+
+        assertThat(frontier.poll(10)).extracting(CrawlFrontier.Entry::getUrl).containsExactly(
+                "https://test.com",
+                "https://test.com/fresh",
+                "https://test.com/popular",
+                "https://test.com/stale",
+                "https://test.com/deep");
+        assertThat(frontier.isEmpty()).isTrue();
+        assertThat(frontier.offer("https://test.com/deep", 3, 0, null)).isFalse();
+        assertThat(frontier.poll(10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Ссылки глубже предела и сверх лимита страниц не принимаются")
+    void offer_shouldRespectDepthAndPageLimits() {
+        CrawlFrontier frontier = new CrawlFrontier(new CrawlPriority(settings), canonicalizer, 2, 3);
+
+        assertThat(frontier.offer("https://test.com", 0, 1, null)).isTrue();
+        assertThat(frontier.offer("https://test.com/a/b/c", 3, 0, null)).isFalse();
+        assertThat(frontier.offer("https://test.com/a", 1, 0, null)).isTrue();
+        assertThat(frontier.offer("https://test.com/b", 1, 0, null)).isTrue();
+        assertThat(frontier.offer("https://test.com/c", 1, 0, null)).isFalse();
+        assertThat(frontier.poll(10)).hasSize(3);
+    }
+}
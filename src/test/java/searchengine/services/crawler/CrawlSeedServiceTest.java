@@ -0,0 +1,121 @@
+package searchengine.services.crawler;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.config.CrawlSettings;
+import searchengine.model.Site;
+import searchengine.services.crawler.SitemapParser.SitemapEntry;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CrawlSeedServiceTest {
+
+    private HttpServer server;
+    private String siteUrl;
+    private String foreignUrl;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private CrawlSeedService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        int port = server.getAddress().getPort();
+        siteUrl = "http://127.0.0.1:" + port;
+        foreignUrl = "http://localhost:" + port;
+
+        respond("/robots.txt", "User-agent: *\nCrawl-delay: 1\nSitemap: " + siteUrl + "/index.xml\n"
+                + "Sitemap: " + foreignUrl + "/foreign.xml\n");
+        respond("/index.xml", "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<sitemap><loc>" + siteUrl + "/pages.xml</loc></sitemap>"
+                + "<sitemap><loc>" + foreignUrl + "/nested.xml</loc></sitemap></sitemapindex>");
+        respond("/pages.xml", urlset(siteUrl + "/page"));
+        respond("/foreign.xml", urlset(siteUrl + "/foreign"));
+        respond("/nested.xml", urlset(siteUrl + "/nested"));
+
+        service = new CrawlSeedService(new CrawlSettings(), new UrlCanonicalizer(new CrawlSettings()));
+        ReflectionTestUtils.setField(service, "userAgent", "test");
+        ReflectionTestUtils.setField(service, "referrer", "http://localhost");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Карты сайта с других хостов не загружаются")
+    void seeds_shouldSkipSitemapsOnOtherHosts() {
+        List<String> seeds = service.seeds(site()).stream().map(SitemapEntry::getUrl).collect(Collectors.toList());
+
+        assertThat(seeds).containsExactly(siteUrl + "/page");
+        assertThat(requests).doesNotContainKeys("/foreign.xml", "/nested.xml");
+    }
+
+    @Test
+    @DisplayName("Crawl-delay соблюдается для сайта целиком, а не для каждого потока")
+    void throttle_shouldBeSharedByAllWorkersOfSite() throws Exception {
+        Site site = site();
+        FetchThrottle throttle = service.throttle(site, 0);
+        assertThat(throttle.getIntervalMs()).isEqualTo(1000);
+        assertThat(service.throttle(site, 0)).isSameAs(throttle);
+
+        FetchThrottle fast = new FetchThrottle(50);
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(8);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 8; i++) {
+            workers.execute(() -> {
+                try {
+                    fast.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        workers.shutdown();
+
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(7 * 50);
+    }
+
+    private Site site() {
+        Site site = new Site();
+        site.setUrl(siteUrl);
+        return site;
+    }
+
+    private static String urlset(String url) {
+        return "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"><url><loc>" + url + "</loc></url></urlset>";
+    }
+
+    private void respond(String path, String body) {
+        server.createContext(path, exchange -> {
+            requests.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import searchengine.model.FrontierStatus;
+import searchengine.model.FrontierUrl;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.FrontierRepository;
+import searchengine.repositories.SiteRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:testdb;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "crawl-settings.lease-seconds=-1",
+        "crawl-settings.max-attempts=2"
+})
+public class FrontierServiceTest {
+
+    @Autowired
+    private FrontierService frontierService;
+    @Autowired
+    private FrontierRepository frontierRepository;
+    @Autowired
+    private SiteRepository siteRepository;
+
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        frontierRepository.deleteAll();
+        site = new Site();
+        site.setUrl("https://test.com");
+        site.setName("Тестовый сайт");
+        site.setStatus(SiteStatus.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        frontierService.startSite(site, List.of());
+        frontierService.enqueue(site.getId(), List.of("https://test.com/a", "https://test.com/b", "https://test.com/a"), 1);
+    }
+
+    @Test
+    @DisplayName("Повторная ссылка не попадает в очередь, а узлы получают непересекающиеся пачки")
+    void claim_shouldHandOutEachUrlOnce() {
+        List<FrontierUrl> first = frontierService.claim("node-1", 2);
+        List<FrontierUrl> second = frontierService.claim("node-2", 2);
+
+        assertThat(first).extracting(FrontierUrl::getUrl).containsExactly("https://test.com", "https://test.com/a");
+        assertThat(second).extracting(FrontierUrl::getUrl).containsExactly("https://test.com/b");
+        assertThat(frontierService.claim("node-3", 2)).isEmpty();
+        assertThat(frontierRepository.findAll()).allMatch(url -> url.getStatus() == FrontierStatus.LEASED);
+    }
+
+    @Test
+    @DisplayName("Просроченная аренда возвращается в очередь, пока не исчерпаны попытки")
+    void releaseExpiredLeases_shouldRequeueUntilAttemptsExhausted() {
+        List<FrontierUrl> batch = frontierService.claim("node-1", 3);
+        frontierService.finish(batch.get(0), "node-1", true);
+        frontierService.finish(batch.get(1), "node-2", true);
+
+        assertThat(frontierService.releaseExpiredLeases()).isEqualTo(2);
+        assertThat(frontierService.claim("node-2", 3)).hasSize(2);
+
+        assertThat(frontierService.releaseExpiredLeases()).isZero();
+        assertThat(frontierRepository.countBySiteIdAndStatus(site.getId(), FrontierStatus.FAILED)).isEqualTo(2);
+        assertThat(frontierService.hasPendingUrls(site.getId())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Необработанный остаток пачки сразу возвращается в очередь, а продлеваются только удерживаемые аренды")
+    void release_shouldRequeueRemainderAndRenewOnlyHeldLeases() {
+        List<FrontierUrl> batch = frontierService.claim("node-1", 3);
+
+        assertThat(frontierService.renewLeases("node-1", List.of(batch.get(0).getId()))).isEqualTo(1);
+        assertThat(frontierService.renewLeases("node-1", List.of())).isZero();
+
+        frontierService.finish(batch.get(0), "node-1", true);
+        frontierService.release(batch.subList(1, 3), "node-1");
+        assertThat(frontierRepository.countBySiteIdAndStatus(site.getId(), FrontierStatus.QUEUED)).isEqualTo(2);
+
+        List<FrontierUrl> retried = frontierService.claim("node-2", 3);
+        assertThat(retried).hasSize(2);
+        frontierService.release(retried, "node-2");
+        assertThat(frontierRepository.countBySiteIdAndStatus(site.getId(), FrontierStatus.FAILED)).isEqualTo(2);
+        assertThat(frontierService.hasPendingUrls(site.getId())).isFalse();
+    }
+}
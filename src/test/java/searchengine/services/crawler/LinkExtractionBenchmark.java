@@ -0,0 +1,105 @@
+package searchengine.services.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import searchengine.config.CrawlSettings;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ссылок страницы, на которой их несколько тысяч: канонизация с отпечатками против прежнего пути
+ * с {@link String#matches(String)} и {@link URI} на каждую ссылку. Разбор самого HTML в замер не входит.
+ * <p>
+ * Запуск: {@code mvn test-compile} и затем {@link #main(String[])} из IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractionBenchmark {
+
+    private static final String SITE = "https://www.example.com";
+
+    @Param({"2000"})
+    private int links;
+
+    private Document document;
+    private UrlCanonicalizer canonicalizer;
+
+    @Setup
+    public void setUp() {
+        canonicalizer = new UrlCanonicalizer(new CrawlSettings());
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < links; i++) {
+            switch (i % 8) {
+                case 0 -> html.append("<a href=\"/catalog/item-").append(i).append("/\">товар</a>");
+                case 1 -> html.append("<a href=\"https://example.com/news/").append(i % 50)
+                        .append("?utm_source=feed&utm_medium=rss\">новость</a>");
+                case 2 -> html.append("<a href=\"/files/doc-").append(i).append(".pdf\">документ</a>");
+                case 3 -> html.append("<a href=\"https://other.org/page/").append(i).append("\">чужая</a>");
+                case 4 -> html.append("<a href=\"/articles/").append(i % 100).append("#comments\">комментарии</a>");
+                case 5 -> html.append("<a href=\"/search?q=").append(i).append("&page=2\">поиск</a>");
+                case 6 -> html.append("<a href=\"/images/photo-").append(i).append(".JPG\">фото</a>");
+                default -> html.append("<a href=\"https://WWW.Example.com/catalog/item-").append(i - 7)
+                        .append("\">дубль</a>");
+            }
+        }
+        document = Jsoup.parse(html.append("</body></html>").toString(), SITE + "/catalog");
+    }
+
+    @Benchmark
+    public Set<Long> canonicalizer() {
+        Set<Long> visited = ConcurrentHashMap.newKeySet();
+        for (Element element : document.select("a[href]")) {
+            String link = canonicalizer.canonicalize(element.absUrl("href"), SITE);
+            if (link != null) {
+                visited.add(canonicalizer.fingerprint(link));
+            }
+        }
+        return visited;
+    }
+
+    @Benchmark
+    public Set<String> legacyRegex() throws Exception {
+        Set<String> visited = ConcurrentHashMap.newKeySet();
+        Set<String> links = new HashSet<>();
+        String baseHost = normalizeHost(new URI(SITE).getHost());
+        for (Element element : document.select("a[href]")) {
+            String absUrl = element.attr("abs:href");
+            if (absUrl.isEmpty() || absUrl.contains("#") || absUrl.matches(
+                    "(?i).*\\.(pdf|docx?|xlsx?|jpg|jpeg|png|gif|webp|zip|rar|exe|mp3|mp4|avi|mov|svg)(\\?.*)?$")) {
+                continue;
+            }
+            String host = normalizeHost(new URI(absUrl).getHost());
+            if (host == null || !host.equalsIgnoreCase(baseHost)) {
+                continue;
+            }
+            links.add(absUrl.endsWith("/") ? absUrl.substring(0, absUrl.length() - 1) : absUrl);
+        }
+        visited.addAll(links);
+        return visited;
+    }
+
+    private static String normalizeHost(String host) {
+        return host != null && host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LinkExtractionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,55 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlSettings;
+import searchengine.model.Site;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NearDuplicateDetectorTest {
+
+    @Test
+    @DisplayName("Страница с почти тем же набором лемм находится как дубликат, другая страница — нет")
+    void findOriginal_shouldMatchOnlyNearDuplicates() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(new CrawlSettings());
+        Site site = new Site();
+        site.setId(1);
+
+        Map<String, Integer> article = lemmas("статья", 200);
+        Long original = detector.fingerprint(article);
+        assertThat(original).isNotNull();
+        assertThat(detector.findOriginal(site, original)).isNull();
+        detector.register(site, original, 10);
+
+        Map<String, Integer> printVersion = new HashMap<>(article);
+        printVersion.put("печать", 1);
+        printVersion.merge("статья7", 1, Integer::sum);
+        assertThat(detector.findOriginal(site, detector.fingerprint(printVersion))).isEqualTo(10);
+
+        assertThat(detector.findOriginal(site, detector.fingerprint(lemmas("новость", 200)))).isNull();
+
+        detector.retainSites(Set.of());
+        assertThat(detector.findOriginal(site, original)).isNull();
+    }
+
+    @Test
+    @DisplayName("Короткие страницы не сравниваются")
+    void fingerprint_shouldIgnoreShortPages() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(new CrawlSettings());
+
+        assertThat(detector.fingerprint(lemmas("меню", 5))).isNull();
+    }
+
+    private static Map<String, Integer> lemmas(String prefix, int count) {
+        Map<String, Integer> lemmas = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            lemmas.put(prefix + i, i % 7 + 1);
+        }
+        return lemmas;
+    }
+}
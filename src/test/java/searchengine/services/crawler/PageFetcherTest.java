@@ -0,0 +1,89 @@
+package searchengine.services.crawler;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.config.CrawlSettings;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageFetcherTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private PageFetcher fetcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        respond("/cp1251", "text/html", "<html><head><meta charset=\"windows-1251\"></head><body>Привет</body></html>"
+                .getBytes(Charset.forName("windows-1251")), false);
+        respond("/image", "image/png", new byte[4096], false);
+        respond("/huge", "text/html", ("<html><body>" + "слово ".repeat(2000) + "</body></html>")
+                .getBytes(StandardCharsets.UTF_8), false);
+        respond("/stream", "text/html; charset=utf-8", ("<html><body>" + "слово ".repeat(2000) + "</body></html>")
+                .getBytes(StandardCharsets.UTF_8), true);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        CrawlSettings settings = new CrawlSettings();
+        settings.setMaxBodyBytes(1024);
+        fetcher = new PageFetcher(settings);
+        ReflectionTestUtils.setField(fetcher, "userAgent", "test");
+        ReflectionTestUtils.setField(fetcher, "referrer", "http://localhost");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Кодировка страницы определяется по meta, если ее нет в заголовке")
+    void fetch_shouldSniffCharset() throws Exception {
+        PageFetcher.FetchedPage page = fetcher.fetch(baseUrl + "/cp1251");
+
+        assertThat(page.getStatusCode()).isEqualTo(200);
+        assertThat(page.getDocument().body().text()).isEqualTo("Привет");
+        assertThat(page.isTruncated()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Не HTML и слишком длинный Content-Length прерываются, тело без длины обрезается")
+    void fetch_shouldAbortOrTruncateLargeAndForeignResponses() throws Exception {
+        assertThat(fetcher.fetch(baseUrl + "/image")).isNull();
+        assertThat(fetcher.fetch(baseUrl + "/huge")).isNull();
+
+        PageFetcher.FetchedPage streamed = fetcher.fetch(baseUrl + "/stream");
+        assertThat(streamed.isTruncated()).isTrue();
+        assertThat(streamed.getDocument().body().text()).startsWith("слово слово");
+
+        PageFetcher.Stats stats = fetcher.stats();
+        assertThat(stats.getAbortedContentType()).isEqualTo(1);
+        assertThat(stats.getAbortedContentLength()).isEqualTo(1);
+        assertThat(stats.getTruncated()).isEqualTo(1);
+        assertThat(stats.getFetched()).isEqualTo(1);
+        assertThat(stats.getBytes()).isEqualTo(1024);
+    }
+
+    private void respond(String path, String contentType, byte[] body, boolean chunked) {
+        server.createContext(path, exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, chunked ? 0 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException ignored) {
+                // клиент закрыл соединение, не дочитав тело
+            }
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RobotsRulesTest {
+
+    private static final String ROBOTS = """
+            User-agent: *
+            Disallow: /admin
+            Disallow: /*?print=
+            Allow: /admin/public
+            Crawl-delay: 2
+
+            User-agent: Yandex
+            User-agent: SearchEngine
+            Disallow: /search$
+            Disallow: /tmp/ # временные файлы
+            Crawl-delay: 0.5
+
+            Sitemap: https://example.com/sitemap_index.xml
+            """;
+
+    @Test
+    @DisplayName("Для обходчика выбирается его группа правил, побеждает самый длинный подходящий шаблон")
+    void parse_shouldApplyOwnGroupAndLongestMatch() {
+        RobotsRules own = RobotsRules.parse(ROBOTS, "SearchEngine");
+
+        assertThat(own.isAllowed("/search")).isFalse();
+        assertThat(own.isAllowed("/search/advanced")).isTrue();
+        assertThat(own.isAllowed("/tmp/file")).isFalse();
+        assertThat(own.isAllowed("/admin")).isTrue();
+        assertThat(own.getCrawlDelayMs()).isEqualTo(500);
+        assertThat(own.getSitemaps()).containsExactly("https://example.com/sitemap_index.xml");
+
+        RobotsRules other = RobotsRules.parse(ROBOTS, "OtherBot");
+
+        assertThat(other.isAllowed("/admin/users")).isFalse();
+        assertThat(other.isAllowed("/admin/public/page")).isTrue();
+        assertThat(other.isAllowed("/news/1?print=1")).isFalse();
+        assertThat(other.isAllowed("/news/1")).isTrue();
+        assertThat(other.getCrawlDelayMs()).isEqualTo(2000);
+    }
+}
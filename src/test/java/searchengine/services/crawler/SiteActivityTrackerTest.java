@@ -0,0 +1,28 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.model.Site;
+import searchengine.services.statistics.StatisticsChanges;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SiteActivityTrackerTest {
+
+    @Test
+    @DisplayName("Кольцевой буфер хранит только последние ошибки сайта, начиная с самой свежей")
+    void recordError_shouldKeepMostRecentErrors() {
+        SiteActivityTracker tracker = new SiteActivityTracker(null, new StatisticsChanges());
+        Site site = new Site();
+        site.setId(1);
+
+        for (int i = 1; i <= 25; i++) {
+            tracker.recordError(site, "ошибка " + i);
+        }
+
+        assertThat(tracker.recentErrors(site))
+                .hasSize(20)
+                .startsWith("ошибка 25", "ошибка 24")
+                .endsWith("ошибка 6");
+    }
+}
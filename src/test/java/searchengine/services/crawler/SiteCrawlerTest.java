@@ -0,0 +1,134 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlSettings;
+import searchengine.dto.crawler.PageProcessingResult;
+import searchengine.model.Site;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SiteCrawlerTest {
+
+    private static final String SITE = "https://test.com";
+
+    @Test
+    @DisplayName("Каждая страница сайта загружается ровно один раз, обход завершается при пустой очереди")
+    void crawl_shouldVisitEveryPageOnce() throws Exception {
+        CrawlSettings settings = new CrawlSettings();
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(settings);
+        CrawlFrontier frontier = new CrawlFrontier(new CrawlPriority(settings), canonicalizer, 100, 10_000);
+        frontier.offer(SITE, 0, 1, null);
+        Map<String, AtomicInteger> visits = new ConcurrentHashMap<>();
+        Site site = new Site();
+        site.setId(1);
+
+        PageProcessorService processor = (url, siteEntity) -> {
+            visits.computeIfAbsent(url, key -> new AtomicInteger()).incrementAndGet();
+            int page = url.equals(SITE) ? 0 : Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+            Set<String> links = IntStream.of(page * 3 + 1, page * 3 + 2, page * 3 + 3, page / 2)
+                    .filter(next -> next < 500)
+                    .mapToObj(next -> next == 0 ? SITE : SITE + "/page/" + next)
+                    .collect(Collectors.toSet());
+            return PageProcessingResult.success(links);
+        };
+
+        new SiteCrawler(processor, new FetchThrottle(0), site, frontier, 4, () -> true).crawl();
+
+        assertThat(visits).hasSize(500);
+        assertThat(visits.values()).allMatch(count -> count.get() == 1);
+        assertThat(frontier.isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Остановленный обход не выдает новых ссылок")
+    void crawl_shouldFinishWhenStopped() throws Exception {
+        CrawlSettings settings = new CrawlSettings();
+        CrawlFrontier frontier = new CrawlFrontier(new CrawlPriority(settings), new UrlCanonicalizer(settings), 100, 100);
+        frontier.offer(SITE, 0, 1, null);
+        AtomicInteger visits = new AtomicInteger();
+
+        PageProcessorService processor = (url, siteEntity) ->
+                PageProcessingResult.success(Set.of(SITE + "/page/" + visits.incrementAndGet()));
+
+        new SiteCrawler(processor, new FetchThrottle(0), new Site(), frontier, 2, () -> visits.get() < 10).crawl();
+
+        assertThat(visits.get()).isBetween(10, 12);
+        assertThat(frontier.isEmpty()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Последняя ссылка, выбранная одним потоком при освобождении места другим, не теряется")
+    void crawl_shouldNotLosePagesWhenLastSlotIsReleasedConcurrently() throws Exception {
+        CrawlSettings settings = new CrawlSettings();
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(settings);
+        Site site = new Site();
+        site.setId(1);
+
+        for (int round = 0; round < 20; round++) {
+            CrawlFrontier frontier = new CrawlFrontier(new CrawlPriority(settings), canonicalizer, 100, 100) {
+                @Override
+                public boolean isEmpty() {
+                    pause(40);
+                    return super.isEmpty();
+                }
+            };
+            frontier.offer(SITE, 0, 1, null);
+            Set<String> visited = ConcurrentHashMap.newKeySet();
+            CyclicBarrier siblingsDone = new CyclicBarrier(2);
+            ThreadLocal<Boolean> slowSchedule = ThreadLocal.withInitial(() -> false);
+            BooleanSupplier running = () -> {
+                if (slowSchedule.get()) {
+                    slowSchedule.set(false);
+                    pause(10);
+                }
+                return true;
+            };
+
+            PageProcessorService processor = (url, siteEntity) -> {
+                try {
+                    if (url.equals(SITE)) {
+                        visited.add(url);
+                        return PageProcessingResult.success(Set.of(SITE + "/a", SITE + "/b"));
+                    }
+                    if (url.endsWith("/last")) {
+                        Thread.sleep(50);
+                        visited.add(url);
+                        return PageProcessingResult.success(Set.of());
+                    }
+                    visited.add(url);
+                    siblingsDone.await();
+                    if (url.endsWith("/a")) {
+                        slowSchedule.set(true);
+                        return PageProcessingResult.success(Set.of());
+                    }
+                    Thread.sleep(5);
+                    return PageProcessingResult.success(Set.of(SITE + "/last"));
+                } catch (Exception e) {
+                    return PageProcessingResult.failure();
+                }
+            };
+
+            new SiteCrawler(processor, new FetchThrottle(0), site, frontier, 2, running).crawl();
+
+            assertThat(visited).as("раунд %d", round).hasSize(4);
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.crawler.SitemapParser.SitemapEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SitemapParserTest {
+
+    @Test
+    @DisplayName("Записи карты сайта и вложенные карты читаются потоково, в том числе из gzip")
+    void parse_shouldReadUrlsAndNestedSitemaps() throws Exception {
+        String sitemap = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <url><loc>https://example.com/news/1</loc><lastmod>2024-03-01</lastmod><priority>0.8</priority></url>
+                  <url><loc> https://example.com/news/2 </loc><lastmod>2024-03-02T10:00:00+03:00</lastmod></url>
+                </urlset>
+                """;
+        String index = """
+                <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <sitemap><loc>https://example.com/sitemap-news.xml.gz</loc></sitemap>
+                </sitemapindex>
+                """;
+
+        List<SitemapEntry> urls = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        SitemapParser.parse(new ByteArrayInputStream(gzip(sitemap)), urls::add, sitemaps::add);
+        SitemapParser.parse(new ByteArrayInputStream(index.getBytes(StandardCharsets.UTF_8)), urls::add, sitemaps::add);
+
+        assertThat(urls).containsExactly(
+                new SitemapEntry("https://example.com/news/1", Instant.parse("2024-03-01T00:00:00Z"), 0.8),
+                new SitemapEntry("https://example.com/news/2", Instant.parse("2024-03-02T07:00:00Z"), 0.5));
+        assertThat(sitemaps).containsExactly("https://example.com/sitemap-news.xml.gz");
+    }
+
+    private static byte[] gzip(String text) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
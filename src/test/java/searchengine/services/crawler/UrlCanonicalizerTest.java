@@ -0,0 +1,55 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlSettings;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UrlCanonicalizerTest {
+
+    private static final String SITE = "https://www.example.com";
+
+    @Test
+    @DisplayName("Разные написания одной ссылки приводятся к одному каноническому виду и отпечатку")
+    void canonicalize_shouldNormalizeEquivalentLinks() {
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(new CrawlSettings());
+
+        List<String> variants = List.of(
+                "https://www.example.com/news/",
+                "HTTPS://Example.COM:443/news#comments",
+                "https://example.com/news?utm_source=mail&utm_medium=email",
+                "https://www.example.com/news/?fbclid=abc");
+
+        for (String variant : variants) {
+            assertThat(canonicalizer.canonicalize(variant, SITE)).isEqualTo("https://www.example.com/news");
+        }
+        assertThat(canonicalizer.canonicalize("https://example.com/news?page=2&utm_term=x&sort=date", SITE))
+                .isEqualTo("https://www.example.com/news?page=2&sort=date");
+        assertThat(canonicalizer.fingerprint(canonicalizer.canonicalize(variants.get(0), SITE)))
+                .isEqualTo(canonicalizer.fingerprint(canonicalizer.canonicalize(variants.get(1), SITE)));
+    }
+
+    @Test
+    @DisplayName("Ссылки на другие хосты, файлы и запрещенные пути отбрасываются")
+    void canonicalize_shouldRejectForeignAndBlockedLinks() {
+        CrawlSettings settings = new CrawlSettings();
+        settings.setBlockedPaths(List.of("^/(login|cart)", "/print/"));
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(settings);
+
+        assertThat(canonicalizer.canonicalize("https://other.com/news", SITE)).isNull();
+        assertThat(canonicalizer.canonicalize("https://sub.example.com/news", SITE)).isNull();
+        assertThat(canonicalizer.canonicalize("https://user@example.com/news", SITE)).isNull();
+        assertThat(canonicalizer.canonicalize("https://example.com:8443/news", SITE)).isNull();
+        assertThat(canonicalizer.canonicalize("mailto:info@example.com", SITE)).isNull();
+        assertThat(canonicalizer.canonicalize("https://example.com/files/report.PDF?download=1", SITE)).isNull();
+        assertThat(canonicalizer.canonicalize("https://example.com/login?next=/", SITE)).isNull();
+        assertThat(canonicalizer.canonicalize("https://example.com/news/print/42", SITE)).isNull();
+
+        assertThat(canonicalizer.canonicalize("https://example.com/catalog.v2/item", SITE))
+                .isEqualTo("https://www.example.com/catalog.v2/item");
+        assertThat(canonicalizer.canonicalize("https://example.com/", SITE)).isEqualTo("https://www.example.com");
+    }
+}
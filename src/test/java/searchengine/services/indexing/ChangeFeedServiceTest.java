@@ -0,0 +1,132 @@
+package searchengine.services.indexing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.config.ChangeFeedSettings;
+import searchengine.config.SitesList;
+import searchengine.dto.indexing.ChangeEvent;
+import searchengine.dto.indexing.ChangeFeedResponse;
+import searchengine.dto.indexing.IndexPageResult;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChangeFeedServiceTest {
+
+    private static final String SITE_URL = "https://test.com";
+
+    @TempDir
+    Path directory;
+
+    private final PageManagementService pageManagementService = mock(PageManagementService.class);
+    private final SitesList sitesConfig = new SitesList();
+    private ChangeFeedService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        searchengine.config.Site site = new searchengine.config.Site();
+        site.setUrl(SITE_URL);
+        site.setName("Тестовый сайт");
+        sitesConfig.setSites(List.of(site));
+        when(pageManagementService.applyChanges(anyList(), anyList(), any())).thenAnswer(invocation -> results(
+                invocation.getArgument(0), invocation.getArgument(1), url -> true));
+        service = start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Повторные события одного URL схлопываются, применяется последнее")
+    void apply_shouldCoalesceEventsPerUrl() throws Exception {
+        ChangeFeedResponse response = service.accept(List.of(
+                new ChangeEvent(SITE_URL + "/a", ChangeEvent.Type.UPSERT),
+                new ChangeEvent(SITE_URL + "/a", ChangeEvent.Type.UPSERT),
+                new ChangeEvent(SITE_URL + "/b", ChangeEvent.Type.DELETE),
+                new ChangeEvent("https://other.com/c", ChangeEvent.Type.UPSERT)));
+        service.accept(List.of(new ChangeEvent(SITE_URL + "/b", ChangeEvent.Type.UPSERT)));
+
+        assertThat(response.isResult()).isTrue();
+        assertThat(response.getAccepted()).isEqualTo(2);
+        assertThat(response.getRejected()).isEqualTo(1);
+
+        service.apply();
+
+        verify(pageManagementService, times(1)).applyChanges(eq(List.of(SITE_URL + "/a", SITE_URL + "/b")),
+                eq(List.of()), any());
+        assertThat(service.pendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Непримененные события восстанавливаются из журнала после перезапуска")
+    void load_shouldReplayUnappliedEvents() throws Exception {
+        service.accept(List.of(new ChangeEvent(SITE_URL + "/a", ChangeEvent.Type.UPSERT)));
+        service.apply();
+        service.accept(List.of(new ChangeEvent(SITE_URL + "/b", ChangeEvent.Type.DELETE)));
+        service.shutdown();
+
+        service = start();
+        assertThat(service.pendingCount()).isEqualTo(1);
+        service.apply();
+
+        verify(pageManagementService, times(1)).applyChanges(eq(List.of(SITE_URL + "/a")), eq(List.of()), any());
+        verify(pageManagementService, times(1)).applyChanges(eq(List.of()), eq(List.of(SITE_URL + "/b")), any());
+    }
+
+    @Test
+    @DisplayName("Неудачное событие повторяется, переживает перезапуск и отбрасывается после исчерпания попыток")
+    void apply_shouldRetryFailedEventsUpToMaxAttempts() throws Exception {
+        when(pageManagementService.applyChanges(anyList(), anyList(), any())).thenAnswer(invocation -> results(
+                invocation.getArgument(0), invocation.getArgument(1), url -> !url.endsWith("/broken")));
+        service.accept(List.of(
+                new ChangeEvent(SITE_URL + "/a", ChangeEvent.Type.UPSERT),
+                new ChangeEvent(SITE_URL + "/broken", ChangeEvent.Type.UPSERT)));
+
+        service.apply();
+        assertThat(service.pendingCount()).isEqualTo(1);
+        service.shutdown();
+
+        service = start();
+        assertThat(service.pendingCount()).isEqualTo(1);
+        service.apply();
+        service.apply();
+        assertThat(service.pendingCount()).isZero();
+
+        verify(pageManagementService, times(2)).applyChanges(eq(List.of(SITE_URL + "/broken")), eq(List.of()), any());
+        service.apply();
+        verify(pageManagementService, times(2)).applyChanges(eq(List.of(SITE_URL + "/broken")), eq(List.of()), any());
+    }
+
+    private static List<IndexPageResult> results(List<String> upserts, List<String> deletes, Predicate<String> succeeds) {
+        return Stream.concat(upserts.stream(), deletes.stream())
+                .map(url -> new IndexPageResult(url, succeeds.test(url), succeeds.test(url) ? null : "Ошибка"))
+                .collect(Collectors.toList());
+    }
+
+    private ChangeFeedService start() throws Exception {
+        ChangeFeedSettings settings = new ChangeFeedSettings();
+        settings.setJournalPath(directory.toString());
+        settings.setApplyIntervalMs(60_000);
+        settings.setMaxAttempts(3);
+        ChangeFeedService feed = new ChangeFeedService(settings, pageManagementService, sitesConfig);
+        feed.load();
+        return feed;
+    }
+}
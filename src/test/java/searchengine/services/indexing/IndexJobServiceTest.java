@@ -0,0 +1,58 @@
+package searchengine.services.indexing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import searchengine.dto.indexing.IndexJobResponse;
+import searchengine.dto.indexing.IndexJobStatus;
+import searchengine.dto.indexing.IndexingResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IndexJobServiceTest {
+
+    private static final String PAGE_URL = "https://test.com/page";
+
+    private final PageManagementService pageManagementService = mock(PageManagementService.class);
+
+    @Test
+    @DisplayName("Задача индексации возвращает идентификатор и сообщает итоговое состояние")
+    void submit_shouldRunJobAndReportStatus() {
+        when(pageManagementService.checkUrl(PAGE_URL)).thenReturn(new IndexingResponse(true));
+        when(pageManagementService.indexPage(PAGE_URL))
+                .thenReturn(new IndexingResponse(false, "Ошибка получения страницы, статус: 404"));
+        IndexJobService service = new IndexJobService(pageManagementService, new SyncTaskExecutor());
+
+        IndexingResponse response = service.submit(PAGE_URL);
+
+        assertThat(response.isResult()).isTrue();
+        String jobId = ((IndexJobResponse) response).getJobId();
+        IndexJobStatus status = service.status(jobId).orElseThrow();
+        assertThat(status.getState()).isEqualTo(IndexJobStatus.State.FAILED);
+        assertThat(status.getError()).isEqualTo("Ошибка получения страницы, статус: 404");
+        assertThat(status.getFinishedAt()).isNotNull();
+        assertThat(service.status("unknown")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Неверный URL и переполненная очередь отклоняются сразу, без задачи")
+    void submit_shouldRejectInvalidUrlAndFullQueue() {
+        when(pageManagementService.checkUrl("https://another-site.com"))
+                .thenReturn(new IndexingResponse(false, "Данная страница находится за пределами сайтов, указанных в конфигурационном файле"));
+        when(pageManagementService.checkUrl(PAGE_URL)).thenReturn(new IndexingResponse(true));
+        IndexJobService service = new IndexJobService(pageManagementService, task -> {
+            throw new TaskRejectedException("full");
+        });
+
+        assertThat(service.submit("https://another-site.com").isResult()).isFalse();
+        IndexingResponse rejected = service.submit(PAGE_URL);
+        assertThat(rejected.isResult()).isFalse();
+        assertThat(rejected).isNotInstanceOf(IndexJobResponse.class);
+        verify(pageManagementService, never()).indexPage(PAGE_URL);
+    }
+}
@@ -0,0 +1,72 @@
+package searchengine.services.lemma;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность лемматизации при нескольких потоках, работающих с одним движком.
+ * При отдельном контексте анализа на поток пропускная способность должна расти почти линейно
+ * с числом потоков, пока их не больше ядер.
+ * <p>
+ * Запуск: {@code mvn test-compile} и затем {@link #main(String[])} из IDE либо
+ * {@code java -cp target/test-classes:<classpath> org.openjdk.jmh.Main LemmaEngineBenchmark -t 4}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmaEngineBenchmark {
+
+    private static final String PARAGRAPH = "Повторное появление леопарда в Осетии позволяет предположить, "
+            + "что леопард постоянно обитает в некоторых районах Северного Кавказа. Специалисты заповедника "
+            + "установили фотоловушки на горных тропах, и уже через несколько недель камеры зафиксировали "
+            + "крупную кошку, которая спускалась к реке на водопой. ";
+
+    private LemmaEngine lemmaEngine;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        lemmaEngine = new LemmaEngineImpl();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            builder.append(PARAGRAPH);
+        }
+        text = builder.toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ((LemmaEngineImpl) lemmaEngine).close();
+    }
+
+    @Benchmark
+    public Map<String, Integer> lemmaMap() {
+        return lemmaEngine.getLemmaMap(text);
+    }
+
+    @Benchmark
+    public void lemmaTokens(Blackhole blackhole) {
+        blackhole.consume(lemmaEngine.getLemmaTokens(text));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(LemmaEngineBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
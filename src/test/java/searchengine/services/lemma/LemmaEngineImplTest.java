@@ -3,6 +3,12 @@ package searchengine.services.lemma;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.StringReader;
+import java.util.HashMap;
 import java.util.Map;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -26,4 +32,27 @@ public class LemmaEngineImplTest {
         assertThat(lemmaMap.get("леопард")).isEqualTo(2);
         assertThat(lemmaMap.containsKey("в")).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Кэш слов дает те же леммы, что и анализатор на всем тексте, а повторные слова берутся из кэша")
+    void getLemmaMap_shouldMatchAnalyzerAndReuseCachedWords() throws Exception {
+        String text = "Леопарды и леопард бродили по горам, а в горах было тихо. Леопард вернулся!";
+
+        Map<String, Integer> expected = new HashMap<>();
+        try (RussianAnalyzer analyzer = new RussianAnalyzer();
+             TokenStream stream = analyzer.tokenStream("content", new StringReader(text.toLowerCase().replaceAll("[^а-я\\s]", " ")))) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                expected.merge(term.toString(), 1, Integer::sum);
+            }
+        }
+
+        assertThat(lemmaEngine.getLemmaMap(text)).isEqualTo(expected);
+        long missesAfterFirstPass = lemmaEngine.wordCacheStats().getMisses();
+
+        assertThat(lemmaEngine.getLemmaMap(text)).isEqualTo(expected);
+        assertThat(lemmaEngine.wordCacheStats().getMisses()).isEqualTo(missesAfterFirstPass);
+        assertThat(lemmaEngine.wordCacheStats().getHits()).isGreaterThan(0);
+    }
+}
@@ -0,0 +1,159 @@
+package searchengine.services.lemma;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import searchengine.dto.indexing.LemmaDto;
+import searchengine.dto.search.SitePostingView;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.statistics.SiteCounters;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:lemmadb;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+public class LemmaServiceImplTest {
+
+    @Autowired
+    private LemmaService lemmaService;
+    @Autowired
+    private SiteCounters siteCounters;
+
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private PageRepository pageRepository;
+    @Autowired
+    private LemmaRepository lemmaRepository;
+    @Autowired
+    private IndexRepository indexRepository;
+
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        indexRepository.deleteAll();
+        lemmaRepository.deleteAll();
+        pageRepository.deleteAll();
+        siteRepository.deleteAll();
+
+        site = new Site();
+        site.setUrl("https://test.com");
+        site.setName("Тестовый сайт");
+        site.setStatus(SiteStatus.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+        siteCounters.register(site);
+    }
+
+    @Test
+    @DisplayName("Переиндексация страницы меняет только разницу лемм, их частоты и ранги")
+    void replacePageLemmas_shouldApplyDifference() {
+        Page page = savePage("/page");
+        Page other = savePage("/other");
+        lemmaService.saveLemmasForPage(page, Map.of("дом", 2, "кот", 1, "лес", 1));
+        lemmaService.saveLemmasForPage(other, Map.of("дом", 1));
+
+        lemmaService.replacePageLemmas(page, Map.of("дом", 3, "лес", 1, "река", 2));
+
+        Map<String, Integer> frequencies = lemmaRepository.findAll().stream()
+                .collect(Collectors.toMap(Lemma::getLemma, Lemma::getFrequency));
+        assertThat(frequencies).containsOnly(Map.entry("дом", 2), Map.entry("лес", 1), Map.entry("река", 1));
+
+        Map<String, Float> ranks = indexRepository.findPostingsByPage(page).stream()
+                .collect(Collectors.toMap(SitePostingView::getLemma, SitePostingView::getRank));
+        assertThat(ranks).containsOnly(Map.entry("дом", 3f), Map.entry("лес", 1f), Map.entry("река", 2f));
+        assertThat(siteCounters.getLemmaCount(site)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Пустой набор лемм удаляет индекс страницы и неиспользуемые леммы")
+    void replacePageLemmas_withEmptyMap_shouldRemovePostings() {
+        Page page = savePage("/page");
+        lemmaService.saveLemmasForPage(page, Map.of("дом", 1, "кот", 1));
+
+        lemmaService.replacePageLemmas(page, Map.of());
+
+        assertThat(indexRepository.findAll()).isEmpty();
+        assertThat(lemmaRepository.findAll()).isEmpty();
+        assertThat(siteCounters.getLemmaCount(site)).isZero();
+    }
+
+    @Test
+    @DisplayName("Два одновременных сохранения пакетов одного сайта не теряют частоты и не дублируют леммы")
+    void saveLemmasForBatch_concurrentFlushers_shouldKeepFrequencies() throws Exception {
+        int batches = 10;
+        int pagesPerBatch = 5;
+        List<List<LemmaDto>> first = new ArrayList<>();
+        List<List<LemmaDto>> second = new ArrayList<>();
+        for (int b = 0; b < batches; b++) {
+            for (List<List<LemmaDto>> flusher : List.of(first, second)) {
+                List<LemmaDto> batch = new ArrayList<>();
+                for (int p = 0; p < pagesPerBatch; p++) {
+                    Page page = savePage("/" + flusher.size() + "-" + (flusher == first ? "a" : "b") + "-" + p);
+                    batch.add(new LemmaDto(page, Map.of("общий", 1, "лемма" + b, 2, "страница" + p, 1)));
+                }
+                flusher.add(batch);
+            }
+        }
+
+        CyclicBarrier start = new CyclicBarrier(2);
+        ExecutorService flushers = Executors.newFixedThreadPool(2);
+        List<Future<?>> results = new ArrayList<>();
+        for (List<List<LemmaDto>> flusher : List.of(first, second)) {
+            results.add(flushers.submit(() -> {
+                start.await();
+                for (List<LemmaDto> batch : flusher) {
+                    lemmaService.saveLemmasForBatch(batch);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        flushers.shutdown();
+
+        List<Lemma> lemmas = lemmaRepository.findAll();
+        Map<String, Integer> frequencies = lemmas.stream()
+                .collect(Collectors.toMap(Lemma::getLemma, Lemma::getFrequency));
+        assertThat(lemmas).hasSize(1 + batches + pagesPerBatch);
+        assertThat(frequencies.get("общий")).isEqualTo(2 * batches * pagesPerBatch);
+        assertThat(frequencies.get("лемма0")).isEqualTo(2 * pagesPerBatch);
+        assertThat(frequencies.get("страница0")).isEqualTo(2 * batches);
+        assertThat(indexRepository.count()).isEqualTo(2L * batches * pagesPerBatch * 3);
+        assertThat(siteCounters.getLemmaCount(site)).isEqualTo(1 + batches + pagesPerBatch);
+    }
+
+    private Page savePage(String path) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(path);
+        page.setCode(200);
+        page.setContent("<html></html>");
+        return pageRepository.save(page);
+    }
+}
@@ -0,0 +1,110 @@
+package searchengine.services.lucene;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.lemma.LemmaService;
+import searchengine.services.search.SearchService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:lucenedb;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "search-settings.index-mode=lucene",
+        "lucene-settings.index-path=target/test-lucene-index"
+})
+public class LuceneSearchServiceTest {
+
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private LemmaService lemmaService;
+    @Autowired
+    private LuceneIndexManager indexManager;
+
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private PageRepository pageRepository;
+
+    @BeforeEach
+    void setUp() {
+        indexManager.clear();
+        pageRepository.deleteAll();
+        siteRepository.deleteAll();
+
+        Site site = new Site();
+        site.setUrl("https://test.com");
+        site.setName("Тестовый сайт");
+        site.setStatus(SiteStatus.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+
+        indexPage(site, "/page1", "Страница про котиков", "Милые котики играют в саду.");
+        indexPage(site, "/page2", "Страница про собак", "Веселые собаки бегают во дворе.");
+    }
+
+    @Test
+    @DisplayName("В режиме lucene поиск находит страницу и подсвечивает словоформы запроса")
+    void search_shouldFindPageAndHighlightTerms() {
+        assertThat(searchService).isInstanceOf(LuceneSearchService.class);
+
+        SearchResponse response = searchService.search("милый котик", null, 0, 10);
+
+        assertThat(response.isResult()).isTrue();
+        assertThat(response.getCount()).isEqualTo(1);
+        List<SearchData> data = response.getData();
+        assertThat(data).hasSize(1);
+        assertThat(data.get(0).getUri()).isEqualTo("/page1");
+        assertThat(data.get(0).getTitle()).isEqualTo("Страница про котиков");
+        assertThat(data.get(0).getSnippet()).contains("<b>Милые</b>", "<b>котики</b>");
+        assertThat(data.get(0).getRelevance()).isEqualTo(1.0f);
+    }
+
+    @Test
+    @DisplayName("Запрос пустой страницы выдачи возвращает только число найденных страниц")
+    void search_whenLimitIsZero_shouldReturnCountWithoutData() {
+        SearchResponse response = searchService.search("милый котик", null, 0, 0);
+
+        assertThat(response.isResult()).isTrue();
+        assertThat(response.getCount()).isEqualTo(1);
+        assertThat(response.getData()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Удаленная из индекса страница больше не находится")
+    void search_shouldNotFindDeletedPage() {
+        Page page = pageRepository.findAll().stream()
+                .filter(p -> p.getPath().equals("/page2"))
+                .findFirst()
+                .orElseThrow();
+
+        lemmaService.decrementLemmaFrequency(page);
+
+        assertThat(searchService.search("собаки", null, 0, 10).getCount()).isZero();
+    }
+
+    private void indexPage(Site site, String path, String title, String text) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(path);
+        page.setCode(200);
+        page.setContent("<html><title>" + title + "</title><body>" + text + "</body></html>");
+        lemmaService.saveLemmasForPage(pageRepository.save(page), Map.of());
+    }
+}
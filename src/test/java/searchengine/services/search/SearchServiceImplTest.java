@@ -85,6 +85,16 @@ public class SearchServiceImplTest {
         assertThat(result.getRelevance()).isEqualTo(1.0f);
     }
 
+    @Test
+    @DisplayName("Запрос пустой страницы выдачи возвращает только число найденных страниц")
+    void search_whenLimitIsZero_shouldReturnCountWithoutData() {
+        SearchResponse response = searchService.search("милые котики", null, 0, 0);
+
+        assertThat(response.isResult()).isTrue();
+        assertThat(response.getCount()).isEqualTo(1);
+        assertThat(response.getData()).isEmpty();
+    }
+
     @Test
     @DisplayName("Поиск по запросу, который не находит ни одной страницы")
     void search_whenQueryDoesNotMatch_shouldReturnEmptyResult() {
@@ -0,0 +1,56 @@
+package searchengine.services.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import searchengine.services.lemma.LemmaEngine;
+import searchengine.services.lemma.LemmaEngineImpl;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnippetGeneratorTest {
+
+    private LemmaEngine lemmaEngine;
+    private SnippetGenerator snippetGenerator;
+
+    @BeforeEach
+    void setUp() {
+        lemmaEngine = new LemmaEngineImpl();
+        snippetGenerator = new SnippetGenerator(lemmaEngine);
+    }
+
+    @Test
+    @DisplayName("Выделяются все словоформы лемм запроса")
+    void generate_shouldHighlightAllWordForms() {
+        String text = "Леопард вышел к реке. Следы леопардов нашли у воды.";
+        Set<String> lemmas = lemmaEngine.getLemmaMap("леопард").keySet();
+
+        String snippet = snippetGenerator.generate(text, lemmas);
+
+        assertThat(snippet).contains("<b>Леопард</b>").contains("<b>леопардов</b>");
+    }
+
+    @Test
+    @DisplayName("Выбирается окно, где встречается больше всего разных лемм запроса")
+    void generate_shouldPickDensestWindow() {
+        String filler = "трава ".repeat(80);
+        String text = "Кот спит. " + filler + "Рыжий кот ловит мышь на кухне. " + filler;
+        Set<String> lemmas = lemmaEngine.getLemmaMap("кот мышь").keySet();
+
+        String snippet = snippetGenerator.generate(text, lemmas);
+
+        assertThat(snippet).contains("<b>кот</b>").contains("<b>мышь</b>");
+        assertThat(snippet).startsWith("...").endsWith("...");
+        assertThat(snippet).doesNotContain("Кот спит");
+    }
+
+    @Test
+    @DisplayName("Текст страницы экранируется")
+    void generate_shouldEscapeMarkup() {
+        String snippet = snippetGenerator.generate("Кот <script> спит", lemmaEngine.getLemmaMap("кот").keySet());
+
+        assertThat(snippet).isEqualTo("<b>Кот</b> &lt;script&gt; спит");
+    }
+}
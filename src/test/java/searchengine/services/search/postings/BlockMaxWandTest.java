@@ -0,0 +1,136 @@
+package searchengine.services.search.postings;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BlockMaxWandTest {
+
+    @Test
+    @DisplayName("Top-K по Block-Max WAND совпадает с полным перебором")
+    void topK_shouldMatchExhaustiveScoring() {
+        Random random = new Random(42);
+        List<PostingList> required = List.of(randomPostings(random, 0.6), randomPostings(random, 0.3));
+        List<PostingList> optional = List.of(randomPostings(random, 0.9));
+
+        List<ScoredPage> expected = exhaustive(required, optional);
+        List<ScoredPage> actual = BlockMaxWand.topK(required, optional, 20);
+
+        assertThat(actual).hasSize(20);
+        assertThat(actual).extracting(ScoredPage::getScore)
+                .containsExactlyElementsOf(expected.subList(0, 20).stream().map(ScoredPage::getScore).toList());
+        assertThat(BlockMaxWand.countMatches(required, Integer.MAX_VALUE)).isEqualTo(expected.size());
+    }
+
+    @Test
+    @DisplayName("Страница без одной из обязательных лемм не попадает в выдачу")
+    void topK_shouldRequireAllMandatoryLemmas() {
+        PostingList first = new PostingList(new int[]{1, 2, 3}, new float[]{5f, 1f, 1f});
+        PostingList second = new PostingList(new int[]{2, 3, 4}, new float[]{1f, 2f, 9f});
+
+        List<ScoredPage> result = BlockMaxWand.topK(List.of(first, second), List.of(), 10);
+
+        assertThat(result).extracting(ScoredPage::getPageId).containsExactly(3, 2);
+        assertThat(BlockMaxWand.countMatches(List.of(first, second), Integer.MAX_VALUE)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Сверх предела точного подсчета число совпадений оценивается по пройденной части списка")
+    void countMatches_shouldEstimateBeyondExactLimit() {
+        int[] pageIds = new int[1000];
+        float[] ranks = new float[1000];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = i + 1;
+            ranks[i] = 1f;
+        }
+        PostingList all = new PostingList(pageIds, ranks);
+
+        assertThat(BlockMaxWand.countMatches(List.of(all, all), 100)).isEqualTo(1000);
+        assertThat(BlockMaxWand.countMatches(List.of(all), 5000)).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("Объединение списков с удаленными страницами оценивается так же, как список из живых записей")
+    void topK_shouldSkipDeletedPagesInUnion() {
+        Random random = new Random(7);
+        PostingList source = randomPostings(random, 0.6);
+        List<Integer> evenIds = new ArrayList<>();
+        List<Float> evenRanks = new ArrayList<>();
+        List<Integer> oddIds = new ArrayList<>();
+        List<Float> oddRanks = new ArrayList<>();
+        for (int i = 0; i < source.size(); i++) {
+            boolean even = source.pageId(i) % 2 == 0;
+            (even ? evenIds : oddIds).add(source.pageId(i));
+            (even ? evenRanks : oddRanks).add(source.rank(i));
+        }
+        int[] deleted = evenIds.stream().filter(id -> id % 3 == 0).mapToInt(Integer::intValue).toArray();
+        PostingList evenWithDeletes = PostingList.wrap(toList(evenIds, evenRanks).encode(), deleted);
+        PostingList union = PostingList.union(List.of(evenWithDeletes, toList(oddIds, oddRanks)));
+        PostingList live = PostingList.wrap(union.encode());
+        PostingList other = randomPostings(random, 0.4);
+        List<PostingList> optional = List.of(randomPostings(random, 0.9));
+
+        List<ScoredPage> expected = exhaustive(List.of(live, other), optional);
+        List<ScoredPage> actual = BlockMaxWand.topK(List.of(union, other), optional, 20);
+
+        assertThat(union.size()).isEqualTo(source.size() - deleted.length).isEqualTo(live.size());
+        assertThat(actual).extracting(ScoredPage::getScore)
+                .containsExactlyElementsOf(expected.subList(0, 20).stream().map(ScoredPage::getScore).toList());
+        assertThat(actual).extracting(ScoredPage::getPageId).noneMatch(id -> id % 2 == 0 && id % 3 == 0);
+        assertThat(BlockMaxWand.countMatches(List.of(union, other), Integer.MAX_VALUE)).isEqualTo(expected.size());
+    }
+
+    private PostingList toList(List<Integer> ids, List<Float> ranks) {
+        float[] rankArray = new float[ranks.size()];
+        for (int i = 0; i < rankArray.length; i++) {
+            rankArray[i] = ranks.get(i);
+        }
+        return new PostingList(ids.stream().mapToInt(Integer::intValue).toArray(), rankArray);
+    }
+
+    private PostingList randomPostings(Random random, double density) {
+        List<Integer> ids = new ArrayList<>();
+        for (int pageId = 1; pageId <= 5000; pageId++) {
+            if (random.nextDouble() < density) {
+                ids.add(pageId);
+            }
+        }
+        int[] pageIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        float[] ranks = new float[pageIds.length];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = 1 + random.nextInt(30);
+        }
+        return new PostingList(pageIds, ranks);
+    }
+
+    private List<ScoredPage> exhaustive(List<PostingList> required, List<PostingList> optional) {
+        TreeMap<Integer, Float> scores = new TreeMap<>();
+        TreeMap<Integer, Integer> matches = new TreeMap<>();
+        for (PostingList list : required) {
+            for (int i = 0; i < list.size(); i++) {
+                scores.merge(list.pageId(i), list.rank(i), Float::sum);
+                matches.merge(list.pageId(i), 1, Integer::sum);
+            }
+        }
+        matches.values().removeIf(count -> count < required.size());
+        scores.keySet().retainAll(matches.keySet());
+        for (PostingList list : optional) {
+            for (int i = 0; i < list.size(); i++) {
+                if (scores.containsKey(list.pageId(i))) {
+                    scores.merge(list.pageId(i), list.rank(i), Float::sum);
+                }
+            }
+        }
+        List<ScoredPage> result = new ArrayList<>();
+        scores.forEach((pageId, score) -> result.add(new ScoredPage(pageId, score)));
+        result.sort(Comparator.comparingDouble(ScoredPage::getScore).reversed());
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package searchengine.services.search.postings;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.model.Lemma;
+import searchengine.model.Site;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.services.statistics.SiteCounters;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ImpactIndexTest {
+
+    private final LemmaRepository lemmaRepository = mock(LemmaRepository.class);
+    private final SiteCounters siteCounters = mock(SiteCounters.class);
+    private final ImpactIndex impactIndex = new ImpactIndex(mock(IndexRepository.class), lemmaRepository, siteCounters);
+    private final Site site = new Site();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(impactIndex, "postingCacheMb", 1L);
+        ReflectionTestUtils.setField(impactIndex, "lemmaCacheMb", 1L);
+        impactIndex.init();
+
+        site.setId(1);
+        site.setCountersTime(LocalDateTime.of(2024, 1, 1, 12, 0));
+        Lemma lemma = new Lemma();
+        lemma.setId(10);
+        lemma.setSite(site);
+        lemma.setLemma("слон");
+        lemma.setFrequency(3);
+        when(lemmaRepository.findAllByLemmaInAndSiteIn(any(), any())).thenReturn(List.of(lemma));
+    }
+
+    @Test
+    @DisplayName("Кэш лемм перечитывается после сброса на этом узле и после записи другого узла")
+    void findLemmas_shouldReloadAfterLocalOrRemoteChange() {
+        assertThat(impactIndex.findLemmas(Set.of("слон"), List.of(site))).hasSize(1);
+        assertThat(impactIndex.findLemmas(Set.of("слон"), List.of(site)).get(0).getFrequency()).isEqualTo(3);
+        verify(lemmaRepository, times(1)).findAllByLemmaInAndSiteIn(any(), any());
+
+        impactIndex.invalidateSite(site);
+        impactIndex.findLemmas(Set.of("слон"), List.of(site));
+        verify(lemmaRepository, times(2)).findAllByLemmaInAndSiteIn(any(), any());
+        verify(siteCounters).markIndexChanged(site);
+
+        site.setCountersTime(site.getCountersTime().plusNanos(1_000_000));
+        impactIndex.findLemmas(Set.of("слон"), List.of(site));
+        impactIndex.findLemmas(Set.of("слон"), List.of(site));
+        verify(lemmaRepository, times(3)).findAllByLemmaInAndSiteIn(any(), any());
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.services.search.postings;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapLruCacheTest {
+
+    @Test
+    @DisplayName("Кэш вытесняет давно не использованные записи и не принимает устаревшие значения")
+    void put_shouldEvictLeastRecentlyUsedEntries() {
+        OffHeapLruCache<String> cache = new OffHeapLruCache<>(2 * (8 + OffHeapLruCache.ENTRY_OVERHEAD));
+        cache.put("a", ByteBuffer.allocate(8).putLong(0, 1), () -> true);
+        cache.put("b", ByteBuffer.allocate(8).putLong(0, 2), () -> true);
+        assertThat(cache.get("a").getLong(0)).isEqualTo(1);
+
+        cache.put("c", ByteBuffer.allocate(8).putLong(0, 3), () -> true);
+        cache.put("d", ByteBuffer.allocate(8), () -> false);
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("c").getLong(0)).isEqualTo(3);
+        assertThat(cache.get("d")).isNull();
+
+        OffHeapLruCache.CacheStats stats = cache.stats();
+        assertThat(stats.getEntries()).isEqualTo(2);
+        assertThat(stats.getUsedBytes()).isEqualTo(2 * (8 + OffHeapLruCache.ENTRY_OVERHEAD));
+        assertThat(stats.getEvictions()).isEqualTo(1);
+        assertThat(stats.getHits()).isEqualTo(3);
+        assertThat(stats.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Короткие значения хранятся в куче, длинные — вне кучи")
+    void put_shouldKeepOnlyLargeValuesOffHeap() {
+        OffHeapLruCache<String> cache = new OffHeapLruCache<>(1 << 20);
+        cache.put("row", ByteBuffer.allocate(8), () -> true);
+        cache.put("list", ByteBuffer.allocate(OffHeapLruCache.MIN_DIRECT_BYTES), () -> true);
+
+        assertThat(cache.get("row").isDirect()).isFalse();
+        assertThat(cache.get("list").isDirect()).isTrue();
+        assertThat(cache.stats().getUsedBytes())
+                .isEqualTo(8 + OffHeapLruCache.MIN_DIRECT_BYTES + 2L * OffHeapLruCache.ENTRY_OVERHEAD);
+    }
+
+    @Test
+    @DisplayName("Список вхождений читается прямо из буфера кэша вместе с таблицей блоков")
+    void wrap_shouldReadPostingsFromCachedBuffer() {
+        int[] pageIds = new int[300];
+        float[] ranks = new float[300];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = 3 + i * 130;
+            ranks[i] = i == 200 ? 9f : 1f + i % 3;
+        }
+        PostingList original = new PostingList(pageIds, ranks);
+        OffHeapLruCache<Integer> cache = new OffHeapLruCache<>(1 << 16);
+        cache.put(1, original.encode(), () -> true);
+
+        PostingList wrapped = PostingList.wrap(cache.get(1));
+
+        assertThat(wrapped.encode().isDirect()).isTrue();
+        assertThat(wrapped.size()).isEqualTo(300);
+        for (int i = 0; i < original.size(); i++) {
+            assertThat(wrapped.pageId(i)).isEqualTo(original.pageId(i));
+            assertThat(wrapped.rank(i)).isEqualTo(original.rank(i));
+        }
+        assertThat(wrapped.maxRank()).isEqualTo(9f);
+        assertThat(wrapped.blockCount()).isEqualTo(5);
+        assertThat(wrapped.blockMaxRank(3)).isEqualTo(9f);
+        assertThat(wrapped.blockLastId(0)).isEqualTo(pageIds[63]);
+        assertThat(wrapped.cursor().advance(pageIds[250] - 1)).isEqualTo(pageIds[250]);
+    }
+}
@@ -0,0 +1,23 @@
+package searchengine.services.search.postings;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TopKMergeTest {
+
+    @Test
+    @DisplayName("Слияние отсортированных списков возвращает общие top-K по убыванию оценки")
+    void merge_shouldReturnGlobalTopK() {
+        List<ScoredPage> firstSite = List.of(new ScoredPage(1, 9f), new ScoredPage(2, 4f), new ScoredPage(3, 1f));
+        List<ScoredPage> secondSite = List.of(new ScoredPage(10, 7f), new ScoredPage(11, 5f));
+        List<ScoredPage> emptySite = List.of();
+
+        List<ScoredPage> merged = TopKMerge.merge(List.of(firstSite, emptySite, secondSite), 4);
+
+        assertThat(merged).extracting(ScoredPage::getPageId).containsExactly(1, 10, 11, 2);
+    }
+}
@@ -0,0 +1,149 @@
+package searchengine.services.search.shard;
+
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchResponse;
+import searchengine.services.lemma.LemmaEngine;
+import searchengine.services.lemma.LemmaEngineImpl;
+import searchengine.services.search.SnippetGenerator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class ShardedSearchServiceTest {
+
+    private final LemmaEngine lemmaEngine = new LemmaEngineImpl();
+    private ShardClient shard0;
+    private ShardClient shard1;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String leopard = lemma("леопард");
+        String cat = lemma("кошка");
+
+        DataSource first = shardDataSource("shard0");
+        JdbcTemplate jdbc0 = new JdbcTemplate(first);
+        insertSite(jdbc0, 1, "https://a.ru", "Сайт А", 2);
+        insertPage(jdbc0, 1, 1, "/leopard", "Леопард");
+        insertPage(jdbc0, 2, 1, "/cat", "Кошка");
+        insertLemma(jdbc0, 1, 1, leopard, 2);
+        insertLemma(jdbc0, 2, 1, cat, 1);
+        insertIndex(jdbc0, 1, 1, 3);
+        insertIndex(jdbc0, 2, 1, 1);
+        insertIndex(jdbc0, 2, 2, 2);
+
+        DataSource second = shardDataSource("shard1");
+        JdbcTemplate jdbc1 = new JdbcTemplate(second);
+        insertSite(jdbc1, 1, "https://b.ru", "Сайт Б", 1);
+        insertPage(jdbc1, 1, 1, "/both", "Леопард и кошка");
+        insertLemma(jdbc1, 1, 1, leopard, 1);
+        insertLemma(jdbc1, 2, 1, cat, 1);
+        insertIndex(jdbc1, 1, 1, 2);
+        insertIndex(jdbc1, 1, 2, 3);
+
+        shard0 = new ShardClient("shard-0", first, 5);
+        shard1 = new ShardClient("shard-1", second, 5);
+    }
+
+    @Test
+    @DisplayName("Координатор сливает top-K шардов по глобальной статистике термов")
+    void search_shouldMergeShardResultsWithGlobalStatistics() {
+        ShardedSearchService service = service(List.of(shard0, shard1), 5000);
+
+        SearchResponse single = service.search("леопард", null, 0, 10);
+        assertThat(single.getCount()).isEqualTo(3);
+        assertThat(single.getPartial()).isNull();
+        assertThat(single.getData()).extracting(SearchData::getSite, SearchData::getUri)
+                .containsExactly(
+                        tuple("https://a.ru", "/leopard"),
+                        tuple("https://b.ru", "/both"),
+                        tuple("https://a.ru", "/cat"));
+        assertThat(single.getData().get(0).getRelevance()).isEqualTo(1.0f);
+
+        // «леопард» есть на всех трех страницах обоих шардов, поэтому обязательной остается только «кошка»
+        SearchResponse both = service.search("леопард кошка", null, 0, 1);
+        assertThat(both.getCount()).isEqualTo(2);
+        assertThat(both.getData()).extracting(SearchData::getUri).containsExactly("/both");
+    }
+
+    @Test
+    @DisplayName("Медленный шард пропускается, а ответ помечается как неполный")
+    void search_shouldReturnPartialResultsWhenShardIsSlow() {
+        ShardClient slow = new ShardClient("shard-1", new DriverManagerDataSource(), 5) {
+            @Override
+            public TermStatistics termStatistics(Set<String> lemmas, String siteUrl) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.termStatistics(lemmas, siteUrl);
+            }
+        };
+        ShardedSearchService service = service(List.of(shard0, slow), 200);
+
+        SearchResponse response = service.search("леопард", null, 0, 10);
+
+        assertThat(response.isResult()).isTrue();
+        assertThat(response.getPartial()).isTrue();
+        assertThat(response.getCount()).isEqualTo(2);
+        assertThat(response.getData()).extracting(SearchData::getSite).containsOnly("https://a.ru");
+    }
+
+    private String lemma(String word) {
+        return lemmaEngine.getLemmaMap(word).keySet().iterator().next();
+    }
+
+    private ShardedSearchService service(List<ShardClient> shards, long timeoutMs) {
+        return new ShardedSearchService(lemmaEngine, new SnippetGenerator(lemmaEngine), new SimpleAsyncTaskExecutor(),
+                shards, timeoutMs);
+    }
+
+    private static DataSource shardDataSource(String name) throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml",
+                    new ClassLoaderResourceAccessor(), database);
+            liquibase.dropAll();
+            liquibase.update("");
+        }
+        return dataSource;
+    }
+
+    private static void insertSite(JdbcTemplate jdbc, int id, String url, String name, int pageCount) {
+        jdbc.update("INSERT INTO site (id, status, status_time, url, name, page_count) VALUES (?, 'INDEXED', NOW(), ?, ?, ?)",
+                id, url, name, pageCount);
+    }
+
+    private static void insertPage(JdbcTemplate jdbc, int id, int siteId, String path, String title) {
+        jdbc.update("INSERT INTO page (id, site_id, path, code, content) VALUES (?, ?, ?, 200, ?)",
+                id, siteId, path, "<html><head><title>" + title + "</title></head><body>" + title + "</body></html>");
+    }
+
+    private static void insertLemma(JdbcTemplate jdbc, int id, int siteId, String lemma, int frequency) {
+        jdbc.update("INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, ?)", id, siteId, lemma, frequency);
+    }
+
+    private static void insertIndex(JdbcTemplate jdbc, int pageId, int lemmaId, float rank) {
+        jdbc.update("INSERT INTO search_index (page_id, lemma_id, `rank`, site_id) VALUES (?, ?, ?, 1)",
+                pageId, lemmaId, rank);
+    }
+}
@@ -0,0 +1,119 @@
+package searchengine.services.segment;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.lemma.LemmaEngine;
+import searchengine.services.lemma.LemmaService;
+import searchengine.services.search.SearchService;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:segmentdb;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "search-settings.index-mode=segment",
+        "segment-settings.index-path=target/test-segments"
+})
+public class SegmentIndexServiceTest {
+
+    @Autowired
+    private SegmentIndexService segmentIndexService;
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private LemmaService lemmaService;
+    @Autowired
+    private LemmaEngine lemmaEngine;
+
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private PageRepository pageRepository;
+    @Autowired
+    private LemmaRepository lemmaRepository;
+    @Autowired
+    private IndexRepository indexRepository;
+
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        segmentIndexService.clear();
+        indexRepository.deleteAll();
+        lemmaRepository.deleteAll();
+        pageRepository.deleteAll();
+        siteRepository.deleteAll();
+
+        site = new Site();
+        site.setUrl("https://test.com");
+        site.setName("Тестовый сайт");
+        site.setStatus(SiteStatus.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+
+        indexPage("/page1", "Милые котики играют в саду.");
+        indexPage("/page2", "Веселые собаки бегают во дворе.");
+    }
+
+    @Test
+    @DisplayName("После выгрузки в сегмент поиск находит страницы по сегментным файлам")
+    void sealSite_shouldServeSearchFromSegments() throws IOException {
+        segmentIndexService.sealSite(site);
+
+        assertThat(segmentIndexService.hasSegments(site)).isTrue();
+        lemmaRepository.deleteAll();
+
+        SearchResponse response = searchService.search("милые котики", null, 0, 10);
+
+        assertThat(response.getCount()).isEqualTo(1);
+        assertThat(response.getData().get(0).getUri()).isEqualTo("/page1");
+    }
+
+    @Test
+    @DisplayName("Переиндексированная страница попадает в маленький сегмент, старая версия скрывается")
+    void appendAndDeletePage_shouldUpdateSegments() throws IOException {
+        segmentIndexService.sealSite(site);
+        Page oldPage = pageRepository.findBySiteAndPath(site, "/page2").orElseThrow();
+
+        segmentIndexService.deletePage(oldPage);
+        Page newPage = createPage("/page2", "Веселые котики бегают во дворе.");
+        segmentIndexService.appendPage(newPage, lemmaEngine.getLemmaMap("Веселые котики бегают во дворе."));
+
+        SearchResponse response = searchService.search("котики", null, 0, 10);
+        assertThat(response.getCount()).isEqualTo(2);
+        assertThat(searchService.search("собаки", null, 0, 10).getCount()).isZero();
+        assertThat(segmentIndexService.findLemmas(lemmaEngine.getLemmaMap("собаки").keySet(), List.of(site))).isEmpty();
+        assertThat(segmentIndexService.findLemmas(lemmaEngine.getLemmaMap("котики").keySet(), List.of(site)))
+                .extracting(Lemma::getFrequency).containsExactly(2);
+    }
+
+    private void indexPage(String path, String text) {
+        lemmaService.saveLemmasForPage(createPage(path, text), lemmaEngine.getLemmaMap(text));
+    }
+
+    private Page createPage(String path, String text) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(path);
+        page.setCode(200);
+        page.setContent("<html><title>" + path + "</title><body>" + text + "</body></html>");
+        return pageRepository.save(page);
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.services.segment;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.services.search.postings.PostingCursor;
+import searchengine.services.search.postings.PostingList;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SegmentReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Записанный сегмент читается обратно: словарь, списки вхождений и таблица страниц")
+    void writtenSegment_shouldBeReadableThroughMemoryMapping() throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(directory, 1)) {
+            for (int i = 0; i < 100; i++) {
+                writer.addPostings("лемма" + i,
+                        new PostingList(new int[]{i, i + 1000, i + 70000}, new float[]{1, i + 2, 3}));
+                writer.addPage(i, "/page" + i);
+            }
+            writer.finish();
+        }
+
+        SegmentReader reader = SegmentReader.open(directory, 1);
+
+        assertThat(reader.termCount()).isEqualTo(100);
+        assertThat(reader.lookup("лемма")).isNull();
+        assertThat(reader.lookup("лемма999")).isNull();
+        TermEntry entry = reader.lookup("лемма42");
+        assertThat(entry.getDocFreq()).isEqualTo(3);
+
+        PostingCursor cursor = reader.postings(entry).cursor();
+        assertThat(reader.postings(entry).size()).isEqualTo(3);
+        assertThat(cursor.nextPage()).isEqualTo(42);
+        assertThat(cursor.nextPage()).isEqualTo(1042);
+        assertThat(cursor.rank()).isEqualTo(44f);
+        assertThat(cursor.advance(50_000)).isEqualTo(70042);
+
+        Map<Integer, String> pages = new HashMap<>();
+        reader.forEachLivePage(pages::put);
+        assertThat(pages).hasSize(100).containsEntry(7, "/page7");
+    }
+
+    @Test
+    @DisplayName("Удаленная страница исключается из списков вхождений и переживает повторное открытие")
+    void markDeleted_shouldHidePageFromPostings() throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(directory, 5)) {
+            writer.addPostings("котик", new PostingList(new int[]{1, 2, 3}, new float[]{1, 1, 1}));
+            writer.addPage(1, "/a");
+            writer.addPage(2, "/b");
+            writer.addPage(3, "/c");
+            writer.finish();
+        }
+
+        SegmentReader.open(directory, 5).markDeleted(2);
+        SegmentReader reopened = SegmentReader.open(directory, 5);
+
+        PostingList postings = reopened.postings(reopened.lookup("котик"));
+        assertThat(postings.size()).isEqualTo(2);
+        PostingCursor cursor = postings.cursor();
+        assertThat(cursor.nextPage()).isEqualTo(1);
+        assertThat(cursor.nextPage()).isEqualTo(3);
+        assertThat(cursor.nextPage()).isEqualTo(PostingCursor.NO_MORE_PAGES);
+        assertThat(reopened.containsLivePage(2)).isFalse();
+        assertThat(reopened.livePageCount()).isEqualTo(2);
+    }
+}
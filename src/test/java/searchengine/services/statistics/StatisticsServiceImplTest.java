@@ -34,6 +34,10 @@ public class StatisticsServiceImplTest {
     private PageRepository pageRepository;
     @Autowired
     private LemmaRepository lemmaRepository;
+    @Autowired
+    private SiteCounters siteCounters;
+
+    private Site site;
 
     @BeforeEach
     void setUp() {
@@ -48,6 +52,7 @@ public class StatisticsServiceImplTest {
         site.setStatus(SiteStatus.INDEXED);
         site.setStatusTime(LocalDateTime.now());
         siteRepository.save(site);
+        this.site = site;
 
         Page page1 = new Page();
         page1.setSite(site);
@@ -102,4 +107,27 @@ public class StatisticsServiceImplTest {
         assertThat(siteStats.getPages()).isEqualTo(2);
         assertThat(siteStats.getLemmas()).isEqualTo(3);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Счетчики меняются путями записи без пересчета и сохраняются в таблицу site")
+    void getStatistics_shouldServeIncrementalCountersAndPersistThem() {
+        statisticsService.getStatistics();
+
+        siteCounters.addPages(site, 1);
+        siteCounters.addLemmas(site, 2);
+        var siteStats = statisticsService.getStatistics().getStatistics().getDetailed().get(0);
+        assertThat(siteStats.getPages()).isEqualTo(3);
+        assertThat(siteStats.getLemmas()).isEqualTo(5);
+
+        siteCounters.flush();
+        Site persisted = siteRepository.findById(site.getId()).orElseThrow();
+        assertThat(persisted.getPageCount()).isEqualTo(3);
+        assertThat(persisted.getLemmaCount()).isEqualTo(5);
+        assertThat(persisted.getCountersTime()).isNotNull();
+
+        siteCounters.addPages(site, 1);
+        siteCounters.flush();
+        assertThat(siteRepository.findById(site.getId()).orElseThrow().getPageCount()).isEqualTo(4);
+        assertThat(siteCounters.getPageCount(site)).isEqualTo(4);
+    }
+}
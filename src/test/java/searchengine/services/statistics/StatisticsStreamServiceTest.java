@@ -0,0 +1,111 @@
+package searchengine.services.statistics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.dto.statistics.DetailedStatisticsItem;
+import searchengine.dto.statistics.StatisticsData;
+import searchengine.dto.statistics.StatisticsDelta;
+import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.dto.statistics.TotalStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StatisticsStreamServiceTest {
+
+    private final StatisticsService statisticsService = mock(StatisticsService.class);
+    private final StatisticsChanges statisticsChanges = new StatisticsChanges();
+    private final StatisticsStreamService streamService = new StatisticsStreamService(statisticsService, statisticsChanges);
+    private final RecordingEmitter emitter = new RecordingEmitter();
+
+    @BeforeEach
+    void setUp() {
+        when(statisticsService.getStatistics()).thenReturn(response(3, site("https://a.test", 1), site("https://b.test", 2)));
+        streamService.subscribe(emitter);
+    }
+
+    @Test
+    @DisplayName("Подписчик получает снимок, а дельта содержит только изменившиеся сайты")
+    void publish_shouldSendOnlyChangedSites() {
+        assertThat(emitter.events).hasSize(1);
+        assertThat(emitter.events.get(0)).isInstanceOf(StatisticsData.class);
+
+        when(statisticsService.getStatistics()).thenReturn(response(5, site("https://a.test", 1), site("https://b.test", 4)));
+        statisticsChanges.markChanged();
+        streamService.publish();
+
+        StatisticsDelta delta = (StatisticsDelta) emitter.events.get(1);
+        assertThat(delta.getDetailed()).extracting(DetailedStatisticsItem::getUrl).containsExactly("https://b.test");
+        assertThat(delta.getRemoved()).isEmpty();
+        assertThat(delta.getTotal().getPages()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Исчезнувший сайт попадает в список удаленных")
+    void publish_shouldReportRemovedSites() {
+        when(statisticsService.getStatistics()).thenReturn(response(3, site("https://a.test", 1)));
+        statisticsChanges.markChanged();
+        streamService.publish();
+
+        StatisticsDelta delta = (StatisticsDelta) emitter.events.get(1);
+        assertThat(delta.getDetailed()).isEmpty();
+        assertThat(delta.getRemoved()).containsExactly("https://b.test");
+    }
+
+    @Test
+    @DisplayName("Без новой версии или без изменений дельта не отправляется")
+    void publish_shouldSkipUnchangedStatistics() {
+        streamService.publish();
+        verify(statisticsService, times(1)).getStatistics();
+
+        statisticsChanges.markChanged();
+        statisticsChanges.markChanged();
+        streamService.publish();
+        streamService.publish();
+        verify(statisticsService, times(2)).getStatistics();
+        assertThat(emitter.events).hasSize(1);
+    }
+
+    private static StatisticsResponse response(int pages, DetailedStatisticsItem... sites) {
+        TotalStatistics total = new TotalStatistics();
+        total.setSites(sites.length);
+        total.setPages(pages);
+        StatisticsData data = new StatisticsData();
+        data.setTotal(total);
+        data.setDetailed(List.of(sites));
+        StatisticsResponse response = new StatisticsResponse();
+        response.setResult(true);
+        response.setStatistics(data);
+        return response;
+    }
+
+    private static DetailedStatisticsItem site(String url, int pages) {
+        DetailedStatisticsItem item = new DetailedStatisticsItem();
+        item.setUrl(url);
+        item.setName(url);
+        item.setStatus("INDEXED");
+        item.setPages(pages);
+        return item;
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<Object> events = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(data -> !(data instanceof String))
+                    .forEach(events::add);
+        }
+    }
+}